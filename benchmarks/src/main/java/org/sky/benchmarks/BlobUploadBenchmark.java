@@ -0,0 +1,97 @@
+package org.sky.benchmarks;
+
+import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.models.ParallelTransferOptions;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sky.azure.BlobUploadTuning;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares upload settings against a local Azurite emulator
+ * (docker run -p 10000:10000 mcr.microsoft.com/azure-storage/azurite azurite-blob --blobHost 0.0.0.0).
+ * The uploadedBytes counter reports the effective throughput in bytes per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 20)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlobUploadBenchmark {
+
+  private static final String AZURITE_CONNECTION_STRING = "DefaultEndpointsProtocol=http;"
+      + "AccountName=devstoreaccount1;"
+      + "AccountKey=Eby8vdM02xNOcqFlqUwJPLlmEtlCDXJ1OUzFT50uSRZ6IFsuFq2UVErCz4I6tq/K1SZFPTOtr/KBHBeksoGMGw==;"
+      + "BlobEndpoint=http://127.0.0.1:10000/devstoreaccount1;";
+
+  @Param({"1", "16", "256"})
+  public int sizeMb;
+
+  @Param({"SDK_DEFAULT", "TUNED", "FIXED_4MB_X4"})
+  public String strategy;
+
+  private Path sourceFile;
+  private long sizeBytes;
+  private BlobClient blobClient;
+  private ParallelTransferOptions transferOptions;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    sizeBytes = sizeMb * 1024L * 1024L;
+    sourceFile = Fixtures.randomFile(sizeBytes);
+
+    String connectionString = System.getenv().getOrDefault("AZURITE_CONNECTION_STRING", AZURITE_CONNECTION_STRING);
+    BlobContainerClient container = new BlobServiceClientBuilder()
+        .connectionString(connectionString)
+        .buildClient()
+        .getBlobContainerClient("benchmarks");
+    container.createIfNotExists();
+    blobClient = container.getBlobClient("upload-" + sizeMb + "mb-" + strategy);
+
+    if ("TUNED".equals(strategy)) {
+      transferOptions = BlobUploadTuning.defaults().forSize(sizeBytes);
+    } else if ("FIXED_4MB_X4".equals(strategy)) {
+      transferOptions = BlobUploadTuning.fromMegabytes(4, 4, 0).forSize(sizeBytes);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(sourceFile);
+  }
+
+  @Benchmark
+  public void uploadFromFile(UploadCounters counters) {
+    if (transferOptions == null) {
+      blobClient.uploadFromFile(sourceFile.toString(), true);
+    } else {
+      blobClient.uploadFromFile(sourceFile.toString(), transferOptions, null, null, null, null, null);
+    }
+    counters.uploadedBytes += sizeBytes;
+  }
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class UploadCounters {
+    public long uploadedBytes;
+  }
+}
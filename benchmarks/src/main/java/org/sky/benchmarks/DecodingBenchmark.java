@@ -0,0 +1,99 @@
+package org.sky.benchmarks;
+
+import org.bouncycastle.bcpg.ArmoredOutputStream;
+import org.bouncycastle.openpgp.PGPUtil;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sky.utils.DecodingInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes in-memory armored PGP or base64 text with the previous decoders (BouncyCastle's armor stream and
+ * {@code Base64.getDecoder().wrap}) and with {@link DecodingInputStream}. The decodedBytes counter reports the
+ * binary output rate in bytes per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodingBenchmark {
+
+  @Param({"ARMORED", "BASE64"})
+  public String format;
+
+  @Param({"PREVIOUS", "BULK"})
+  public String decoder;
+
+  @Param({"1MB", "64MB"})
+  public String size;
+
+  private byte[] encoded;
+  private long sizeBytes;
+  private final byte[] readBuffer = new byte[64 * 1024];
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    sizeBytes = Fixtures.parseSize(size);
+    Path binaryFile = Fixtures.randomFile(sizeBytes);
+    try {
+      byte[] binary = Files.readAllBytes(binaryFile);
+      if ("ARMORED".equals(format)) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ArmoredOutputStream armored = new ArmoredOutputStream(out)) {
+          armored.write(binary);
+        }
+        encoded = out.toByteArray();
+      } else {
+        encoded = Base64.getEncoder().encode(binary);
+      }
+    } finally {
+      Files.deleteIfExists(binaryFile);
+    }
+  }
+
+  @Benchmark
+  public void decode(DecodeCounters counters, Blackhole blackhole) throws IOException {
+    try (InputStream in = open(new ByteArrayInputStream(encoded))) {
+      int read;
+      while ((read = in.read(readBuffer)) != -1) {
+        blackhole.consume(read);
+      }
+    }
+    counters.decodedBytes += sizeBytes;
+  }
+
+  private InputStream open(InputStream in) throws IOException {
+    if ("BULK".equals(decoder)) {
+      return DecodingInputStream.decode(in);
+    }
+    return "ARMORED".equals(format) ? PGPUtil.getDecoderStream(in) : Base64.getDecoder().wrap(in);
+  }
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class DecodeCounters {
+    public long decodedBytes;
+  }
+}
@@ -0,0 +1,93 @@
+package org.sky.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sky.utils.FileDecryptor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decrypts AES-256-CBC files with {@link FileDecryptor#decryptFile} in both supported layouts, with and
+ * without base64 armoring. The decryptedBytes counter reports plaintext throughput in bytes per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileDecryptBenchmark {
+
+  private static final String PASSWORD = "benchmark-password";
+
+  @Param({"OPENSSL_SALTED", "IV_PREFIXED"})
+  public String format;
+
+  @Param({"false", "true"})
+  public boolean base64;
+
+  @Param({"1KB", "1MB", "64MB", "1GB"})
+  public String size;
+
+  /** AUTO lets FileDecryptor pick (all cores from 64 MB); a number forces that many workers. */
+  @Param({"AUTO", "1"})
+  public String parallelism;
+
+  private long sizeBytes;
+  private Path encryptedFile;
+  private Path outputFile;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    sizeBytes = Fixtures.parseSize(size);
+    Path plainFile = Fixtures.randomFile(sizeBytes);
+    encryptedFile = Files.createTempFile("bench-", ".enc");
+    try {
+      if ("OPENSSL_SALTED".equals(format)) {
+        Fixtures.opensslEncrypt(plainFile, encryptedFile, PASSWORD, base64);
+      } else {
+        Fixtures.ivPrefixedEncrypt(plainFile, encryptedFile, PASSWORD, base64);
+      }
+    } finally {
+      Files.deleteIfExists(plainFile);
+    }
+    outputFile = Files.createTempFile("bench-", ".out");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(encryptedFile);
+    Files.deleteIfExists(outputFile);
+  }
+
+  @Benchmark
+  public void decryptFile(DecryptCounters counters) throws Exception {
+    if ("AUTO".equals(parallelism)) {
+      FileDecryptor.decryptFile(encryptedFile, outputFile, PASSWORD, base64);
+    } else {
+      FileDecryptor.decryptFile(encryptedFile, outputFile, PASSWORD, base64, Integer.parseInt(parallelism));
+    }
+    counters.decryptedBytes += sizeBytes;
+  }
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class DecryptCounters {
+    public long decryptedBytes;
+  }
+}
@@ -0,0 +1,157 @@
+package org.sky.benchmarks;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.SplittableRandom;
+
+final class Fixtures {
+
+  private static final int CHUNK_SIZE = 1024 * 1024;
+  private static final byte[] CSV_SEPARATORS = {',', ',', ',', '\n'};
+
+  static {
+    if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+      Security.addProvider(new BouncyCastleProvider());
+    }
+  }
+
+  private Fixtures() {
+  }
+
+  /** Parses sizes such as {@code 1KB}, {@code 64MB} or {@code 1GB}. */
+  static long parseSize(String size) {
+    String unit = size.substring(size.length() - 2);
+    long value = Long.parseLong(size.substring(0, size.length() - 2));
+    switch (unit) {
+      case "KB":
+        return value * 1024;
+      case "MB":
+        return value * 1024 * 1024;
+      case "GB":
+        return value * 1024 * 1024 * 1024;
+      default:
+        throw new IllegalArgumentException("Unknown size unit: " + size);
+    }
+  }
+
+  static Path randomFile(long sizeBytes) throws IOException {
+    Path file = Files.createTempFile("bench-", ".bin");
+    SplittableRandom random = new SplittableRandom(42);
+    byte[] chunk = new byte[CHUNK_SIZE];
+
+    try (OutputStream out = Files.newOutputStream(file)) {
+      long remaining = sizeBytes;
+      while (remaining > 0) {
+        fillRandom(random, chunk);
+        int length = (int) Math.min(chunk.length, remaining);
+        out.write(chunk, 0, length);
+        remaining -= length;
+      }
+    }
+    return file;
+  }
+
+  /** CSV-like rows of random digits: compresses roughly like the exports this function receives. */
+  static Path csvFile(long sizeBytes) throws IOException {
+    Path file = Files.createTempFile("bench-", ".csv");
+    SplittableRandom random = new SplittableRandom(42);
+    byte[] chunk = new byte[CHUNK_SIZE];
+
+    try (OutputStream out = Files.newOutputStream(file)) {
+      long remaining = sizeBytes;
+      while (remaining > 0) {
+        for (int i = 0; i < chunk.length; i++) {
+          chunk[i] = i % 8 == 7 ? CSV_SEPARATORS[(i / 8) % 4] : (byte) ('0' + random.nextInt(10));
+        }
+        int length = (int) Math.min(chunk.length, remaining);
+        out.write(chunk, 0, length);
+        remaining -= length;
+      }
+    }
+    return file;
+  }
+
+  /** Same layout as {@code openssl enc -aes-256-cbc -md md5}: "Salted__", salt, then ciphertext. */
+  static void opensslEncrypt(Path plainFile, Path encryptedFile, String password, boolean base64)
+      throws IOException, GeneralSecurityException {
+    byte[] salt = new byte[8];
+    new SecureRandom().nextBytes(salt);
+    byte[] keyAndIv = evpBytesToKey(password.getBytes(StandardCharsets.UTF_8), salt);
+
+    try (OutputStream out = openOutput(encryptedFile, base64)) {
+      out.write("Salted__".getBytes(StandardCharsets.US_ASCII));
+      out.write(salt);
+      writeCiphertext(plainFile, out, Arrays.copyOfRange(keyAndIv, 0, 32), Arrays.copyOfRange(keyAndIv, 32, 48));
+    }
+  }
+
+  /** A random 16-byte IV followed by AES-256-CBC ciphertext keyed with SHA-256(password). */
+  static void ivPrefixedEncrypt(Path plainFile, Path encryptedFile, String password, boolean base64)
+      throws IOException, GeneralSecurityException {
+    byte[] iv = new byte[16];
+    new SecureRandom().nextBytes(iv);
+    byte[] key = MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+
+    try (OutputStream out = openOutput(encryptedFile, base64)) {
+      out.write(iv);
+      writeCiphertext(plainFile, out, key, iv);
+    }
+  }
+
+  private static OutputStream openOutput(Path file, boolean base64) throws IOException {
+    OutputStream fileOut = Files.newOutputStream(file);
+    return base64 ? Base64.getEncoder().wrap(fileOut) : fileOut;
+  }
+
+  private static void writeCiphertext(Path plainFile, OutputStream out, byte[] key, byte[] iv)
+      throws IOException, GeneralSecurityException {
+    Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+    cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+
+    OutputStream cipherOut = new CipherOutputStream(out, cipher);
+    try (InputStream plainIn = Files.newInputStream(plainFile)) {
+      plainIn.transferTo(cipherOut);
+    }
+    // Closing the cipher stream emits the final padded block and closes the underlying stream.
+    cipherOut.close();
+  }
+
+  private static byte[] evpBytesToKey(byte[] password, byte[] salt) throws GeneralSecurityException {
+    MessageDigest md5 = MessageDigest.getInstance("MD5");
+    byte[] result = new byte[48];
+    byte[] previous = new byte[0];
+    for (int generated = 0; generated < result.length; generated += previous.length) {
+      md5.update(previous);
+      md5.update(password);
+      md5.update(salt);
+      previous = md5.digest();
+      System.arraycopy(previous, 0, result, generated, Math.min(previous.length, result.length - generated));
+    }
+    return result;
+  }
+
+  private static void fillRandom(SplittableRandom random, byte[] buffer) {
+    for (int i = 0; i < buffer.length; i += 8) {
+      long value = random.nextLong();
+      for (int j = 0; j < 8 && i + j < buffer.length; j++) {
+        buffer[i + j] = (byte) (value >>> (j * 8));
+      }
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package org.sky.benchmarks;
+
+import org.bouncycastle.openpgp.PGPCompressedData;
+import org.bouncycastle.openpgp.PGPEncryptedData;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sky.utils.PGPFileDecryptor;
+import org.sky.utils.PGPMessageFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decrypts a generated PGP message with {@link PGPFileDecryptor#decryptFile}, and with the sequential and pipelined
+ * stream paths the blob triggers use. Fixtures are created once per trial; the decryptedBytes counter reports
+ * plaintext throughput in bytes per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PGPDecryptBenchmark {
+
+  private static final String PASSPHRASE = "benchmark-passphrase";
+
+  @Param({"RSA", "ECC"})
+  public String keyType;
+
+  @Param({"AES_128", "AES_256"})
+  public String cipher;
+
+  @Param({"ZIP", "ZLIB", "BZIP2", "UNCOMPRESSED"})
+  public String compression;
+
+  @Param({"1KB", "1MB", "64MB", "1GB"})
+  public String size;
+
+  private long sizeBytes;
+  private Path encryptedFile;
+  private Path keyFile;
+  private Path outputFile;
+  private Map<Long, PGPPrivateKey> privateKeys;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    sizeBytes = Fixtures.parseSize(size);
+    PGPSecretKeyRing keyRing = PGPMessageFactory.generateKeyRing(PGPMessageFactory.KeyType.valueOf(keyType), 2048,
+        "bench@sky.org", PASSPHRASE);
+    keyFile = Files.createTempFile("bench-key-", ".gpg");
+    try (OutputStream keyOut = Files.newOutputStream(keyFile)) {
+      keyRing.encode(keyOut);
+    }
+    privateKeys = PGPFileDecryptor.unlockPrivateKeys(
+        PGPFileDecryptor.readSecretKeyRing(keyRing.getEncoded()), PASSPHRASE);
+
+    Path plainFile = Fixtures.csvFile(sizeBytes);
+    encryptedFile = Files.createTempFile("bench-", ".pgp");
+    try (InputStream plainIn = Files.newInputStream(plainFile);
+         OutputStream encryptedOut = Files.newOutputStream(encryptedFile)) {
+      PGPMessageFactory.encrypt(plainIn, -1, encryptedOut, PGPMessageFactory.encryptionKey(keyRing),
+          symmetricAlgorithm(cipher), compressionAlgorithm(compression), "data.csv");
+    } finally {
+      Files.deleteIfExists(plainFile);
+    }
+    outputFile = Files.createTempFile("bench-", ".out");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(encryptedFile);
+    Files.deleteIfExists(keyFile);
+    Files.deleteIfExists(outputFile);
+  }
+
+  @Benchmark
+  public void decryptFile(DecryptCounters counters) {
+    PGPFileDecryptor.decryptFile(encryptedFile, outputFile, keyFile, PASSPHRASE);
+    counters.decryptedBytes += sizeBytes;
+  }
+
+  @Benchmark
+  public void decryptStream(DecryptCounters counters) throws IOException {
+    try (InputStream in = Files.newInputStream(encryptedFile);
+         OutputStream out = Files.newOutputStream(outputFile)) {
+      PGPFileDecryptor.decryptStream(in, out, privateKeys::get);
+    }
+    counters.decryptedBytes += sizeBytes;
+  }
+
+  @Benchmark
+  public void decryptStreamPipelined(DecryptCounters counters) throws IOException {
+    try (InputStream in = Files.newInputStream(encryptedFile);
+         OutputStream out = Files.newOutputStream(outputFile)) {
+      PGPFileDecryptor.decryptStreamPipelined(in, out, privateKeys::get);
+    }
+    counters.decryptedBytes += sizeBytes;
+  }
+
+  private static int symmetricAlgorithm(String cipher) {
+    return "AES_128".equals(cipher) ? PGPEncryptedData.AES_128 : PGPEncryptedData.AES_256;
+  }
+
+  private static int compressionAlgorithm(String compression) {
+    switch (compression) {
+      case "ZIP":
+        return PGPCompressedData.ZIP;
+      case "ZLIB":
+        return PGPCompressedData.ZLIB;
+      case "BZIP2":
+        return PGPCompressedData.BZIP2;
+      default:
+        return PGPCompressedData.UNCOMPRESSED;
+    }
+  }
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class DecryptCounters {
+    public long decryptedBytes;
+  }
+}
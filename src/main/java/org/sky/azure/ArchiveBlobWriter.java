@@ -0,0 +1,160 @@
+package org.sky.azure;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.sky.events.EventLog;
+import org.sky.events.EventType;
+import org.sky.model.BlobContent;
+import org.sky.model.UploadedBlob;
+import org.sky.utils.ArchiveFormat;
+import org.sky.utils.BufferPool;
+import org.sky.utils.ZipTailInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Extracts an archive as its plaintext streams in and uploads every file entry as
+ * {@code <timestamp>-<name>/<entry path><extension>}, up to {@value #MAX_ENTRIES_COMMITTING} entries finishing in
+ * the background while the next is read. Plaintext that is not a ZIP, TAR or TAR.GZ is uploaded unchanged as
+ * {@code <timestamp>-<name><extension>}.
+ *
+ * <p>Directories, links and devices are not uploaded. A streamed ZIP usually tells a symbolic link apart only in
+ * its central directory, after the last entry, so small ZIP entries are uploaded as they come and the ones the
+ * central directory marks as links are deleted before {@link #finish} returns.
+ */
+public class ArchiveBlobWriter {
+
+  private static final int MAX_ENTRIES_COMMITTING = 8;
+  private static final int COPY_BUFFER_SIZE = 256 * 1024;
+  // A link's data is its target path, which the systems that write links cap at 4 KB.
+  private static final int MAX_LINK_TARGET_BYTES = 4096;
+  private static final int ZIP_TAIL_BYTES = 4 * 1024 * 1024;
+
+  private final AzureBlobStorageDecrypt storage;
+  private final MultiBlobUpload uploads;
+  private final String plaintextName;
+  private final String extension;
+  private final long expectedSizeBytes;
+  private volatile ArchiveFormat format;
+  private volatile String prefix;
+  private final Set<String> linkBlobs = new HashSet<>();
+
+  /** {@code expectedSizeBytes} tunes the upload when the plaintext turns out not to be an archive. */
+  public ArchiveBlobWriter(AzureBlobStorageDecrypt storage, String plaintextName, String extension,
+                           long expectedSizeBytes, MultiBlobUpload.Encoder encoder) {
+    this.storage = storage;
+    this.uploads = new MultiBlobUpload(storage, encoder, MAX_ENTRIES_COMMITTING);
+    this.plaintextName = plaintextName;
+    this.extension = extension;
+    this.expectedSizeBytes = expectedSizeBytes;
+  }
+
+  /** Reads {@code plaintext} to its end, which is also past any data after the last entry. */
+  public void extract(InputStream plaintext) throws IOException {
+    ZipTailInputStream tail = new ZipTailInputStream(plaintext, ZIP_TAIL_BYTES);
+    InputStream in = new BufferedInputStream(tail, ArchiveFormat.DETECT_LIMIT);
+    format = ArchiveFormat.detect(in);
+    if (format != ArchiveFormat.ZIP) {
+      tail.stopCapturing();
+    }
+    if (format == null) {
+      String blobName = storage.addTimestampToBlobName(plaintextName + extension);
+      try (OutputStream out = uploads.open(blobName, expectedSizeBytes)) {
+        in.transferTo(out);
+      }
+      uploads.commit("not an archive");
+      return;
+    }
+
+    prefix = storage.addTimestampToBlobName(plaintextName);
+    ArchiveInputStream<? extends ArchiveEntry> archive = format.open(in);
+    byte[] buffer = BufferPool.shared().acquire(COPY_BUFFER_SIZE);
+    // Blob names of ZIP entries small enough to be links, by entry name, until the central directory is read.
+    Map<String, String> possibleLinks = new HashMap<>();
+    try {
+      ArchiveEntry entry;
+      while ((entry = archive.getNextEntry()) != null) {
+        if (!ArchiveFormat.isFile(entry)) {
+          continue;
+        }
+        String path = ArchiveFormat.safePath(entry.getName());
+        if (path == null) {
+          EventLog.record(EventType.ARCHIVE_ENTRY_SKIPPED, entry.getName(), entry.getSize(), "unsafe path");
+          continue;
+        }
+        if (!archive.canReadEntryData(entry)) {
+          // Leaving an entry out would make the extracted set look complete when it is not.
+          throw new IOException("Cannot read archive entry " + entry.getName() + " (encrypted or unsupported)");
+        }
+        long entryBytes = 0;
+        try (OutputStream out = uploads.open(prefix + "/" + path + extension, Math.max(entry.getSize(), 0))) {
+          int read;
+          while ((read = archive.read(buffer, 0, buffer.length)) != -1) {
+            out.write(buffer, 0, read);
+            entryBytes += read;
+          }
+        }
+        uploads.commit("archive entry, plaintext_bytes=" + entryBytes);
+        if (format == ArchiveFormat.ZIP && entryBytes <= MAX_LINK_TARGET_BYTES) {
+          possibleLinks.put(entry.getName(), prefix + "/" + path + extension);
+        }
+      }
+    } finally {
+      BufferPool.shared().release(buffer);
+    }
+    // The ZIP central directory follows the last entry; the writer must not block on a pipe nobody reads.
+    in.transferTo(OutputStream.nullOutputStream());
+    if (!possibleLinks.isEmpty()) {
+      findLinks(tail.unixModes(), possibleLinks);
+    }
+  }
+
+  private void findLinks(Map<String, Integer> unixModes, Map<String, String> possibleLinks) {
+    for (Map.Entry<String, String> entry : possibleLinks.entrySet()) {
+      Integer mode = unixModes.get(entry.getKey());
+      if (mode != null && !ArchiveFormat.isRegularFileMode(mode)) {
+        linkBlobs.add(entry.getValue());
+        EventLog.record(EventType.ARCHIVE_ENTRY_SKIPPED, entry.getKey(), 0, "link or special file");
+      }
+    }
+  }
+
+  /**
+   * Waits for every upload to be committed. For an archive the returned blob is the entry prefix, sized as the
+   * sum of the stored entries; otherwise it is the single blob.
+   */
+  public UploadedBlob finish(BlobContent plaintext) throws IOException {
+    List<UploadedBlob> blobs = uploads.awaitAll();
+    if (format == null) {
+      return blobs.get(0);
+    }
+    if (!linkBlobs.isEmpty()) {
+      for (String linkBlob : linkBlobs) {
+        storage.deleteIfExists(linkBlob);
+      }
+      blobs = blobs.stream().filter(blob -> !linkBlobs.contains(blob.getBlobName())).collect(Collectors.toList());
+    }
+    long storedBytes = blobs.stream().mapToLong(UploadedBlob::getSizeBytes).sum();
+    String contentEncoding = blobs.isEmpty() ? null : blobs.get(0).getContent().getContentEncoding();
+    if (EventLog.isEnabled(EventType.ARCHIVE_EXTRACTED)) {
+      EventLog.record(EventType.ARCHIVE_EXTRACTED, prefix, blobs.size(),
+          "format=" + format + ", stored_bytes=" + storedBytes);
+    }
+    return new UploadedBlob(prefix + "/", storedBytes,
+        BlobContent.sharded(plaintext.getPlaintextChecksum(), contentEncoding, plaintext.getPlaintextBytes()));
+  }
+
+  /** Drops the entry being written and deletes those already committed. */
+  public void abort() {
+    uploads.abort(prefix != null ? prefix : plaintextName);
+  }
+}
@@ -1,56 +1,290 @@
 package org.sky.azure;
 
+import com.azure.core.util.Context;
 import com.azure.storage.blob.BlobClient;
 import com.azure.storage.blob.BlobContainerClient;
 import com.azure.storage.blob.BlobServiceClient;
-import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.models.BlobHttpHeaders;
+import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.blob.models.Block;
+import com.azure.storage.blob.models.BlockListType;
+import com.azure.storage.blob.models.ParallelTransferOptions;
+import com.azure.storage.blob.options.BlobUploadFromFileOptions;
+import com.azure.storage.blob.options.BlockBlobCommitBlockListOptions;
+import com.azure.storage.blob.options.BlockBlobSimpleUploadOptions;
+import com.azure.storage.blob.specialized.BlockBlobClient;
+import org.sky.events.EventLog;
+import org.sky.events.EventType;
+import org.sky.model.BlobContent;
+import org.sky.model.UploadCheckpoint;
+import org.sky.model.UploadedBlob;
+import org.sky.utils.DaemonThreads;
+import org.sky.utils.OutputCodec;
 
+import java.io.ByteArrayInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.logging.Logger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 
 public class AzureBlobStorageDecrypt {
 
+  /** Metadata entry holding the hex SHA-256 of the plaintext. */
+  public static final String SHA256_METADATA_KEY = "sha256";
+  /** Metadata entry holding the size before encoding, set only when an output codec was applied. */
+  public static final String PLAINTEXT_BYTES_METADATA_KEY = "plaintext_bytes";
+  /** Metadata entry naming the output codec, set only when one was applied; the blob has no Content-Encoding. */
+  public static final String ENCODING_METADATA_KEY = "encoding";
+
   private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+  private static final long BYTES_PER_MB = 1024 * 1024;
+  // Shared by every upload; each blob's own concurrency is capped by its tuning, the total by this pool.
+  private static final ExecutorService STAGE_EXECUTOR = DaemonThreads.boundedPool("blob-block-stage",
+      DaemonThreads.perCore(4, 16));
 
   private final BlobServiceClient blobServiceClient;
   private final String containerName;
-  private final Logger logger = Logger.getLogger(AzureBlobStorageDecrypt.class.getName());
+  private final BlobUploadTuning uploadTuning;
 
   public AzureBlobStorageDecrypt(String storageAccountUrl, String containerName) {
-    this.blobServiceClient = createBlobServiceClient(storageAccountUrl);
+    this(storageAccountUrl, containerName, BlobUploadTuning.defaults());
+  }
+
+  public AzureBlobStorageDecrypt(String storageAccountUrl, String containerName, BlobUploadTuning uploadTuning) {
+    this.blobServiceClient = AzureClientRegistry.blobServiceClient(storageAccountUrl);
     this.containerName = containerName;
+    this.uploadTuning = uploadTuning;
   }
 
-  private BlobServiceClient createBlobServiceClient(String storageAccountUrl) {
-    return new BlobServiceClientBuilder()
-        .endpoint(storageAccountUrl)
-        .credential(AzureCredentialsProvider.getCredentials())
-        .buildClient();
+  public UploadedBlob uploadBlob(String blobName, Path sourcePath) {
+    return uploadBlob(blobName, sourcePath, null);
   }
 
-  public void uploadBlob(String blobName, Path sourcePath) {
+  /** {@code content} describes the file when already known, and is stored on the blob. */
+  public UploadedBlob uploadBlob(String blobName, Path sourcePath, BlobContent content) {
     try {
       String blobNameWithTimestamp = addTimestampToBlobName(blobName);
       BlobClient blobClient = getBlobClient(blobNameWithTimestamp);
 
       long fileSize = Files.size(sourcePath);
-      String uploadMessage = String.format("Uploading decrypted blob: %s (%.2f MB)",
-          blobNameWithTimestamp, fileSize / (1024.0 * 1024.0));
+      ParallelTransferOptions transferOptions = uploadTuning.forSize(fileSize);
+      EventLog.record(EventType.UPLOAD_STARTED, blobNameWithTimestamp, fileSize,
+          describe(transferOptions, fileSize));
+
+      long startTime = System.nanoTime();
+      // No request conditions: an existing blob is overwritten, like uploadFromFile(path, true).
+      blobClient.uploadFromFileWithResponse(new BlobUploadFromFileOptions(sourcePath.toString())
+          .setParallelTransferOptions(transferOptions)
+          .setHeaders(headersFor(content))
+          .setMetadata(metadataFor(content)), null, Context.NONE);
+
+      logThroughput(blobNameWithTimestamp, fileSize, System.nanoTime() - startTime);
+      return new UploadedBlob(blobNameWithTimestamp, fileSize, content);
+
+    } catch (Exception e) {
+      throw new RuntimeException("Failed to upload decrypted blob: " + blobName, e);
+    }
+  }
+
+  public UploadedBlob uploadStream(String blobName, BlobStreamWriter writer) {
+    return uploadStream(blobName, 0, writer);
+  }
 
-      logger.info(uploadMessage);
+  /**
+   * Streams into staged blocks, each sent with its MD5. The checksums and encoding returned by the writer go on
+   * the commit, so the blob never exists without them. Output expected to fit under the single-shot threshold is buffered as
+   * one block and sent as a single put.
+   */
+  public UploadedBlob uploadStream(String blobName, long expectedSizeBytes, BlobStreamWriter writer) {
+    try {
+      String blobNameWithTimestamp = addTimestampToBlobName(blobName);
+      BlockBlobClient blockBlobClient = getBlobClient(blobNameWithTimestamp).getBlockBlobClient();
+      ParallelTransferOptions transferOptions = uploadTuning.forSize(expectedSizeBytes);
 
-      blobClient.uploadFromFile(sourcePath.toString(), true);
+      if (EventLog.isEnabled(EventType.UPLOAD_STARTED)) {
+        EventLog.record(EventType.UPLOAD_STARTED, blobNameWithTimestamp, expectedSizeBytes,
+            "streaming, " + describe(transferOptions, expectedSizeBytes));
+      }
 
-      String successMessage = String.format("Uploaded successfully: %s", blobNameWithTimestamp);
+      long startTime = System.nanoTime();
+      UploadedBlob uploaded = writeBlocks(blobNameWithTimestamp, blockBlobClient, Collections.emptySet(),
+          blockSizeFor(transferOptions, expectedSizeBytes), transferOptions.getMaxConcurrency(), stagedBytes -> { },
+          writer);
 
-      logger.info(successMessage);
+      logThroughput(blobNameWithTimestamp, uploaded.getSizeBytes(), System.nanoTime() - startTime);
+      return uploaded;
 
     } catch (Exception e) {
-      throw new RuntimeException("Failed to upload decrypted blob: " + blobName, e);
+      throw new RuntimeException("Failed to stream decrypted blob: " + blobName, e);
+    }
+  }
+
+  /**
+   * Streams into staged blocks that survive a failed attempt. The checkpoint for {@code sourceKey} fixes the
+   * target name and block size on the first attempt; a retry reuses both, skips every block the service still
+   * holds uncommitted and stages only the rest, then commits the list.
+   */
+  public UploadedBlob uploadResumable(String blobName, String sourceKey, long expectedSizeBytes,
+                                      UploadCheckpointStore checkpoints, BlobStreamWriter writer) {
+    try {
+      UploadCheckpoint checkpoint = checkpoints.findUploadCheckpoint(sourceKey);
+      ParallelTransferOptions transferOptions = uploadTuning.forSize(expectedSizeBytes);
+      if (checkpoint == null) {
+        checkpoint = new UploadCheckpoint(sourceKey, addTimestampToBlobName(blobName),
+            transferOptions.getBlockSizeLong(), 0);
+        checkpoints.saveUploadCheckpoint(checkpoint);
+      }
+      String targetBlobName = checkpoint.getTargetBlobName();
+      BlockBlobClient blockBlobClient = getBlobClient(targetBlobName).getBlockBlobClient();
+      Set<String> alreadyStaged = uncommittedBlockIds(blockBlobClient);
+      if (alreadyStaged.isEmpty()) {
+        if (EventLog.isEnabled(EventType.UPLOAD_STARTED)) {
+          EventLog.record(EventType.UPLOAD_STARTED, targetBlobName, expectedSizeBytes,
+              "resumable, block size " + checkpoint.getBlockSize() / BYTES_PER_MB + " MB");
+        }
+      } else if (EventLog.isEnabled(EventType.UPLOAD_RESUMED)) {
+        EventLog.record(EventType.UPLOAD_RESUMED, targetBlobName, checkpoint.getStagedBytes(),
+            alreadyStaged.size() + " blocks already staged");
+      }
+
+      long startTime = System.nanoTime();
+      UploadCheckpoint started = checkpoint;
+      UploadedBlob uploaded = writeBlocks(targetBlobName, blockBlobClient, alreadyStaged,
+          Math.toIntExact(checkpoint.getBlockSize()), transferOptions.getMaxConcurrency(),
+          stagedBytes -> saveProgress(checkpoints, started.withStagedBytes(stagedBytes)), writer);
+
+      try {
+        checkpoints.deleteUploadCheckpoint(sourceKey);
+      } catch (RuntimeException e) {
+        // The blob is committed; a stale checkpoint only makes a later retry of the same source restage blocks.
+        EventLog.record(EventType.LOG_WRITE_FAILED, targetBlobName, 0, "upload checkpoint: " + e.getMessage());
+      }
+      logThroughput(targetBlobName, uploaded.getSizeBytes(), System.nanoTime() - startTime);
+      return uploaded;
+
+    } catch (Exception e) {
+      throw new RuntimeException("Failed to stream decrypted blob: " + blobName, e);
+    }
+  }
+
+  private static UploadedBlob writeBlocks(String blobName, BlockBlobClient blockBlobClient, Set<String> alreadyStaged,
+                                          int blockSize, int maxConcurrency, LongConsumer progress,
+                                          BlobStreamWriter writer) throws Exception {
+    BlockUpload upload = new BlockUpload(blobName, blockBlobClient, alreadyStaged, blockSize, maxConcurrency,
+        progress);
+    BlobContent content;
+    try {
+      content = writer.writeTo(upload.getOutputStream());
+    } catch (Exception e) {
+      upload.abort();
+      throw e;
+    }
+    // The block list is committed only once the writer succeeded.
+    return upload.commit(content);
+  }
+
+  /**
+   * Opens a staged upload to {@code blobName} exactly as given, for writers that place several blobs under one
+   * prefix from {@link #addTimestampToBlobName}. Nothing is visible until {@link BlockUpload#commit}.
+   */
+  public BlockUpload openUpload(String blobName, long expectedSizeBytes) {
+    BlockBlobClient blockBlobClient = getBlobClient(blobName).getBlockBlobClient();
+    ParallelTransferOptions transferOptions = uploadTuning.forSize(expectedSizeBytes);
+    return new BlockUpload(blobName, blockBlobClient, Collections.emptySet(),
+        blockSizeFor(transferOptions, expectedSizeBytes), transferOptions.getMaxConcurrency(), stagedBytes -> { });
+  }
+
+  public void deleteIfExists(String blobName) {
+    getBlobClient(blobName).deleteIfExists();
+  }
+
+  /** Output expected to fit under the single-shot threshold is buffered as one block and sent as a single put. */
+  private int blockSizeFor(ParallelTransferOptions transferOptions, long expectedSizeBytes) {
+    long blockSize = uploadTuning.isSingleShot(expectedSizeBytes)
+        ? Math.max(transferOptions.getBlockSizeLong(), transferOptions.getMaxSingleUploadSizeLong())
+        : transferOptions.getBlockSizeLong();
+    return Math.toIntExact(blockSize);
+  }
+
+  private static BlobHttpHeaders headersFor(BlobContent content) {
+    if (content == null) {
+      return null;
     }
+    // The codec goes in Content-Type, not Content-Encoding, so downloads keep the compressed bytes their name says.
+    return new BlobHttpHeaders()
+        .setContentMd5(content.getContentMd5())
+        .setContentType(content.getContentEncoding() != null
+            ? OutputCodec.parse(content.getContentEncoding()).getContentType()
+            : null);
+  }
+
+  private static Map<String, String> metadataFor(BlobContent content) {
+    if (content == null) {
+      return null;
+    }
+    Map<String, String> metadata = new HashMap<>();
+    if (content.getPlaintextChecksum() != null) {
+      metadata.put(SHA256_METADATA_KEY, content.getPlaintextChecksum().getSha256Hex());
+    }
+    if (content.getContentEncoding() != null) {
+      metadata.put(ENCODING_METADATA_KEY, content.getContentEncoding());
+      metadata.put(PLAINTEXT_BYTES_METADATA_KEY, Long.toString(content.getPlaintextBytes()));
+    }
+    return metadata;
+  }
+
+  /** Runs on the staging pool; a lost update only makes a retry check more blocks, so it must not fail the upload. */
+  private static void saveProgress(UploadCheckpointStore checkpoints, UploadCheckpoint checkpoint) {
+    try {
+      checkpoints.saveUploadCheckpoint(checkpoint);
+    } catch (RuntimeException e) {
+      EventLog.record(EventType.LOG_WRITE_FAILED, checkpoint.getTargetBlobName(), checkpoint.getStagedBytes(),
+          "upload checkpoint: " + e.getMessage());
+    }
+  }
+
+  private static Set<String> uncommittedBlockIds(BlockBlobClient blockBlobClient) {
+    try {
+      Set<String> blockIds = new HashSet<>();
+      for (Block block : blockBlobClient.listBlocks(BlockListType.UNCOMMITTED).getUncommittedBlocks()) {
+        blockIds.add(block.getName());
+      }
+      return blockIds;
+    } catch (BlobStorageException e) {
+      if (e.getStatusCode() == 404) {
+        return Collections.emptySet();
+      }
+      throw e;
+    }
+  }
+
+  private String describe(ParallelTransferOptions transferOptions, long sizeBytes) {
+    if (uploadTuning.isSingleShot(sizeBytes) && sizeBytes > 0) {
+      return "single-shot put";
+    }
+    return "block size " + transferOptions.getBlockSizeLong() / BYTES_PER_MB + " MB, concurrency "
+        + transferOptions.getMaxConcurrency();
+  }
+
+  private void logThroughput(String blobName, long sizeBytes, long elapsedNanos) {
+    if (!EventLog.isEnabled(EventType.UPLOADED)) {
+      return;
+    }
+    long elapsedMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(elapsedNanos), 1);
+    EventLog.record(EventType.UPLOADED, blobName, sizeBytes,
+        "elapsed_ms=" + elapsedMillis + " mb_per_s=" + sizeBytes * 1000 / elapsedMillis / BYTES_PER_MB);
   }
 
   private BlobClient getBlobClient(String blobName) {
@@ -62,8 +296,105 @@ public class AzureBlobStorageDecrypt {
     return blobServiceClient.getBlobContainerClient(containerName);
   }
 
-  private String addTimestampToBlobName(String blobName) {
+  public String addTimestampToBlobName(String blobName) {
     String timestamp = LocalDateTime.now().format(TIMESTAMP_FORMAT);
     return timestamp + "-" + blobName;
   }
+
+  /**
+   * A block blob being written: bytes go to {@link #getOutputStream()} and are staged as blocks in the background,
+   * and {@link #commit} makes the blob visible with its checksums and encoding.
+   */
+  public static final class BlockUpload {
+    private final String blobName;
+    private final BlockBlobStager stager;
+    private final StagedBlockOutputStream blockStream;
+    private final CountingOutputStream countingStream;
+
+    private BlockUpload(String blobName, BlockBlobClient blockBlobClient, Set<String> alreadyStaged, int blockSize,
+                        int maxConcurrency, LongConsumer progress) {
+      this.blobName = blobName;
+      this.stager = new BlockBlobStager(blockBlobClient);
+      this.blockStream = new StagedBlockOutputStream(stager, alreadyStaged, blockSize, maxConcurrency, progress,
+          STAGE_EXECUTOR);
+      this.countingStream = new CountingOutputStream(blockStream);
+    }
+
+    public String getBlobName() { return blobName; }
+    public OutputStream getOutputStream() { return countingStream; }
+
+    /** Waits for the blocks still staging and commits them; {@code content} may be null. */
+    public UploadedBlob commit(BlobContent content) throws IOException {
+      stager.content = content;
+      countingStream.close();
+      return new UploadedBlob(blobName, countingStream.getCount(), content);
+    }
+
+    /** Stops staging; blocks already staged are left uncommitted and expire with the service's cleanup. */
+    public void abort() {
+      blockStream.abort();
+    }
+  }
+
+  @FunctionalInterface
+  public interface BlobStreamWriter {
+    /** Writes the blob content and describes what was written, or returns null to upload without checksums. */
+    BlobContent writeTo(OutputStream outputStream) throws Exception;
+  }
+
+  private static final class BlockBlobStager implements StagedBlockOutputStream.BlockStager {
+    private final BlockBlobClient blockBlobClient;
+    volatile BlobContent content;
+
+    BlockBlobStager(BlockBlobClient blockBlobClient) {
+      this.blockBlobClient = blockBlobClient;
+    }
+
+    @Override
+    public void stage(String blockId, byte[] data, int length, byte[] md5) {
+      // The MD5 makes the service reject a block corrupted in transit.
+      blockBlobClient.stageBlockWithResponse(blockId, new ByteArrayInputStream(data, 0, length), length, md5,
+          null, null, Context.NONE);
+    }
+
+    @Override
+    public void commit(List<String> blockIds) {
+      blockBlobClient.commitBlockListWithResponse(new BlockBlobCommitBlockListOptions(blockIds)
+          .setHeaders(headersFor(content))
+          .setMetadata(metadataFor(content)), null, Context.NONE);
+    }
+
+    @Override
+    public void upload(byte[] data, int length, byte[] md5) {
+      blockBlobClient.uploadWithResponse(new BlockBlobSimpleUploadOptions(new ByteArrayInputStream(data, 0, length),
+          length)
+          .setContentMd5(md5)
+          .setHeaders(headersFor(content))
+          .setMetadata(metadataFor(content)), null, Context.NONE);
+    }
+  }
+
+  private static class CountingOutputStream extends FilterOutputStream {
+    private long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+    long getCount() {
+      return count;
+    }
+  }
 }
\ No newline at end of file
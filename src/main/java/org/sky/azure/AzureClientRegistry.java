@@ -0,0 +1,94 @@
+package org.sky.azure;
+
+import com.azure.core.http.HttpClient;
+import com.azure.core.util.HttpClientOptions;
+import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.BlobServiceClient;
+import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.BlobUrlParts;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public final class AzureClientRegistry {
+
+  private static final String STORAGE_SCOPE = "https://storage.azure.com/.default";
+  private static final String KEY_VAULT_SCOPE = "https://vault.azure.net/.default";
+  private static final int MAX_CONNECTIONS = 64;
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+  private static final Duration CONNECTION_IDLE_TIMEOUT = Duration.ofSeconds(60);
+
+  private static final ConcurrentHashMap<String, BlobServiceClient> BLOB_SERVICE_CLIENTS = new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<List<Object>, AzureBlobStorageDecrypt> BLOB_STORAGES =
+      new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<String, AzureKeyVaultClient> KEY_VAULT_CLIENTS = new ConcurrentHashMap<>();
+  private static final ConcurrentHashMap<String, AzureTableStorageClient> TABLE_CLIENTS = new ConcurrentHashMap<>();
+  private static final AtomicBoolean WARMED_UP = new AtomicBoolean();
+
+  private AzureClientRegistry() {
+  }
+
+  public static HttpClient getHttpClient() {
+    return HttpClientHolder.HTTP_CLIENT;
+  }
+
+  public static AzureKeyVaultClient keyVault(String keyVaultUrl) {
+    return KEY_VAULT_CLIENTS.computeIfAbsent(keyVaultUrl, AzureKeyVaultClient::new);
+  }
+
+  public static AzureBlobStorageDecrypt blobStorage(String storageAccountUrl, String containerName) {
+    return blobStorage(storageAccountUrl, containerName, BlobUploadTuning.defaults());
+  }
+
+  /** One client per container and tuning, so changed upload settings take effect on the next invocation. */
+  public static AzureBlobStorageDecrypt blobStorage(String storageAccountUrl, String containerName,
+                                                    BlobUploadTuning uploadTuning) {
+    return BLOB_STORAGES.computeIfAbsent(Arrays.asList(storageAccountUrl, containerName, uploadTuning),
+        key -> new AzureBlobStorageDecrypt(storageAccountUrl, containerName, uploadTuning));
+  }
+
+  public static AzureTableStorageClient tableStorage(String storageAccountUrl, String tableName) {
+    return TABLE_CLIENTS.computeIfAbsent(storageAccountUrl + "|" + tableName,
+        key -> new AzureTableStorageClient(storageAccountUrl, tableName));
+  }
+
+  public static BlobClient blobClient(String blobUrl) {
+    BlobUrlParts urlParts = BlobUrlParts.parse(blobUrl);
+    String storageAccountUrl = urlParts.getScheme() + "://" + urlParts.getHost();
+    return blobServiceClient(storageAccountUrl)
+        .getBlobContainerClient(urlParts.getBlobContainerName())
+        .getBlobClient(urlParts.getBlobName());
+  }
+
+  public static void warmUp() {
+    if (WARMED_UP.compareAndSet(false, true)) {
+      AzureCredentialsProvider.prefetchTokens(STORAGE_SCOPE, KEY_VAULT_SCOPE);
+    }
+  }
+
+  /**
+   * Sends one request to the container, so the pooled connection, TLS session and storage token are in place
+   * before the first invocation needs them. Returns whether the container exists.
+   */
+  public static boolean connect(String storageAccountUrl, String containerName) {
+    return blobServiceClient(storageAccountUrl).getBlobContainerClient(containerName).exists();
+  }
+
+  static BlobServiceClient blobServiceClient(String storageAccountUrl) {
+    return BLOB_SERVICE_CLIENTS.computeIfAbsent(storageAccountUrl, url -> new BlobServiceClientBuilder()
+        .endpoint(url)
+        .credential(AzureCredentialsProvider.getCredentials())
+        .httpClient(getHttpClient())
+        .buildClient());
+  }
+
+  private static class HttpClientHolder {
+    private static final HttpClient HTTP_CLIENT = HttpClient.createDefault(new HttpClientOptions()
+        .setMaximumConnectionPoolSize(MAX_CONNECTIONS)
+        .setConnectTimeout(CONNECT_TIMEOUT)
+        .setConnectionIdleTimeout(CONNECTION_IDLE_TIMEOUT));
+  }
+}
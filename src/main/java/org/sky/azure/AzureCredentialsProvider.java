@@ -1,21 +1,36 @@
 package org.sky.azure;
 
+import com.azure.core.credential.TokenRequestContext;
 import com.azure.identity.DefaultAzureCredential;
 import com.azure.identity.DefaultAzureCredentialBuilder;
 
+import java.util.logging.Logger;
+
 public class AzureCredentialsProvider {
-  private static DefaultAzureCredential credential;
+  private static final Logger logger = Logger.getLogger(AzureCredentialsProvider.class.getName());
 
   private AzureCredentialsProvider(){}
 
   public static DefaultAzureCredential getCredentials(){
-    if(credential == null){
-      credential = createCredential();
+    return CredentialHolder.CREDENTIAL;
+  }
+
+  public static void prefetchTokens(String... scopes){
+    for (String scope : scopes) {
+      getCredentials().getToken(new TokenRequestContext().addScopes(scope))
+          .subscribe(
+              token -> logger.fine("Access token prefetched for scope: " + scope),
+              error -> logger.warning("Failed to prefetch access token for scope " + scope + ": " + error.getMessage()));
     }
-    return credential;
   }
 
   private static DefaultAzureCredential createCredential() {
-    return new DefaultAzureCredentialBuilder().build();
+    return new DefaultAzureCredentialBuilder()
+        .httpClient(AzureClientRegistry.getHttpClient())
+        .build();
+  }
+
+  private static class CredentialHolder {
+    private static final DefaultAzureCredential CREDENTIAL = createCredential();
   }
 }
@@ -4,6 +4,7 @@ import com.azure.security.keyvault.secrets.SecretClient;
 import com.azure.security.keyvault.secrets.SecretClientBuilder;
 import com.azure.security.keyvault.secrets.models.KeyVaultSecret;
 import org.sky.function.exception.KeyVaultException;
+import org.sky.model.VersionedSecret;
 
 
 public class AzureKeyVaultClient {
@@ -16,6 +17,7 @@ public class AzureKeyVaultClient {
     return new SecretClientBuilder()
         .vaultUrl(keyVaultUrl)
         .credential(AzureCredentialsProvider.getCredentials())
+        .httpClient(AzureClientRegistry.getHttpClient())
         .buildClient();
   }
   public String getSecret(String secretName){
@@ -26,6 +28,14 @@ public class AzureKeyVaultClient {
       throw new KeyVaultException("Failed to retrieve secret: " + secretName, e);
     }
   }
+  public VersionedSecret getVersionedSecret(String secretName){
+    try{
+      KeyVaultSecret secret = secretClient.getSecret(secretName);
+      return new VersionedSecret(secretName, secret.getProperties().getVersion(), secret.getValue());
+    }catch (Exception e){
+      throw new KeyVaultException("Failed to retrieve secret: " + secretName, e);
+    }
+  }
   public String getEncryptionPassword(String secretName){
     return getSecret(secretName);
   }
@@ -3,15 +3,40 @@ package org.sky.azure;
 import com.azure.data.tables.TableClient;
 import com.azure.data.tables.TableClientBuilder;
 import com.azure.data.tables.models.TableEntity;
+import com.azure.data.tables.models.TableServiceException;
+import com.azure.data.tables.models.TableTransactionAction;
+import com.azure.data.tables.models.TableTransactionActionType;
+import org.sky.events.EventLog;
+import org.sky.events.EventType;
 import org.sky.model.DecryptionLog;
+import org.sky.model.DedupRecord;
+import org.sky.model.UploadCheckpoint;
+import org.sky.model.UploadedBlob;
 
-public class AzureTableStorageClient {
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class AzureTableStorageClient implements UploadCheckpointStore {
+
+  private static final Set<String> BOOTSTRAPPED_TABLES = ConcurrentHashMap.newKeySet();
+  private static final int LOG_QUEUE_CAPACITY = 5000;
+  private static final Duration LOG_FLUSH_INTERVAL = Duration.ofSeconds(1);
+  private static final Duration LOG_ENQUEUE_TIMEOUT = Duration.ofSeconds(5);
 
   private final TableClient tableClient;
+  private final String tableKey;
+  private final DecryptionLogWriter logWriter;
 
   public AzureTableStorageClient(String storageAccountUrl, String tableName) {
     this.tableClient = createTableClient(storageAccountUrl, tableName);
+    this.tableKey = storageAccountUrl + "/" + tableName;
     ensureTableExists();
+    this.logWriter = new DecryptionLogWriter(this::submitTransaction,
+        LOG_QUEUE_CAPACITY, LOG_FLUSH_INTERVAL, LOG_ENQUEUE_TIMEOUT);
+    Runtime.getRuntime().addShutdownHook(new Thread(logWriter::close, "decryption-log-writer-shutdown"));
   }
 
   private TableClient createTableClient(String storageAccountUrl, String tableName) {
@@ -20,38 +45,137 @@ public class AzureTableStorageClient {
     return new TableClientBuilder()
         .endpoint(tableEndpoint)
         .credential(AzureCredentialsProvider.getCredentials())
+        .httpClient(AzureClientRegistry.getHttpClient())
         .tableName(tableName)
         .buildClient();
   }
 
+  /**
+   * Creates the table once per process. Only a created table or a 409 conflict counts: after any other failure the
+   * next write tries again, instead of every later write failing against a table that was never made.
+   */
   private void ensureTableExists() {
+    if (BOOTSTRAPPED_TABLES.contains(tableKey)) {
+      return;
+    }
     try {
       tableClient.createTable();
-    } catch (Exception e) {
-      // Table already exists, ignore
+    } catch (TableServiceException e) {
+      if (e.getResponse() == null || e.getResponse().getStatusCode() != 409) {
+        EventLog.record(EventType.LOG_WRITE_FAILED, tableKey, 0, "create table: " + e.getMessage());
+        return;
+      }
+    } catch (RuntimeException e) {
+      EventLog.record(EventType.LOG_WRITE_FAILED, tableKey, 0, "create table: " + e.getMessage());
+      return;
     }
+    BOOTSTRAPPED_TABLES.add(tableKey);
   }
 
   public void logDecryption(DecryptionLog log) {
+    ensureTableExists();
     try {
-      TableEntity entity = log.toTableEntity();
-      tableClient.createEntity(entity);
+      for (TableEntity entity : log.toTableEntities()) {
+        tableClient.upsertEntity(entity);
+      }
     } catch (Exception e) {
       throw new RuntimeException("Failed to log decryption to table storage", e);
     }
   }
 
+  public DecryptionLogQuery query() {
+    return new DecryptionLogQuery(tableClient);
+  }
+
+  public boolean flushLogs(Duration timeout) {
+    return logWriter.flush(timeout);
+  }
+
+  private void submitTransaction(List<TableEntity> entities) {
+    ensureTableExists();
+    List<TableTransactionAction> actions = new ArrayList<>(entities.size());
+    for (TableEntity entity : entities) {
+      // Upserts keep a retried batch idempotent if the first attempt was applied but its response was lost.
+      actions.add(new TableTransactionAction(TableTransactionActionType.UPSERT_REPLACE, entity));
+    }
+    tableClient.submitTransaction(actions);
+  }
+
+  public void logBatch(List<DecryptionLog> logs) {
+    logWriter.writeAll(logs);
+  }
+
   public void logSuccess(String blobName, long fileSizeBytes, long processingTimeMs) {
+    logSuccess(blobName, fileSizeBytes, processingTimeMs, null);
+  }
+
+  public void logSuccess(String blobName, long fileSizeBytes, long processingTimeMs, String stageTimings) {
+    logSuccess(blobName, fileSizeBytes, processingTimeMs, stageTimings, null);
+  }
+
+  public void logSuccess(String blobName, long fileSizeBytes, long processingTimeMs, String stageTimings,
+                         UploadedBlob uploaded) {
     DecryptionLog log = new DecryptionLog(blobName, "SUCCESS");
     log.setFileSizeBytes(fileSizeBytes);
     log.setProcessingTimeMs(processingTimeMs);
-    logDecryption(log);
+    log.setStageTimings(stageTimings);
+    log.setUploadedBlob(uploaded);
+    logWriter.enqueue(log);
+  }
+
+  public void logDuplicate(String blobName, long fileSizeBytes, long processingTimeMs, String duplicateOf) {
+    DecryptionLog log = new DecryptionLog(blobName, "DUPLICATE");
+    log.setFileSizeBytes(fileSizeBytes);
+    log.setProcessingTimeMs(processingTimeMs);
+    log.setDuplicateOf(duplicateOf);
+    logWriter.enqueue(log);
+  }
+
+  public DedupRecord findDedupRecord(String key) {
+    try {
+      return DedupRecord.fromTableEntity(tableClient.getEntity(DedupRecord.partitionKey(key), key));
+    } catch (TableServiceException e) {
+      if (e.getResponse() != null && e.getResponse().getStatusCode() == 404) {
+        return null;
+      }
+      throw e;
+    }
+  }
+
+  // Written directly rather than through the log writer: a retry must see it as soon as this invocation ends.
+  public void saveDedupRecord(DedupRecord record) {
+    ensureTableExists();
+    tableClient.upsertEntity(record.toTableEntity());
+  }
+
+  @Override
+  public UploadCheckpoint findUploadCheckpoint(String sourceKey) {
+    try {
+      return UploadCheckpoint.fromTableEntity(
+          tableClient.getEntity(UploadCheckpoint.partitionKey(sourceKey), sourceKey));
+    } catch (TableServiceException e) {
+      if (e.getResponse() != null && e.getResponse().getStatusCode() == 404) {
+        return null;
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public void saveUploadCheckpoint(UploadCheckpoint checkpoint) {
+    ensureTableExists();
+    tableClient.upsertEntity(checkpoint.toTableEntity());
+  }
+
+  @Override
+  public void deleteUploadCheckpoint(String sourceKey) {
+    tableClient.deleteEntity(UploadCheckpoint.partitionKey(sourceKey), sourceKey);
   }
 
   public void logFailure(String blobName, long fileSizeBytes, String errorMessage) {
     DecryptionLog log = new DecryptionLog(blobName, "FAILED");
     log.setFileSizeBytes(fileSizeBytes);
     log.setErrorMessage(errorMessage);
-    logDecryption(log);
+    logWriter.enqueue(log);
   }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package org.sky.azure;
+
+import com.azure.storage.blob.models.ParallelTransferOptions;
+
+import java.util.Objects;
+
+public class BlobUploadTuning {
+
+  private static final long MB = 1024L * 1024;
+  private static final long MIN_BLOCK_SIZE = 4 * MB;
+  private static final long MAX_BLOCK_SIZE = 100 * MB;
+  private static final long MAX_BLOCKS_PER_BLOB = 50_000;
+  private static final int BLOCKS_PER_WORKER = 4;
+  private static final long DEFAULT_SINGLE_SHOT_THRESHOLD = 8 * MB;
+
+  private final long fixedBlockSize;
+  private final int maxConcurrency;
+  private final long singleShotThreshold;
+  private final long bufferBudget;
+
+  public BlobUploadTuning(long fixedBlockSize, int maxConcurrency, long singleShotThreshold) {
+    this.fixedBlockSize = fixedBlockSize;
+    this.maxConcurrency = maxConcurrency > 0
+        ? maxConcurrency
+        : Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+    this.singleShotThreshold = singleShotThreshold;
+    // Every in-flight block is buffered in memory, so keep the total below a quarter of the heap.
+    this.bufferBudget = Math.max(MIN_BLOCK_SIZE * 2, Runtime.getRuntime().maxMemory() / 4);
+  }
+
+  public static BlobUploadTuning defaults() {
+    return new BlobUploadTuning(0, 0, DEFAULT_SINGLE_SHOT_THRESHOLD);
+  }
+
+  public static BlobUploadTuning fromMegabytes(long blockSizeMb, int maxConcurrency, long singleShotThresholdMb) {
+    return new BlobUploadTuning(blockSizeMb * MB, maxConcurrency, singleShotThresholdMb * MB);
+  }
+
+  public ParallelTransferOptions forSize(long sizeBytes) {
+    long blockSize = fixedBlockSize > 0 ? fixedBlockSize : adaptiveBlockSize(sizeBytes);
+    long blocks = Math.max(1, (sizeBytes + blockSize - 1) / blockSize);
+    int concurrency = (int) Math.min(Math.min(maxConcurrency, blocks), Math.max(1, bufferBudget / blockSize));
+
+    return new ParallelTransferOptions()
+        .setBlockSizeLong(blockSize)
+        .setMaxConcurrency(concurrency)
+        .setMaxSingleUploadSizeLong(Math.max(1, singleShotThreshold));
+  }
+
+  public boolean isSingleShot(long sizeBytes) {
+    return sizeBytes <= singleShotThreshold;
+  }
+
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof BlobUploadTuning)) {
+      return false;
+    }
+    BlobUploadTuning tuning = (BlobUploadTuning) other;
+    return fixedBlockSize == tuning.fixedBlockSize
+        && maxConcurrency == tuning.maxConcurrency
+        && singleShotThreshold == tuning.singleShotThreshold;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(fixedBlockSize, maxConcurrency, singleShotThreshold);
+  }
+
+  private long adaptiveBlockSize(long sizeBytes) {
+    // Enough blocks to keep every worker busy a few times over, without exceeding the 50k block limit.
+    long perWorker = sizeBytes / ((long) maxConcurrency * BLOCKS_PER_WORKER);
+    long minimumForLimit = (sizeBytes + MAX_BLOCKS_PER_BLOB - 1) / MAX_BLOCKS_PER_BLOB;
+    long blockSize = Math.max(Math.max(perWorker, minimumForLimit), MIN_BLOCK_SIZE);
+    long rounded = ((blockSize + MB - 1) / MB) * MB;
+    return Math.min(rounded, Math.max(MAX_BLOCK_SIZE, minimumForLimit));
+  }
+}
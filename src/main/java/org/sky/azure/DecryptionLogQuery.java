@@ -0,0 +1,130 @@
+package org.sky.azure;
+
+import com.azure.data.tables.TableClient;
+import com.azure.data.tables.models.ListEntitiesOptions;
+import org.sky.model.DecryptionLog;
+import org.sky.utils.DaemonThreads;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+public class DecryptionLogQuery {
+
+  private static final Duration DEFAULT_WINDOW = Duration.ofHours(1);
+  private static final Duration MAX_WINDOW = Duration.ofDays(7);
+  private static final int DEFAULT_LIMIT = 1000;
+  private static final int SCAN_PARALLELISM = 8;
+  private static final ExecutorService SCAN_EXECUTOR = Executors.newFixedThreadPool(SCAN_PARALLELISM,
+      DaemonThreads.named("decryption-log-query"));
+
+  private final TableClient tableClient;
+  private Instant from;
+  private Instant to;
+  private String status;
+  private String blobName;
+  private int limit = DEFAULT_LIMIT;
+
+  DecryptionLogQuery(TableClient tableClient) {
+    this.tableClient = tableClient;
+  }
+
+  public DecryptionLogQuery from(OffsetDateTime from) {
+    this.from = from.toInstant();
+    return this;
+  }
+
+  public DecryptionLogQuery to(OffsetDateTime to) {
+    this.to = to.toInstant();
+    return this;
+  }
+
+  public DecryptionLogQuery status(String status) {
+    this.status = status;
+    return this;
+  }
+
+  public DecryptionLogQuery blobName(String blobName) {
+    this.blobName = blobName;
+    return this;
+  }
+
+  public DecryptionLogQuery limit(int limit) {
+    this.limit = limit;
+    return this;
+  }
+
+  public List<DecryptionLog> execute() {
+    Instant end = to != null ? to : Instant.now();
+    Instant start = from != null ? from : end.minus(DEFAULT_WINDOW);
+    if (start.isAfter(end) || Duration.between(start, end).compareTo(MAX_WINDOW) > 0) {
+      throw new IllegalArgumentException("Query window must be between 0 and " + MAX_WINDOW.toDays() + " days");
+    }
+
+    try {
+      if (blobName != null) {
+        return scanPartition(DecryptionLog.indexPartitionKey(blobName),
+            buildRowFilter(DecryptionLog.indexRowKeyPrefix(blobName), start, end));
+      }
+      return scanBuckets(partitionKeys(start, end), buildRowFilter("", start, end));
+    } catch (Exception e) {
+      throw new RuntimeException("Failed to query decryption logs", e);
+    }
+  }
+
+  static List<String> partitionKeys(Instant start, Instant end) {
+    List<String> partitionKeys = new ArrayList<>();
+    for (Instant hour = start.truncatedTo(ChronoUnit.HOURS); !hour.isAfter(end); hour = hour.plus(1, ChronoUnit.HOURS)) {
+      for (int shard = 0; shard < DecryptionLog.SHARD_COUNT; shard++) {
+        partitionKeys.add(DecryptionLog.partitionKey(hour, shard));
+      }
+    }
+    return partitionKeys;
+  }
+
+  private List<DecryptionLog> scanBuckets(List<String> partitionKeys, String rowFilter) {
+    List<CompletableFuture<List<DecryptionLog>>> scans = partitionKeys.stream()
+        .map(partitionKey -> CompletableFuture.supplyAsync(() -> scanPartition(partitionKey, rowFilter), SCAN_EXECUTOR))
+        .collect(Collectors.toList());
+
+    return scans.stream()
+        .flatMap(scan -> scan.join().stream())
+        .sorted(Comparator.comparing(DecryptionLog::getRowKey))
+        .limit(limit)
+        .collect(Collectors.toList());
+  }
+
+  private List<DecryptionLog> scanPartition(String partitionKey, String rowFilter) {
+    ListEntitiesOptions options = new ListEntitiesOptions()
+        .setFilter("PartitionKey eq " + quote(partitionKey) + " and " + rowFilter)
+        .setTop(Math.min(limit, 1000));
+
+    return StreamSupport.stream(tableClient.listEntities(options, null, null).spliterator(), false)
+        .limit(limit)
+        .map(DecryptionLog::fromTableEntity)
+        .collect(Collectors.toList());
+  }
+
+  private String buildRowFilter(String rowKeyPrefix, Instant start, Instant end) {
+    // Newer entries have smaller row keys, so the end of the window is the lower bound.
+    String filter = "RowKey ge " + quote(rowKeyPrefix + DecryptionLog.rowKeyPrefix(end))
+        + " and RowKey le " + quote(rowKeyPrefix + DecryptionLog.rowKeyPrefix(start) + "~");
+    if (status != null) {
+      filter += " and Status eq " + quote(status);
+    }
+    return filter;
+  }
+
+  private static String quote(String value) {
+    return "'" + value.replace("'", "''") + "'";
+  }
+}
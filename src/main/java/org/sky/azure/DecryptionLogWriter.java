@@ -0,0 +1,209 @@
+package org.sky.azure;
+
+import com.azure.data.tables.models.TableEntity;
+import org.sky.model.DecryptionLog;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class DecryptionLogWriter implements AutoCloseable {
+
+  static final int MAX_BATCH_SIZE = 100;
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long RETRY_BACKOFF_MS = 200;
+
+  private final BatchSink sink;
+  private final BlockingQueue<DecryptionLog> queue;
+  private final long flushIntervalNanos;
+  private final long enqueueTimeoutNanos;
+  private final Thread worker;
+  private final Object pendingLock = new Object();
+  private final Logger logger = Logger.getLogger(DecryptionLogWriter.class.getName());
+  private long pending;
+  private volatile boolean running = true;
+
+  DecryptionLogWriter(BatchSink sink, int capacity, Duration flushInterval, Duration enqueueTimeout) {
+    this.sink = sink;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.flushIntervalNanos = flushInterval.toNanos();
+    this.enqueueTimeoutNanos = enqueueTimeout.toNanos();
+    this.worker = new Thread(this::runLoop, "decryption-log-writer");
+    this.worker.setDaemon(true);
+    this.worker.start();
+  }
+
+  public void enqueue(DecryptionLog log) {
+    synchronized (pendingLock) {
+      pending++;
+    }
+    try {
+      // Closing between the check and the offer can let the worker exit first; it only takes records out of the
+      // queue, so one that can still be removed has not been written and falls through to the caller thread.
+      if (running && queue.offer(log, enqueueTimeoutNanos, TimeUnit.NANOSECONDS)
+          && (running || !queue.remove(log))) {
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    // Queue is saturated or closed: write on the caller thread so records are never dropped silently.
+    List<DecryptionLog> single = new ArrayList<>(1);
+    single.add(log);
+    writeBatch(single);
+  }
+
+  public void writeAll(List<DecryptionLog> logs) {
+    if (logs.isEmpty()) {
+      return;
+    }
+    synchronized (pendingLock) {
+      pending += logs.size();
+    }
+    // Written on the caller thread and failing it if any entry is dropped, so a trigger only completes once its
+    // batch is stored; otherwise the message is retried.
+    Exception failure = writeBatch(new ArrayList<>(logs));
+    if (failure != null) {
+      throw new IllegalStateException("Decryption log batch not written after " + MAX_ATTEMPTS + " attempts",
+          failure);
+    }
+  }
+
+  public boolean flush(Duration timeout) {
+    long deadline = System.nanoTime() + timeout.toNanos();
+    synchronized (pendingLock) {
+      while (pending > 0) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        try {
+          TimeUnit.NANOSECONDS.timedWait(pendingLock, remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    try {
+      worker.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) + 10_000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void runLoop() {
+    List<DecryptionLog> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    while (running || !queue.isEmpty()) {
+      try {
+        collectBatch(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+      }
+      if (!batch.isEmpty()) {
+        writeBatch(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  private void collectBatch(List<DecryptionLog> batch) throws InterruptedException {
+    DecryptionLog first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+    if (first == null) {
+      return;
+    }
+    batch.add(first);
+    long deadline = System.nanoTime() + flushIntervalNanos;
+
+    while (batch.size() < MAX_BATCH_SIZE) {
+      queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+      long remaining = deadline - System.nanoTime();
+      if (batch.size() >= MAX_BATCH_SIZE || remaining <= 0) {
+        return;
+      }
+      DecryptionLog next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        return;
+      }
+      batch.add(next);
+    }
+  }
+
+  /** Returns the error of the first transaction dropped after every attempt, or null if all were written. */
+  private Exception writeBatch(List<DecryptionLog> batch) {
+    // Entity-group transactions only accept entities that share a partition key.
+    Map<String, List<TableEntity>> byPartition = new LinkedHashMap<>();
+    Exception failure = null;
+    try {
+      for (DecryptionLog log : batch) {
+        try {
+          for (TableEntity entity : log.toTableEntities()) {
+            byPartition.computeIfAbsent(entity.getPartitionKey(), key -> new ArrayList<>()).add(entity);
+          }
+        } catch (RuntimeException e) {
+          logger.log(Level.SEVERE, "Dropping invalid decryption log entry", e);
+        }
+      }
+
+      for (List<TableEntity> entities : byPartition.values()) {
+        for (int from = 0; from < entities.size(); from += MAX_BATCH_SIZE) {
+          Exception error = writeWithRetry(entities.subList(from, Math.min(from + MAX_BATCH_SIZE, entities.size())));
+          if (failure == null) {
+            failure = error;
+          }
+        }
+      }
+    } finally {
+      synchronized (pendingLock) {
+        pending -= batch.size();
+        pendingLock.notifyAll();
+      }
+    }
+    return failure;
+  }
+
+  private Exception writeWithRetry(List<TableEntity> entities) {
+    for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+      try {
+        sink.write(entities);
+        return null;
+      } catch (Exception e) {
+        if (attempt == MAX_ATTEMPTS) {
+          logger.log(Level.SEVERE, "Dropping " + entities.size() + " decryption log entries after "
+              + MAX_ATTEMPTS + " attempts", e);
+          return e;
+        }
+        logger.warning("Decryption log batch failed (attempt " + attempt + "): " + e.getMessage());
+        sleepQuietly(RETRY_BACKOFF_MS << (attempt - 1));
+      }
+    }
+    return null;
+  }
+
+  private void sleepQuietly(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @FunctionalInterface
+  interface BatchSink {
+    void write(List<TableEntity> entities) throws Exception;
+  }
+}
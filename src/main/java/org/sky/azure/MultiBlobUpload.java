@@ -0,0 +1,135 @@
+package org.sky.azure;
+
+import org.sky.events.EventLog;
+import org.sky.events.EventType;
+import org.sky.model.BlobContent;
+import org.sky.model.PlaintextChecksum;
+import org.sky.model.UploadedBlob;
+import org.sky.utils.DaemonThreads;
+import org.sky.utils.EncodingOutputStream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Writes related blobs one after another, each a staged upload with its own checksums and encoding. While the
+ * next blob is written, the last blocks and the commit of the previous ones finish in the background, up to
+ * {@code maxCommitting} blobs at a time, so small blobs upload concurrently and large ones overlap.
+ */
+public class MultiBlobUpload {
+
+  private static final ExecutorService COMMIT_EXECUTOR = DaemonThreads.boundedPool("blob-part-commit",
+      DaemonThreads.perCore(2, 8));
+
+  @FunctionalInterface
+  public interface Encoder {
+    /** Wraps the upload stream of one blob, expected to hold about {@code expectedSizeBytes}, in the output codec. */
+    EncodingOutputStream wrap(OutputStream target, long expectedSizeBytes) throws IOException;
+  }
+
+  private final AzureBlobStorageDecrypt storage;
+  private final Encoder encoder;
+  private final int maxCommitting;
+  private final List<Future<UploadedBlob>> committed = new ArrayList<>();
+  private AzureBlobStorageDecrypt.BlockUpload upload;
+  private EncodingOutputStream encoding;
+  private MessageDigest md5;
+  private MessageDigest sha256;
+
+  MultiBlobUpload(AzureBlobStorageDecrypt storage, Encoder encoder, int maxCommitting) {
+    this.storage = storage;
+    this.encoder = encoder;
+    this.maxCommitting = maxCommitting;
+  }
+
+  /** Starts the next blob; the returned stream hashes the plaintext and is closed by the caller. */
+  OutputStream open(String blobName, long expectedSizeBytes) throws IOException {
+    upload = storage.openUpload(blobName, expectedSizeBytes);
+    encoding = encoder.wrap(upload.getOutputStream(), expectedSizeBytes);
+    md5 = newDigest("MD5");
+    sha256 = newDigest("SHA-256");
+    return new DigestOutputStream(new DigestOutputStream(encoding, sha256), md5);
+  }
+
+  /** Hands the blob opened last to the background commit; {@code detail} goes on its upload event. */
+  void commit(String detail) throws IOException {
+    AzureBlobStorageDecrypt.BlockUpload blobUpload = upload;
+    BlobContent content = encoding.describe(new PlaintextChecksum(md5.digest(), sha256.digest()));
+    upload = null;
+    encoding = null;
+    if (committed.size() >= maxCommitting) {
+      await(committed.get(committed.size() - maxCommitting));
+    }
+    committed.add(COMMIT_EXECUTOR.submit(() -> {
+      UploadedBlob blob = blobUpload.commit(content);
+      EventLog.record(EventType.UPLOADED, blob.getBlobName(), blob.getSizeBytes(), detail);
+      return blob;
+    }));
+  }
+
+  /** Waits for every commit and returns the blobs in the order they were opened. */
+  List<UploadedBlob> awaitAll() throws IOException {
+    List<UploadedBlob> blobs = new ArrayList<>(committed.size());
+    for (Future<UploadedBlob> blob : committed) {
+      blobs.add(await(blob));
+    }
+    return blobs;
+  }
+
+  /** Uploads a small blob as is, such as a manifest, after the others. */
+  UploadedBlob uploadBytes(String blobName, byte[] data) throws IOException {
+    AzureBlobStorageDecrypt.BlockUpload bytesUpload = storage.openUpload(blobName, data.length);
+    bytesUpload.getOutputStream().write(data);
+    PlaintextChecksum checksum = new PlaintextChecksum(newDigest("MD5").digest(data),
+        newDigest("SHA-256").digest(data));
+    return bytesUpload.commit(BlobContent.plain(checksum, data.length));
+  }
+
+  /**
+   * Drops the blob being written and deletes those already committed; without the final marker they were never
+   * part of a visible set, and a retry writes a new one.
+   */
+  void abort(String subject) {
+    if (encoding != null) {
+      encoding.abort();
+    }
+    if (upload != null) {
+      upload.abort();
+    }
+    for (Future<UploadedBlob> blob : committed) {
+      try {
+        storage.deleteIfExists(await(blob).getBlobName());
+      } catch (IOException | RuntimeException e) {
+        EventLog.record(EventType.SHARD_DELETE_FAILED, subject, 0, e.getMessage());
+      }
+    }
+  }
+
+  private static UploadedBlob await(Future<UploadedBlob> blob) throws IOException {
+    try {
+      return blob.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while committing blobs");
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to commit blob", e.getCause());
+    }
+  }
+
+  private static MessageDigest newDigest(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(algorithm + " is not available", e);
+    }
+  }
+}
@@ -0,0 +1,253 @@
+package org.sky.azure;
+
+import com.azure.core.util.Context;
+import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.models.BlobProperties;
+import com.azure.storage.blob.models.BlobRange;
+import com.azure.storage.blob.models.BlobRequestConditions;
+import org.sky.utils.BufferPool;
+import org.sky.utils.DaemonThreads;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+public class RangedBlobInputStream extends InputStream {
+
+  // Every open stream keeps its read-ahead window in flight; past this many downloads the rest wait in the queue.
+  private static final ExecutorService DOWNLOAD_EXECUTOR = DaemonThreads.boundedPool("blob-range-download",
+      DaemonThreads.perCore(4, 16));
+
+  private final RangeReader rangeReader;
+  private final long length;
+  private final int rangeSize;
+  private final int readAhead;
+  private final Executor executor;
+  private final Deque<PendingRange> pendingRanges = new ArrayDeque<>();
+  private long nextRangeOffset;
+  private byte[] currentRange;
+  private int currentLimit;
+  private int currentPosition;
+  private boolean closed;
+
+  RangedBlobInputStream(RangeReader rangeReader, long length, int rangeSize, int readAhead, Executor executor) {
+    if (rangeSize <= 0 || readAhead <= 0) {
+      throw new IllegalArgumentException("Range size and read-ahead window must be positive");
+    }
+    this.rangeReader = rangeReader;
+    this.length = length;
+    this.rangeSize = rangeSize;
+    this.readAhead = readAhead;
+    this.executor = executor;
+    fillWindow();
+  }
+
+  public static RangedBlobInputStream open(BlobClient blobClient, int rangeSize, int readAhead) {
+    return open(blobClient, blobClient.getProperties(), rangeSize, readAhead);
+  }
+
+  /** Opens with properties already fetched, e.g. to inspect the ETag before any range is requested. */
+  public static RangedBlobInputStream open(BlobClient blobClient, BlobProperties properties, int rangeSize,
+                                           int readAhead) {
+    // Pin every range to the ETag seen here so a blob overwritten mid-read fails instead of mixing versions.
+    BlobRequestConditions conditions = new BlobRequestConditions().setIfMatch(properties.getETag());
+
+    // Ranges land straight in pooled buffers, which go back to the pool once the reader has moved past them.
+    RangeReader rangeReader = (offset, count) -> {
+      byte[] buffer = BufferPool.shared().acquire(count);
+      try {
+        RangeBufferOutputStream rangeStream = new RangeBufferOutputStream(buffer, count);
+        blobClient.downloadStreamWithResponse(rangeStream, new BlobRange(offset, (long) count),
+            null, conditions, false, null, Context.NONE);
+        if (rangeStream.position != count) {
+          throw new IllegalStateException("Blob range at offset " + offset + " returned " + rangeStream.position
+              + " of " + count + " bytes");
+        }
+        return buffer;
+      } catch (RuntimeException e) {
+        BufferPool.shared().release(buffer);
+        throw e;
+      }
+    };
+    return new RangedBlobInputStream(rangeReader, properties.getBlobSize(), rangeSize, readAhead, DOWNLOAD_EXECUTOR);
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureRange()) {
+      return -1;
+    }
+    return currentRange[currentPosition++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int count) throws IOException {
+    if (count == 0) {
+      return 0;
+    }
+    if (!ensureRange()) {
+      return -1;
+    }
+    int copied = Math.min(count, currentLimit - currentPosition);
+    System.arraycopy(currentRange, currentPosition, buffer, offset, copied);
+    currentPosition += copied;
+    return copied;
+  }
+
+  @Override
+  public int available() {
+    return currentRange == null ? 0 : currentLimit - currentPosition;
+  }
+
+  /**
+   * Ranges still queued are never requested, and those downloading return their buffer to the pool when they
+   * arrive. A download in progress is not interrupted: the client may still be writing into its buffer.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    for (PendingRange pending : pendingRanges) {
+      pending.abandon();
+    }
+    pendingRanges.clear();
+    releaseCurrentRange();
+  }
+
+  private boolean ensureRange() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    while (currentRange == null || currentPosition >= currentLimit) {
+      releaseCurrentRange();
+      PendingRange next = pendingRanges.poll();
+      if (next == null) {
+        return false;
+      }
+      awaitRange(next.download);
+      currentRange = next.take();
+      currentLimit = next.length;
+      currentPosition = 0;
+      fillWindow();
+    }
+    return true;
+  }
+
+  private void releaseCurrentRange() {
+    if (currentRange != null) {
+      BufferPool.shared().release(currentRange);
+      currentRange = null;
+    }
+  }
+
+  private void awaitRange(CompletableFuture<Void> download) throws IOException {
+    try {
+      download.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for blob range");
+    } catch (ExecutionException e) {
+      close();
+      throw new IOException("Failed to download blob range", e.getCause());
+    }
+  }
+
+  private void fillWindow() {
+    while (pendingRanges.size() < readAhead && nextRangeOffset < length) {
+      long offset = nextRangeOffset;
+      int count = (int) Math.min(rangeSize, length - offset);
+      PendingRange range = new PendingRange(count);
+      range.download = CompletableFuture.runAsync(() -> {
+        if (!range.isAbandoned()) {
+          range.arrive(rangeReader.read(offset, count));
+        }
+      }, executor);
+      pendingRanges.add(range);
+      nextRangeOffset += count;
+    }
+  }
+
+  /** Reads {@code count} bytes at {@code offset} into the start of the returned array, which may be longer. */
+  @FunctionalInterface
+  interface RangeReader {
+    byte[] read(long offset, int count);
+  }
+
+  /** A range being downloaded; its buffer is handed over under the lock, so a closed stream never loses one. */
+  private static final class PendingRange {
+    final int length;
+    CompletableFuture<Void> download;
+    private byte[] data;
+    private boolean abandoned;
+
+    PendingRange(int length) {
+      this.length = length;
+    }
+
+    synchronized boolean isAbandoned() {
+      return abandoned;
+    }
+
+    synchronized void arrive(byte[] range) {
+      if (abandoned) {
+        BufferPool.shared().release(range);
+      } else {
+        data = range;
+      }
+    }
+
+    synchronized byte[] take() {
+      byte[] range = data;
+      data = null;
+      return range;
+    }
+
+    synchronized void abandon() {
+      abandoned = true;
+      if (data != null) {
+        BufferPool.shared().release(data);
+        data = null;
+      }
+    }
+  }
+
+  private static final class RangeBufferOutputStream extends OutputStream {
+    private final byte[] buffer;
+    private final int limit;
+    private int position;
+
+    RangeBufferOutputStream(byte[] buffer, int limit) {
+      this.buffer = buffer;
+      this.limit = limit;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      ensureCapacity(1);
+      buffer[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] source, int offset, int length) throws IOException {
+      ensureCapacity(length);
+      System.arraycopy(source, offset, buffer, position, length);
+      position += length;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+      if (position + length > limit) {
+        throw new IOException("Blob range returned more bytes than requested");
+      }
+    }
+  }
+}
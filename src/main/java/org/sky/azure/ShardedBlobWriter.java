@@ -0,0 +1,77 @@
+package org.sky.azure;
+
+import org.sky.events.EventLog;
+import org.sky.events.EventType;
+import org.sky.model.BlobContent;
+import org.sky.model.ShardManifest;
+import org.sky.model.UploadedBlob;
+import org.sky.utils.RecordShardingOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Uploads the shards of a {@link RecordShardingOutputStream} as {@code prefix/part-NNNNN<extension>}, up to
+ * {@value #MAX_SHARDS_COMMITTING} finishing in the background while the next is written. {@link #finish} then
+ * uploads the manifest, which is what makes the set visible to consumers.
+ */
+public class ShardedBlobWriter implements RecordShardingOutputStream.ShardSink {
+
+  private static final int MAX_SHARDS_COMMITTING = 4;
+
+  private final MultiBlobUpload uploads;
+  private final String prefix;
+  private final String extension;
+  private final long shardSizeBytes;
+  private final List<Long> records = new ArrayList<>();
+
+  public ShardedBlobWriter(AzureBlobStorageDecrypt storage, String prefix, String extension, long shardSizeBytes,
+                           MultiBlobUpload.Encoder encoder) {
+    this.uploads = new MultiBlobUpload(storage, encoder, MAX_SHARDS_COMMITTING);
+    this.prefix = prefix;
+    this.extension = extension;
+    this.shardSizeBytes = shardSizeBytes;
+  }
+
+  @Override
+  public OutputStream open(int index) throws IOException {
+    return uploads.open(String.format(Locale.ROOT, "%s/part-%05d%s", prefix, index, extension), shardSizeBytes);
+  }
+
+  @Override
+  public void finish(int index, long shardRecords) throws IOException {
+    records.add(shardRecords);
+    uploads.commit("shard, records=" + shardRecords);
+  }
+
+  /**
+   * Waits for every shard to be committed and uploads the manifest. {@code plaintext} describes the whole
+   * decrypted stream; the returned blob is the manifest, sized as the sum of the stored shards.
+   */
+  public UploadedBlob finish(String sourceBlobName, String recordFormat, BlobContent plaintext) throws IOException {
+    List<UploadedBlob> blobs = uploads.awaitAll();
+    List<ShardManifest.Shard> shards = new ArrayList<>(blobs.size());
+    for (int i = 0; i < blobs.size(); i++) {
+      shards.add(new ShardManifest.Shard(blobs.get(i), records.get(i)));
+    }
+    String contentEncoding = blobs.isEmpty() ? null : blobs.get(0).getContent().getContentEncoding();
+    ShardManifest manifest = new ShardManifest(sourceBlobName, recordFormat, contentEncoding, plaintext, shards);
+
+    UploadedBlob manifestBlob = uploads.uploadBytes(prefix + "/" + ShardManifest.FILE_NAME, manifest.toJsonBytes());
+    if (EventLog.isEnabled(EventType.UPLOADED)) {
+      EventLog.record(EventType.UPLOADED, manifestBlob.getBlobName(), manifest.getStoredBytes(),
+          "manifest, shards=" + shards.size() + ", records=" + manifest.getRecords());
+    }
+
+    return new UploadedBlob(manifestBlob.getBlobName(), manifest.getStoredBytes(),
+        BlobContent.sharded(plaintext.getPlaintextChecksum(), contentEncoding, plaintext.getPlaintextBytes()));
+  }
+
+  /** Drops the shard being written and deletes those already committed. */
+  public void abort() {
+    uploads.abort(prefix);
+  }
+}
@@ -0,0 +1,262 @@
+package org.sky.azure;
+
+import org.sky.utils.BufferPool;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Writes a stream as staged blocks whose IDs are derived from the block's offset and MD5, so the same output
+ * always yields the same IDs. A block the service still holds uncommitted from an earlier attempt is skipped
+ * rather than staged again; {@link #close()} waits for the staged blocks and commits the list in order.
+ *
+ * <p>Hashing and staging run on the executor with at most {@code maxInFlight} blocks buffered, so the writer only
+ * copies bytes. Output that fits in one block is sent as a single put instead of a staged block and a commit.
+ *
+ * <p>Progress is reported on the executor as well, never on the writer. Only the latest count is kept, so a slow
+ * report is followed by at most one more, and a failing one does not fail the upload.
+ */
+class StagedBlockOutputStream extends OutputStream {
+
+  private static final int PROGRESS_INTERVAL_BLOCKS = 16;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final BlockStager stager;
+  private final Set<String> alreadyStaged;
+  private final int blockSize;
+  private final int maxInFlight;
+  private final LongConsumer progress;
+  private final Executor executor;
+  private final List<PendingBlock> blocks = new ArrayList<>();
+  private final LongAdder skippedBytes = new LongAdder();
+  // The staged byte count waiting to be reported, or -1 when there is none.
+  private final AtomicLong unreportedBytes = new AtomicLong(-1);
+  private CompletableFuture<Void> progressReport = CompletableFuture.completedFuture(null);
+  private int completedBlocks;
+  private int reportedBlocks;
+  private byte[] buffer;
+  private int position;
+  private long offset;
+  private boolean closed;
+
+  StagedBlockOutputStream(BlockStager stager, Set<String> alreadyStaged, int blockSize, int maxInFlight,
+                          LongConsumer progress, Executor executor) {
+    this.stager = stager;
+    this.alreadyStaged = alreadyStaged;
+    this.blockSize = blockSize;
+    this.maxInFlight = Math.max(1, maxInFlight);
+    this.progress = progress;
+    this.executor = executor;
+    this.buffer = BufferPool.shared().acquire(blockSize);
+  }
+
+  static String blockId(long offset, byte[] md5) {
+    char[] id = new char[16 + 1 + md5.length * 2];
+    for (int i = 0; i < 16; i++) {
+      id[i] = HEX_DIGITS[(int) (offset >>> (60 - i * 4)) & 0xF];
+    }
+    id[16] = '-';
+    for (int i = 0; i < md5.length; i++) {
+      id[17 + i * 2] = HEX_DIGITS[(md5[i] >> 4) & 0xF];
+      id[18 + i * 2] = HEX_DIGITS[md5[i] & 0xF];
+    }
+    // Every ID in a blob must have the same length, which the fixed-width offset and digest guarantee.
+    return Base64.getEncoder().encodeToString(new String(id).getBytes(StandardCharsets.US_ASCII));
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    buffer[position++] = (byte) b;
+    if (position == blockSize) {
+      submitBlock();
+    }
+  }
+
+  @Override
+  public void write(byte[] data, int off, int len) throws IOException {
+    ensureOpen();
+    while (len > 0) {
+      int copied = Math.min(len, blockSize - position);
+      System.arraycopy(data, off, buffer, position, copied);
+      position += copied;
+      off += copied;
+      len -= copied;
+      if (position == blockSize) {
+        submitBlock();
+      }
+    }
+  }
+
+  /** Waits for every block and commits the list; nothing is committed if any block failed. */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    if (blocks.isEmpty()) {
+      uploadWhole();
+      return;
+    }
+    if (position > 0) {
+      submitBlock();
+    }
+    closed = true;
+    BufferPool.shared().release(buffer);
+    buffer = null;
+
+    List<String> blockIds = new ArrayList<>(blocks.size());
+    for (PendingBlock block : blocks) {
+      blockIds.add(await(block));
+    }
+    // No report may land after the commit, when the caller may already have dropped what it records.
+    unreportedBytes.set(-1);
+    progressReport.join();
+    stager.commit(blockIds);
+  }
+
+  /**
+   * Stops without committing. Blocks already handed to the executor still finish staging, so the next attempt
+   * can skip them.
+   */
+  void abort() {
+    if (!closed) {
+      closed = true;
+      BufferPool.shared().release(buffer);
+      buffer = null;
+    }
+  }
+
+  private void uploadWhole() {
+    closed = true;
+    try {
+      stager.upload(buffer, position, md5(buffer, position));
+    } finally {
+      BufferPool.shared().release(buffer);
+      buffer = null;
+    }
+  }
+
+  long getSkippedBytes() {
+    return skippedBytes.sum();
+  }
+
+  private void submitBlock() throws IOException {
+    awaitSlot();
+    byte[] data = buffer;
+    int length = position;
+    long blockOffset = offset;
+    blocks.add(new PendingBlock(CompletableFuture.supplyAsync(() -> stage(data, length, blockOffset), executor),
+        blockOffset, blockOffset + length));
+    offset += length;
+    buffer = BufferPool.shared().acquire(blockSize);
+    position = 0;
+  }
+
+  private String stage(byte[] data, int length, long blockOffset) {
+    try {
+      byte[] md5 = md5(data, length);
+      String blockId = blockId(blockOffset, md5);
+      if (alreadyStaged.contains(blockId)) {
+        skippedBytes.add(length);
+      } else {
+        stager.stage(blockId, data, length, md5);
+      }
+      return blockId;
+    } finally {
+      BufferPool.shared().release(data);
+    }
+  }
+
+  private static byte[] md5(byte[] data, int length) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      digest.update(data, 0, length);
+      return digest.digest();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+  }
+
+  private void awaitSlot() throws IOException {
+    while (blocks.size() - completedBlocks >= maxInFlight) {
+      await(blocks.get(completedBlocks++));
+    }
+    while (completedBlocks < blocks.size() && blocks.get(completedBlocks).id.isDone()) {
+      await(blocks.get(completedBlocks++));
+    }
+    if (completedBlocks - reportedBlocks >= PROGRESS_INTERVAL_BLOCKS) {
+      reportedBlocks = completedBlocks;
+      reportProgress(blocks.get(completedBlocks - 1).end);
+    }
+  }
+
+  private void reportProgress(long stagedBytes) {
+    // A report is scheduled only when the slot was empty; one already scheduled picks up the newer count.
+    if (unreportedBytes.getAndSet(stagedBytes) < 0) {
+      progressReport = progressReport
+          .thenRunAsync(this::sendProgress, executor)
+          .exceptionally(failure -> null);
+    }
+  }
+
+  private void sendProgress() {
+    long stagedBytes = unreportedBytes.getAndSet(-1);
+    if (stagedBytes >= 0) {
+      progress.accept(stagedBytes);
+    }
+  }
+
+  private String await(PendingBlock block) throws IOException {
+    try {
+      return block.id.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while staging blocks");
+    } catch (ExecutionException e) {
+      abort();
+      throw new IOException("Failed to stage block at offset " + block.offset, e.getCause());
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+
+  interface BlockStager {
+    void stage(String blockId, byte[] data, int length, byte[] md5);
+
+    void commit(List<String> blockIds);
+
+    /** Writes the whole blob in one request; {@code md5} covers all of it. */
+    void upload(byte[] data, int length, byte[] md5);
+  }
+
+  private static final class PendingBlock {
+    final CompletableFuture<String> id;
+    final long offset;
+    final long end;
+
+    PendingBlock(CompletableFuture<String> id, long offset, long end) {
+      this.id = id;
+      this.offset = offset;
+      this.end = end;
+    }
+  }
+}
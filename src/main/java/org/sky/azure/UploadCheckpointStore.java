@@ -0,0 +1,13 @@
+package org.sky.azure;
+
+import org.sky.model.UploadCheckpoint;
+
+public interface UploadCheckpointStore {
+
+  /** The checkpoint left by an earlier attempt, or null. */
+  UploadCheckpoint findUploadCheckpoint(String sourceKey);
+
+  void saveUploadCheckpoint(UploadCheckpoint checkpoint);
+
+  void deleteUploadCheckpoint(String sourceKey);
+}
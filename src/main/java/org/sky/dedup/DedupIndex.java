@@ -0,0 +1,89 @@
+package org.sky.dedup;
+
+import org.sky.azure.AzureClientRegistry;
+import org.sky.azure.AzureTableStorageClient;
+import org.sky.events.EventLog;
+import org.sky.events.EventType;
+import org.sky.model.DedupRecord;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Remembers which blobs were already decrypted, keyed by {@link DedupRecord#etagKey} and
+ * {@link DedupRecord#contentKey}. The Table Storage index is the source of truth and is shared by every instance;
+ * known duplicates are also kept in a bounded LRU so repeated deliveries of the same blob cost no round trip.
+ * Misses are never cached: another instance may have processed the blob since. A lookup the table cannot answer
+ * counts as a miss, so a Table Storage incident costs duplicate work rather than every decryption.
+ */
+public class DedupIndex {
+
+  private static final ConcurrentHashMap<String, DedupIndex> INDEXES_BY_TABLE = new ConcurrentHashMap<>();
+
+  private final Function<String, DedupRecord> lookup;
+  private final Consumer<DedupRecord> store;
+  private final Map<String, DedupRecord> recent;
+  private final LongAdder cacheHits = new LongAdder();
+  private final LongAdder tableLookups = new LongAdder();
+
+  DedupIndex(Function<String, DedupRecord> lookup, Consumer<DedupRecord> store, int cacheCapacity) {
+    this.lookup = lookup;
+    this.store = store;
+    this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, DedupRecord> eldest) {
+        return size() > cacheCapacity;
+      }
+    };
+  }
+
+  public static DedupIndex forTable(String storageAccountUrl, String tableName, int cacheCapacity) {
+    return INDEXES_BY_TABLE.computeIfAbsent(storageAccountUrl + "|" + tableName, key -> {
+      AzureTableStorageClient tableClient = AzureClientRegistry.tableStorage(storageAccountUrl, tableName);
+      return new DedupIndex(tableClient::findDedupRecord, tableClient::saveDedupRecord, cacheCapacity);
+    });
+  }
+
+  /** The record of the earlier decryption under {@code key}, or null if there was none. */
+  public DedupRecord find(String key) {
+    DedupRecord record;
+    synchronized (recent) {
+      record = recent.get(key);
+    }
+    if (record != null) {
+      cacheHits.increment();
+      return record;
+    }
+
+    tableLookups.increment();
+    try {
+      record = lookup.apply(key);
+    } catch (RuntimeException e) {
+      EventLog.record(EventType.DEDUP_LOOKUP_FAILED, key, 0, e.getMessage());
+      return null;
+    }
+    if (record != null) {
+      remember(record);
+    }
+    return record;
+  }
+
+  /** Stores the record before returning, so a retry that starts right after sees it. */
+  public void record(DedupRecord record) {
+    store.accept(record);
+    remember(record);
+  }
+
+  public long getCacheHitCount() { return cacheHits.sum(); }
+  public long getTableLookupCount() { return tableLookups.sum(); }
+
+  private void remember(DedupRecord record) {
+    synchronized (recent) {
+      recent.put(record.getKey(), record);
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package org.sky.events;
+
+import java.util.logging.Level;
+
+public enum EventLevel {
+  VERBOSE(Level.FINE),
+  INFO(Level.INFO),
+  WARN(Level.WARNING),
+  ERROR(Level.SEVERE);
+
+  private final Level logLevel;
+
+  EventLevel(Level logLevel) {
+    this.logLevel = logLevel;
+  }
+
+  public Level getLogLevel() {
+    return logLevel;
+  }
+}
@@ -0,0 +1,299 @@
+package org.sky.events;
+
+import org.sky.utils.DaemonThreads;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Structured event log for the decryption path. Recording an event fills a preallocated slot in the calling
+ * thread's ring buffer, with no formatting, locking or allocation; a background thread drains every ring once per
+ * second and writes the events as one log record, in the order they happened. A detail string is the caller's to
+ * build, so callers that compose one check {@link #isEnabled} first and skip the work for discarded events.
+ *
+ * <p>Events below the configured level are discarded, verbose events are sampled, and a full ring drops new
+ * events and counts them. Errors skip all three: they are written at once on the calling thread, after the events
+ * that preceded them.
+ */
+public final class EventLog {
+
+  private static final int RING_CAPACITY = 1024;
+  private static final Duration FLUSH_INTERVAL = Duration.ofSeconds(1);
+  private static final EventLog SHARED = new EventLog(new LoggerSink(Logger.getLogger(EventLog.class.getName())),
+      RING_CAPACITY);
+
+  static {
+    SHARED.startFlusher(FLUSH_INTERVAL);
+    Runtime.getRuntime().addShutdownHook(new Thread(SHARED::flush, "event-log-shutdown"));
+  }
+
+  private final EventSink sink;
+  private final int ringCapacity;
+  private final Queue<Ring> rings = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<Ring> localRing = ThreadLocal.withInitial(this::registerRing);
+  private final LongAdder dropped = new LongAdder();
+  private volatile EventLevel threshold = EventLevel.INFO;
+  private volatile int verboseSampleRate = 1;
+
+  EventLog(EventSink sink, int ringCapacity) {
+    if (Integer.bitCount(ringCapacity) != 1) {
+      throw new IllegalArgumentException("Ring capacity must be a power of two");
+    }
+    this.sink = sink;
+    this.ringCapacity = ringCapacity;
+  }
+
+  public static EventLog shared() {
+    return SHARED;
+  }
+
+  public static void record(EventType type, String subject) {
+    SHARED.append(type, subject, 0, null);
+  }
+
+  public static void record(EventType type, String subject, long value) {
+    SHARED.append(type, subject, value, null);
+  }
+
+  public static void record(EventType type, String subject, long value, String detail) {
+    SHARED.append(type, subject, value, detail);
+  }
+
+  public static void error(EventType type, String subject, long value, Throwable error) {
+    SHARED.appendError(type, subject, value, error);
+  }
+
+  /** Whether events of {@code type} pass the configured level; verbose events may still be sampled out. */
+  public static boolean isEnabled(EventType type) {
+    return SHARED.accepts(type.getLevel());
+  }
+
+  /**
+   * Applies the level and sampling in effect from now on; safe to call on every invocation. With a sample rate of
+   * N, one verbose event in N per thread is kept.
+   */
+  public void configure(EventLevel threshold, int verboseSampleRate) {
+    this.threshold = threshold;
+    this.verboseSampleRate = Math.max(1, verboseSampleRate);
+  }
+
+  public long getDroppedCount() {
+    return dropped.sum();
+  }
+
+  boolean accepts(EventLevel level) {
+    return level == EventLevel.ERROR || level.compareTo(threshold) >= 0;
+  }
+
+  void append(EventType type, String subject, long value, String detail) {
+    EventLevel level = type.getLevel();
+    if (level == EventLevel.ERROR) {
+      appendError(type, subject, value, null);
+      return;
+    }
+    if (!accepts(level)) {
+      return;
+    }
+    Ring ring = localRing.get();
+    if (level == EventLevel.VERBOSE && ring.verboseSeen++ % verboseSampleRate != 0) {
+      return;
+    }
+    if (!ring.offer(type, subject, value, detail)) {
+      dropped.increment();
+    }
+  }
+
+  void appendError(EventType type, String subject, long value, Throwable error) {
+    flush();
+    sink.emit(Level.SEVERE, format(System.currentTimeMillis(), type, subject, value, null,
+        Thread.currentThread().getName()), error);
+  }
+
+  /** Writes everything recorded so far. Called by the background thread, before errors and at shutdown. */
+  public synchronized void flush() {
+    List<Line> lines = new ArrayList<>();
+    for (Iterator<Ring> iterator = rings.iterator(); iterator.hasNext(); ) {
+      Ring ring = iterator.next();
+      // Checked before draining: once the owner is gone nothing can be added after the drain.
+      boolean abandoned = ring.isAbandoned();
+      ring.drainTo(lines);
+      if (abandoned) {
+        iterator.remove();
+      }
+    }
+    long droppedSinceLastFlush = dropped.sumThenReset();
+    if (lines.isEmpty() && droppedSinceLastFlush == 0) {
+      return;
+    }
+
+    lines.sort(Comparator.comparingLong(line -> line.nanoTime));
+    StringBuilder text = new StringBuilder();
+    EventLevel highest = EventLevel.VERBOSE;
+    for (Line line : lines) {
+      if (text.length() > 0) {
+        text.append('\n');
+      }
+      text.append(line.text);
+      if (line.level.compareTo(highest) > 0) {
+        highest = line.level;
+      }
+    }
+    if (droppedSinceLastFlush > 0) {
+      if (text.length() > 0) {
+        text.append('\n');
+      }
+      text.append(droppedSinceLastFlush).append(" events dropped: ring buffer full");
+      highest = EventLevel.WARN;
+    }
+    // Verbose lines are only here because the configured level asked for them, so they are written as INFO.
+    sink.emit(highest == EventLevel.VERBOSE ? Level.INFO : highest.getLogLevel(), text.toString(), null);
+  }
+
+  void startFlusher(Duration interval) {
+    ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+        DaemonThreads.named("event-log-flush"));
+    flusher.scheduleWithFixedDelay(this::flushQuietly, interval.toMillis(), interval.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      // A failing sink must not stop the scheduled flushes; the next one retries with newer events.
+    }
+  }
+
+  private Ring registerRing() {
+    Ring ring = new Ring(ringCapacity, Thread.currentThread());
+    rings.add(ring);
+    return ring;
+  }
+
+  private static String format(long epochMillis, EventType type, String subject, long value, String detail,
+                               String threadName) {
+    StringBuilder text = new StringBuilder(96)
+        .append(Instant.ofEpochMilli(epochMillis)).append(' ')
+        .append(type.name()).append(' ').append(type.getDescription());
+    if (subject != null) {
+      text.append(": ").append(subject);
+    }
+    if (type.getValueName() != null) {
+      text.append(' ').append(type.getValueName()).append('=').append(value);
+    }
+    if (detail != null) {
+      text.append(' ').append(detail);
+    }
+    return text.append(" [").append(threadName).append(']').toString();
+  }
+
+  @FunctionalInterface
+  interface EventSink {
+    void emit(Level level, String text, Throwable error);
+  }
+
+  private static final class LoggerSink implements EventSink {
+    private final Logger logger;
+
+    LoggerSink(Logger logger) {
+      this.logger = logger;
+    }
+
+    @Override
+    public void emit(Level level, String text, Throwable error) {
+      logger.log(level, text, error);
+    }
+  }
+
+  private static final class Line {
+    final long nanoTime;
+    final EventLevel level;
+    final String text;
+
+    Line(long nanoTime, EventLevel level, String text) {
+      this.nanoTime = nanoTime;
+      this.level = level;
+      this.text = text;
+    }
+  }
+
+  private static final class Slot {
+    long nanoTime;
+    long epochMillis;
+    EventType type;
+    String subject;
+    long value;
+    String detail;
+  }
+
+  /**
+   * Single-producer, single-consumer ring: only the owning thread advances {@code writeIndex} and only the
+   * flusher advances {@code readIndex}, so a slot is never written while it is being read.
+   */
+  private static final class Ring {
+    private final Slot[] slots;
+    private final int mask;
+    private final String threadName;
+    private final WeakReference<Thread> owner;
+    private volatile long writeIndex;
+    private volatile long readIndex;
+    long verboseSeen;
+
+    Ring(int capacity, Thread owner) {
+      this.slots = new Slot[capacity];
+      for (int i = 0; i < capacity; i++) {
+        slots[i] = new Slot();
+      }
+      this.mask = capacity - 1;
+      this.threadName = owner.getName();
+      this.owner = new WeakReference<>(owner);
+    }
+
+    boolean offer(EventType type, String subject, long value, String detail) {
+      long write = writeIndex;
+      if (write - readIndex >= slots.length) {
+        return false;
+      }
+      Slot slot = slots[(int) (write & mask)];
+      slot.nanoTime = System.nanoTime();
+      slot.epochMillis = System.currentTimeMillis();
+      slot.type = type;
+      slot.subject = subject;
+      slot.value = value;
+      slot.detail = detail;
+      writeIndex = write + 1;
+      return true;
+    }
+
+    void drainTo(List<Line> lines) {
+      long read = readIndex;
+      long write = writeIndex;
+      for (long index = read; index < write; index++) {
+        Slot slot = slots[(int) (index & mask)];
+        lines.add(new Line(slot.nanoTime, slot.type.getLevel(),
+            format(slot.epochMillis, slot.type, slot.subject, slot.value, slot.detail, threadName)));
+        slot.subject = null;
+        slot.detail = null;
+      }
+      readIndex = write;
+    }
+
+    boolean isAbandoned() {
+      Thread thread = owner.get();
+      return thread == null || !thread.isAlive();
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package org.sky.events;
+
+/**
+ * Every event the function emits. The level decides whether an event is recorded, sampled or always kept; the
+ * subject and value recorded with it fill in the fields named here.
+ */
+public enum EventType {
+  BLOB_RECEIVED(EventLevel.INFO, "blob received", "size_bytes"),
+  WARMED_UP(EventLevel.INFO, "warmed up", "elapsed_ms"),
+  WARMUP_STEP_FAILED(EventLevel.WARN, "warmup step failed", null),
+  EVENT_IGNORED(EventLevel.INFO, "event ignored", null),
+  SETTING_INVALID(EventLevel.WARN, "invalid setting, using default", null),
+  BATCH_RECEIVED(EventLevel.INFO, "batch received", "blobs"),
+  BATCH_FINISHED(EventLevel.INFO, "batch finished", "failed"),
+  STAGE_STARTED(EventLevel.VERBOSE, "stage started", null),
+  KEYS_RESOLVED(EventLevel.VERBOSE, "keys resolved", "cache_misses"),
+  KEY_RING_LOADED(EventLevel.INFO, "key ring loaded", "keys"),
+  DECOMPRESSED(EventLevel.VERBOSE, "decompressed", "uncompressed_bytes"),
+  FILE_PROCESSING(EventLevel.VERBOSE, "processing file", "size_bytes"),
+  FILE_DECRYPTED(EventLevel.VERBOSE, "file decrypted", "size_bytes"),
+  PROGRESS(EventLevel.VERBOSE, "progress", "processed_mb"),
+  UPLOAD_STARTED(EventLevel.VERBOSE, "upload started", "size_bytes"),
+  UPLOAD_RESUMED(EventLevel.INFO, "upload resumed", "staged_bytes"),
+  UPLOADED(EventLevel.INFO, "uploaded", "size_bytes"),
+  BUFFER_POOL(EventLevel.VERBOSE, "buffer pool", null),
+  DECRYPTED(EventLevel.INFO, "decrypted", "size_bytes"),
+  DUPLICATE_SKIPPED(EventLevel.INFO, "duplicate skipped", "size_bytes"),
+  DEDUP_LOOKUP_FAILED(EventLevel.WARN, "dedup lookup failed, proceeding", null),
+  ARCHIVE_EXTRACTED(EventLevel.INFO, "archive extracted", "entries"),
+  ARCHIVE_ENTRY_SKIPPED(EventLevel.WARN, "archive entry skipped", "size_bytes"),
+  TEMP_FILE_DELETED(EventLevel.VERBOSE, "temp file deleted", null),
+  TEMP_FILE_DELETE_FAILED(EventLevel.WARN, "temp file not deleted", null),
+  SHARD_DELETE_FAILED(EventLevel.WARN, "shard not deleted", null),
+  LOG_WRITE_FAILED(EventLevel.WARN, "table log not written", null),
+  DECRYPTION_FAILED(EventLevel.ERROR, "decryption failed", "size_bytes");
+
+  private final EventLevel level;
+  private final String description;
+  private final String valueName;
+
+  EventType(EventLevel level, String description, String valueName) {
+    this.level = level;
+    this.description = description;
+    this.valueName = valueName;
+  }
+
+  public EventLevel getLevel() { return level; }
+  public String getDescription() { return description; }
+  public String getValueName() { return valueName; }
+}
@@ -0,0 +1,59 @@
+package org.sky.function;
+
+import org.sky.model.DecryptionLog;
+import org.sky.utils.DaemonThreads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class BatchDecryptionDispatcher {
+
+  private static final long BYTES_PER_MB = 1024L * 1024;
+  // Upload side of one item: a few in-flight blocks of the default adaptive size.
+  private static final long UPLOAD_BUFFER_ESTIMATE = 32 * BYTES_PER_MB;
+
+  private final ExecutorService executor;
+  private final int parallelism;
+
+  public BatchDecryptionDispatcher(int parallelism) {
+    this.parallelism = parallelism;
+    this.executor = Executors.newFixedThreadPool(parallelism, DaemonThreads.named("batch-decrypt"));
+  }
+
+  public static int parallelismFor(DecryptionConfig config) {
+    long perItemBytes = (config.getDownloadReadAhead() + 1L) * config.getDownloadRangeSizeBytes()
+        + UPLOAD_BUFFER_ESTIMATE;
+    long memoryBound = Runtime.getRuntime().maxMemory() / 2 / perItemBytes;
+    int cpuBound = Runtime.getRuntime().availableProcessors();
+    return (int) Math.max(1, Math.min(cpuBound, memoryBound));
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public List<DecryptionLog> dispatch(List<String> blobUrls, Function<String, DecryptionLog> decryptor) {
+    List<CompletableFuture<DecryptionLog>> results = new ArrayList<>(blobUrls.size());
+    for (String blobUrl : blobUrls) {
+      results.add(CompletableFuture.supplyAsync(() -> decryptor.apply(blobUrl), executor)
+          .exceptionally(e -> failedLog(blobUrl, e)));
+    }
+    return results.stream()
+        .map(CompletableFuture::join)
+        .collect(Collectors.toList());
+  }
+
+  private static DecryptionLog failedLog(String blobUrl, Throwable error) {
+    // One bad item must not fail the whole batch; it is reported like any other decryption failure.
+    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    DecryptionLog log = new DecryptionLog(blobUrl, "FAILED");
+    log.setErrorMessage(cause.getMessage());
+    return log;
+  }
+}
@@ -2,67 +2,205 @@ package org.sky.function;
 
 import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.annotation.BlobTrigger;
+import com.microsoft.azure.functions.annotation.EventGridTrigger;
 import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.QueueTrigger;
 import com.microsoft.azure.functions.annotation.StorageAccount;
-import org.sky.azure.AzureKeyVaultClient;
+import com.microsoft.azure.functions.annotation.WarmupTrigger;
+import org.sky.azure.AzureClientRegistry;
+import org.sky.utils.EncodingOutputStream;
+import org.sky.utils.OutputCodec;
 import org.sky.utils.PGPFileDecryptor;
+import org.sky.utils.RecordFormat;
 import org.sky.azure.AzureBlobStorageDecrypt;
 import org.sky.azure.AzureTableStorageClient;
+import org.sky.events.EventLevel;
+import org.sky.events.EventLog;
+import org.sky.events.EventType;
 import org.sky.function.exception.DecryptionException;
+import org.sky.function.exception.DuplicateBlobException;
+import org.sky.metrics.StageMetrics;
+import org.sky.metrics.StageTimings;
+import org.sky.metrics.TimedKeyResolver;
+import org.sky.model.DecompressionStats;
+import org.sky.model.BlobBatchMessage;
+import org.sky.model.BlobEventSchema;
+import org.sky.model.DecryptionLog;
+import org.sky.model.UploadedBlob;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Base64;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 public class BlobDecryptFunction {
-  private Logger logger;
+  private static final String TRIGGER_CONTAINER = "encrypted-files";
+  private static final String TRIGGER_MODE_BLOB = "blob";
+  private static final String TRIGGER_MODE_EVENT_GRID = "eventgrid";
+
+  private static BatchDecryptionDispatcher batchDispatcher;
+
+  static {
+    // Off the invocation thread: the first blob is read while the provider and credential are being built.
+    InstanceWarmup.start();
+  }
+
+  /**
+   * Runs when the platform adds an instance, before it gets traffic (Premium and Dedicated plans only): decrypts
+   * a synthetic file and opens connections, so the first real blob does not pay for class loading and handshakes.
+   */
+  @FunctionName("Warmup")
+  public void warmup(
+      @WarmupTrigger(name = "warmupContext") Object warmupContext,
+      ExecutionContext context
+  ) {
+    DecryptionConfig config = loadConfiguration();
+    applyTelemetrySettings(config);
+    InstanceWarmup.run(config);
+  }
 
   @FunctionName("BlobDecryptTrigger")
   @StorageAccount("AzureWebJobsStorage")
   public void run(
       @BlobTrigger(
           name = "encryptedBlob",
-          path = "encrypted-files/{name}",
+          path = TRIGGER_CONTAINER + "/{name}",
           dataType = "binary"
       ) byte[] encryptedBlob,
       String name,
       ExecutionContext context
   ) {
-    this.logger = context.getLogger();
-    logger.info(() -> String.format("Java Blob trigger function processed a blob. Name: %s, Size: %d Bytes",
-        name, encryptedBlob.length));
+    if (isEventGridMode()) {
+      EventLog.record(EventType.EVENT_IGNORED, name, encryptedBlob.length, "reason=trigger_mode_eventgrid");
+      return;
+    }
+    EventLog.record(EventType.BLOB_RECEIVED, name, encryptedBlob.length, "trigger=blob");
 
     Path tempEncrypted = null;
     Path tempDecrypted = null;
-    Path tempPrivateKey = null;
-    long startTime = System.currentTimeMillis();
+    long startTime = System.nanoTime();
     AzureTableStorageClient tableClient = null;
 
     try {
       DecryptionConfig config = loadConfiguration();
+      applyTelemetrySettings(config);
       tableClient = initializeTableClient(config);
+      BlobDecryptionProcessor processor = new BlobDecryptionProcessor(config);
+      DecryptionResult result;
 
-      tempEncrypted = Files.createTempFile("encrypted-", ".pgp");
-      tempDecrypted = Files.createTempFile("decrypted-", ".tmp");
-      tempPrivateKey = Files.createTempFile("pgp-key-", ".asc");
+      if (config.isStreamingEnabled()) {
+        result = processor.decryptBytes(encryptedBlob, name, TRIGGER_CONTAINER + "/" + name);
+      } else {
+        String contentKey = processor.rejectDuplicateContent(encryptedBlob, name);
+        tempEncrypted = Files.createTempFile("encrypted-", ".pgp");
+        tempDecrypted = Files.createTempFile("decrypted-", ".tmp");
 
-      Files.write(tempEncrypted, encryptedBlob);
+        Files.write(tempEncrypted, encryptedBlob);
 
-      processDecryption(config, tempEncrypted, tempDecrypted, tempPrivateKey, name);
+        result = processDecryption(config, tempEncrypted, tempDecrypted, name, contentKey);
+      }
 
-      long processingTime = System.currentTimeMillis() - startTime;
-      tableClient.logSuccess(name, encryptedBlob.length, processingTime);
-      logger.info("decryption process logged successfully in table storage");
+      logSuccess(tableClient, name, encryptedBlob.length, startTime, result);
 
+    } catch (DuplicateBlobException e) {
+      logDuplicate(tableClient, name, encryptedBlob.length, startTime, e);
     } catch (Exception e) {
       handleDecryptionError(e, name, encryptedBlob.length, tableClient);
     } finally {
-      cleanupTempFiles(tempEncrypted, tempDecrypted, tempPrivateKey);
+      cleanupTempFiles(tempEncrypted, tempDecrypted);
     }
   }
 
+  @FunctionName("BlobDecryptEventTrigger")
+  public void runFromEvent(
+      @EventGridTrigger(name = "event") BlobEventSchema event,
+      ExecutionContext context
+  ) {
+    String blobUrl = event.getBlobUrl();
+    if (!BlobEventSchema.BLOB_CREATED.equals(event.eventType) || blobUrl == null) {
+      if (EventLog.isEnabled(EventType.EVENT_IGNORED)) {
+        EventLog.record(EventType.EVENT_IGNORED, event.id, 0, "type=" + event.eventType);
+      }
+      return;
+    }
+    // Both triggers watch encrypted-files: only the one TRIGGER_MODE selects decrypts, or every upload runs twice.
+    if (!isEventGridMode()) {
+      EventLog.record(EventType.EVENT_IGNORED, event.id, 0, "reason=trigger_mode_blob");
+      return;
+    }
+
+    String name = AzureClientRegistry.blobClient(blobUrl).getBlobName();
+    long fileSize = event.getContentLength() != null ? event.getContentLength() : 0;
+    EventLog.record(EventType.BLOB_RECEIVED, name, fileSize, "trigger=eventgrid");
+
+    long startTime = System.nanoTime();
+    AzureTableStorageClient tableClient = null;
+
+    try {
+      DecryptionConfig config = loadConfiguration();
+      applyTelemetrySettings(config);
+      tableClient = initializeTableClient(config);
+
+      // Ranges are fetched ahead of the decryptor, so decryption starts with the first range in memory.
+      DecryptionResult result = new BlobDecryptionProcessor(config).decryptBlob(blobUrl);
+
+      logSuccess(tableClient, name, fileSize, startTime, result);
+
+    } catch (DuplicateBlobException e) {
+      logDuplicate(tableClient, name, fileSize, startTime, e);
+    } catch (Exception e) {
+      handleDecryptionError(e, name, fileSize, tableClient);
+    }
+  }
+
+  @FunctionName("BlobDecryptBatchTrigger")
+  public void runBatch(
+      @QueueTrigger(
+          name = "message",
+          queueName = "decrypt-batches",
+          connection = "AzureWebJobsStorage"
+      ) BlobBatchMessage message,
+      ExecutionContext context
+  ) {
+    if (message.blobUrls == null || message.blobUrls.isEmpty()) {
+      EventLog.record(EventType.EVENT_IGNORED, context.getInvocationId(), 0, "reason=empty_batch");
+      return;
+    }
+
+    DecryptionConfig config = loadConfiguration();
+    applyTelemetrySettings(config);
+    AzureTableStorageClient tableClient = initializeTableClient(config);
+    BatchDecryptionDispatcher dispatcher = getBatchDispatcher(config);
+    if (EventLog.isEnabled(EventType.BATCH_RECEIVED)) {
+      EventLog.record(EventType.BATCH_RECEIVED, context.getInvocationId(), message.blobUrls.size(),
+          "parallelism=" + dispatcher.getParallelism());
+    }
+
+    BlobDecryptionProcessor processor = new BlobDecryptionProcessor(config);
+    List<DecryptionLog> results = dispatcher.dispatch(message.blobUrls, processor::decryptBlobUrl);
+    long logStart = System.nanoTime();
+    tableClient.logBatch(results);
+    StageMetrics.shared().record(StageTimings.LOG, System.nanoTime() - logStart, 0);
+
+    long failed = results.stream().filter(log -> "FAILED".equals(log.getStatus())).count();
+    if (EventLog.isEnabled(EventType.BATCH_FINISHED)) {
+      EventLog.record(EventType.BATCH_FINISHED, context.getInvocationId(), failed,
+          "succeeded=" + (results.size() - failed));
+    }
+  }
+
+  private static synchronized BatchDecryptionDispatcher getBatchDispatcher(DecryptionConfig config) {
+    // One pool per instance: concurrent queue invocations share it instead of multiplying threads.
+    if (batchDispatcher == null) {
+      batchDispatcher = new BatchDecryptionDispatcher(BatchDecryptionDispatcher.parallelismFor(config));
+    }
+    return batchDispatcher;
+  }
+
   private DecryptionConfig loadConfiguration() {
     return new DecryptionConfig(
         getEnvironmentVariable("KEY_VAULT_URL"),
@@ -70,73 +208,148 @@ public class BlobDecryptFunction {
         getEnvironmentVariable("DESTINATION_CONTAINER"),
         getEnvironmentVariable("LOGS_STORAGE_URL"),
         getEnvironmentVariable("LOGS_TABLE_NAME"),
-        getEnvironmentVariable("PGP_PRIVATE_KEY_SECRET_NAME"),
-        getEnvironmentVariable("PGP_PASSPHRASE_SECRET_NAME")
+        // Set together, as the catch-all key; both may be left out when PGP_KEY_CATALOG maps every tenant.
+        getEnvironmentVariable("PGP_PRIVATE_KEY_SECRET_NAME", null),
+        getEnvironmentVariable("PGP_PASSPHRASE_SECRET_NAME", null),
+        Boolean.parseBoolean(getEnvironmentVariable("STREAMING_DECRYPTION_ENABLED", "true")),
+        Duration.ofMinutes(Long.parseLong(getEnvironmentVariable("KEY_CACHE_TTL_MINUTES", "30"))),
+        Long.parseLong(getEnvironmentVariable("UPLOAD_BLOCK_SIZE_MB", "0")),
+        Integer.parseInt(getEnvironmentVariable("UPLOAD_MAX_CONCURRENCY", "0")),
+        Long.parseLong(getEnvironmentVariable("UPLOAD_SINGLE_SHOT_THRESHOLD_MB", "8")),
+        Integer.parseInt(getEnvironmentVariable("DOWNLOAD_RANGE_SIZE_MB", "8")),
+        Integer.parseInt(getEnvironmentVariable("DOWNLOAD_READ_AHEAD", "4")),
+        Boolean.parseBoolean(getEnvironmentVariable("PIPELINED_DECRYPTION_ENABLED", "true")),
+        Duration.ofSeconds(Long.parseLong(getEnvironmentVariable("METRICS_EXPORT_INTERVAL_SECONDS", "60"))),
+        eventLogLevel(),
+        Integer.parseInt(getEnvironmentVariable("EVENT_LOG_VERBOSE_SAMPLE_RATE", "100")),
+        Boolean.parseBoolean(getEnvironmentVariable("DEDUP_ENABLED", "true")),
+        Integer.parseInt(getEnvironmentVariable("DEDUP_CACHE_SIZE", "10000")),
+        Long.parseLong(getEnvironmentVariable("RESUMABLE_UPLOAD_THRESHOLD_MB", "256")),
+        getEnvironmentVariable("PGP_KEY_CATALOG", null),
+        OutputCodec.parse(getEnvironmentVariable("OUTPUT_CODEC", "none")),
+        Integer.parseInt(getEnvironmentVariable("OUTPUT_COMPRESSION_LEVEL", "0")),
+        Integer.parseInt(getEnvironmentVariable("OUTPUT_COMPRESSION_THREADS", "0")),
+        Long.parseLong(getEnvironmentVariable("OUTPUT_SHARD_SIZE_MB", "0")),
+        RecordFormat.parse(getEnvironmentVariable("OUTPUT_SHARD_FORMAT", "lines")),
+        Boolean.parseBoolean(getEnvironmentVariable("OUTPUT_SHARD_REPEAT_HEADER", "false")),
+        Boolean.parseBoolean(getEnvironmentVariable("ARCHIVE_EXTRACTION_ENABLED", "false"))
     );
   }
 
+  private void applyTelemetrySettings(DecryptionConfig config) {
+    // Read on every invocation, so changing the app settings takes effect without touching code.
+    EventLog.shared().configure(config.getEventLogLevel(), config.getVerboseSampleRate());
+    StageMetrics.shared().startExport(config.getMetricsExportInterval());
+  }
+
   private AzureTableStorageClient initializeTableClient(DecryptionConfig config) {
-    logger.info("Step 0: initializing table storage client for logs");
-    return new AzureTableStorageClient(config.getLogsStorageUrl(), config.getLogsTableName());
+    EventLog.record(EventType.STAGE_STARTED, "table client");
+    return AzureClientRegistry.tableStorage(config.getLogsStorageUrl(), config.getLogsTableName());
   }
 
-  private void processDecryption(DecryptionConfig config, Path tempEncrypted,
-                                 Path tempDecrypted, Path tempPrivateKey, String name) throws Exception {
-    logger.info("Step 1: retrieve PGP credentials from Azure Key Vault");
-    AzureKeyVaultClient keyVaultClient = new AzureKeyVaultClient(config.getKeyVaultUrl());
+  private DecryptionResult processDecryption(DecryptionConfig config, Path tempEncrypted,
+                                         Path tempDecrypted, String name, String contentKey) throws Exception {
+    StageTimings timings = new StageTimings();
+    BlobDecryptionProcessor processor = new BlobDecryptionProcessor(config);
+    // Only the ring holding the recipient key is loaded, through the key cache, when the decryptor asks for it.
+    TimedKeyResolver keyResolver = new TimedKeyResolver(processor.keyResolverFor(TRIGGER_CONTAINER + "/" + name));
 
-    String privateKeyBase64 = keyVaultClient.getSecret(config.getPrivateKeySecretName());
-    String passphrase = keyVaultClient.getSecret(config.getPassphraseSecretName());
+    EventLog.record(EventType.STAGE_STARTED, StageTimings.DECRYPT);
+    long stageStart = System.nanoTime();
+    long encryptedSize = Files.size(tempEncrypted);
+    DecompressionStats stats;
+    EncodingOutputStream encodingStream;
+    try (InputStream encryptedIn = Files.newInputStream(tempEncrypted);
+         OutputStream decryptedOut = Files.newOutputStream(tempDecrypted)) {
+      // Encoded on the way to disk, so the temp file is already what gets uploaded.
+      encodingStream = processor.newEncodingStream(decryptedOut, encryptedSize);
+      try {
+        stats = PGPFileDecryptor.decryptStream(encryptedIn, encodingStream, keyResolver, encryptedSize);
+        encodingStream.close();
+      } finally {
+        encodingStream.abort();
+      }
+    }
+    timings.record(StageTimings.KEYS, keyResolver.getNanos());
+    timings.record(StageTimings.DECRYPT, System.nanoTime() - stageStart - keyResolver.getNanos()
+        - stats.getInflateNanos(), encryptedSize);
+    timings.record(StageTimings.INFLATE, stats.getInflateNanos(), stats.getUncompressedBytes());
 
-    logger.info("PGP credentials retrieved successfully from Key Vault");
+    EventLog.record(EventType.STAGE_STARTED, StageTimings.UPLOAD);
+    stageStart = System.nanoTime();
+    AzureBlobStorageDecrypt destinationStorage = processor.getDestinationStorage();
 
-    logger.info("Step 2: preparing private key file");
-    byte[] privateKeyBytes = Base64.getDecoder().decode(privateKeyBase64);
-    Files.write(tempPrivateKey, privateKeyBytes);
-    logger.info("private key file created");
+    String decryptedBlobName = processor.decryptedBlobName(name);
+    UploadedBlob uploaded = destinationStorage.uploadBlob(decryptedBlobName, tempDecrypted,
+        encodingStream.describe(stats.getPlaintextChecksum()));
+    timings.record(StageTimings.UPLOAD, System.nanoTime() - stageStart, uploaded.getSizeBytes());
+    processor.recordDecrypted(name, encryptedSize, uploaded.getBlobName(), contentKey);
+    return new DecryptionResult(uploaded, timings);
+  }
 
-    logger.info("Step 3: decrypting PGP file");
-    PGPFileDecryptor.decryptFile(tempEncrypted, tempDecrypted, tempPrivateKey, passphrase);
-    logger.info("file decrypted successfully");
+  private void logSuccess(AzureTableStorageClient tableClient, String name, long fileSize, long startNanos,
+                          DecryptionResult result) {
+    StageTimings timings = result.getTimings();
+    long processingNanos = System.nanoTime() - startNanos;
+    timings.record(StageTimings.TOTAL, processingNanos, fileSize);
+    StageMetrics.shared().record(timings);
 
-    logger.info("Step 4: uploading decrypted file");
-    AzureBlobStorageDecrypt destinationStorage = new AzureBlobStorageDecrypt(
-        config.getDestinationStorageUrl(),
-        config.getDestinationContainer()
-    );
+    long logStart = System.nanoTime();
+    tableClient.logSuccess(name, fileSize, TimeUnit.NANOSECONDS.toMillis(processingNanos), timings.toString(),
+        result.getUploaded());
+    StageMetrics.shared().record(StageTimings.LOG, System.nanoTime() - logStart, 0);
+    if (EventLog.isEnabled(EventType.DECRYPTED)) {
+      EventLog.record(EventType.DECRYPTED, name, fileSize, timings.toString());
+    }
+  }
 
-    String decryptedBlobName = removeEncExtension(name);
-    destinationStorage.uploadBlob(decryptedBlobName, tempDecrypted);
-    logger.info("decrypted file uploaded successfully");
+  private void logDuplicate(AzureTableStorageClient tableClient, String name, long fileSize, long startNanos,
+                            DuplicateBlobException duplicate) {
+    try {
+      tableClient.logDuplicate(name, fileSize, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+          duplicate.getExisting().getDecryptedBlobName());
+    } catch (Exception logEx) {
+      EventLog.record(EventType.LOG_WRITE_FAILED, name, 0, logEx.getMessage());
+    }
   }
 
   private void handleDecryptionError(Exception e, String name, long fileSize,
                                      AzureTableStorageClient tableClient) {
-    logger.log(Level.SEVERE, "Decryption error for blob: " + name, e);
+    EventLog.error(EventType.DECRYPTION_FAILED, name, fileSize, e);
 
     if (tableClient != null) {
       try {
         tableClient.logFailure(name, fileSize, e.getMessage());
-        logger.info("failure logged in table storage");
       } catch (Exception logEx) {
-        logger.warning("Failed to log error to table storage: " + logEx.getMessage());
+        EventLog.record(EventType.LOG_WRITE_FAILED, name, 0, logEx.getMessage());
       }
     }
 
     throw new DecryptionException("Failed to decrypt blob: " + name, e);
   }
 
-  private String removeEncExtension(String filename) {
-    if (filename.endsWith(".pgp")) {
-      return filename.substring(0, filename.length() - 4);
+  /** {@code TRIGGER_MODE}: {@code blob} (default) or {@code eventgrid}; anything else falls back to blob. */
+  private boolean isEventGridMode() {
+    String mode = getEnvironmentVariable("TRIGGER_MODE", TRIGGER_MODE_BLOB).trim();
+    if (TRIGGER_MODE_EVENT_GRID.equalsIgnoreCase(mode)) {
+      return true;
     }
-    if (filename.endsWith(".gpg")) {
-      return filename.substring(0, filename.length() - 4);
+    if (!TRIGGER_MODE_BLOB.equalsIgnoreCase(mode)) {
+      EventLog.record(EventType.SETTING_INVALID, "TRIGGER_MODE", 0, "value=" + mode + ", using " + TRIGGER_MODE_BLOB);
     }
-    if (filename.endsWith(".enc")) {
-      return filename.substring(0, filename.length() - 4);
+    return false;
+  }
+
+  /** {@code EVENT_LOG_LEVEL}: a mistyped level falls back to INFO instead of failing every invocation. */
+  private EventLevel eventLogLevel() {
+    String level = getEnvironmentVariable("EVENT_LOG_LEVEL", EventLevel.INFO.name()).trim();
+    try {
+      return EventLevel.valueOf(level.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      EventLog.record(EventType.SETTING_INVALID, "EVENT_LOG_LEVEL", 0,
+          "value=" + level + ", using " + EventLevel.INFO.name());
+      return EventLevel.INFO;
     }
-    return filename;
   }
 
   private String getEnvironmentVariable(String name) {
@@ -147,15 +360,25 @@ public class BlobDecryptFunction {
     return value;
   }
 
+  private String getEnvironmentVariable(String name, String defaultValue) {
+    String value = System.getenv(name);
+    if (value == null || value.trim().isEmpty()) {
+      return defaultValue;
+    }
+    return value;
+  }
+
   private void cleanupTempFiles(Path... files) {
     for (Path file : files) {
       try {
         if (file != null && Files.exists(file)) {
           Files.delete(file);
-          logger.info("temp file deleted successfully: " + file.getFileName());
+          if (EventLog.isEnabled(EventType.TEMP_FILE_DELETED)) {
+            EventLog.record(EventType.TEMP_FILE_DELETED, file.getFileName().toString());
+          }
         }
       } catch (Exception e) {
-        logger.warning("Failed to delete temp file: " + file);
+        EventLog.record(EventType.TEMP_FILE_DELETE_FAILED, file.toString(), 0, e.getMessage());
       }
     }
   }
@@ -0,0 +1,437 @@
+package org.sky.function;
+
+import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.models.BlobProperties;
+import org.sky.azure.ArchiveBlobWriter;
+import org.sky.azure.AzureBlobStorageDecrypt;
+import org.sky.azure.AzureClientRegistry;
+import org.sky.azure.BlobUploadTuning;
+import org.sky.azure.RangedBlobInputStream;
+import org.sky.azure.ShardedBlobWriter;
+import org.sky.dedup.DedupIndex;
+import org.sky.events.EventLog;
+import org.sky.events.EventType;
+import org.sky.function.exception.DuplicateBlobException;
+import org.sky.keys.PGPKeyCache;
+import org.sky.keys.PrivateKeyResolver;
+import org.sky.metrics.StageMetrics;
+import org.sky.metrics.StageTimings;
+import org.sky.metrics.TimedInputStream;
+import org.sky.metrics.TimedKeyResolver;
+import org.sky.metrics.TimedOutputStream;
+import org.sky.model.BlobContent;
+import org.sky.model.DecompressionStats;
+import org.sky.model.DecryptionLog;
+import org.sky.model.DedupRecord;
+import org.sky.model.UploadedBlob;
+import org.sky.utils.BufferPipe;
+import org.sky.utils.BufferPool;
+import org.sky.utils.DaemonThreads;
+import org.sky.utils.EncodingOutputStream;
+import org.sky.utils.OutputCodec;
+import org.sky.utils.PGPFileDecryptor;
+import org.sky.utils.RecordShardingOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BlobDecryptionProcessor {
+
+  private static final int BYTES_PER_MB = 1024 * 1024;
+  private static final long PARALLEL_COMPRESSION_MIN_MB = 16;
+  private static final int EXTRACTION_BUFFERS = 4;
+  // An extraction waits only on its own writer and on other pools, so extra archives can queue for a thread.
+  private static final ExecutorService EXTRACTION_EXECUTOR = DaemonThreads.boundedPool("archive-extract",
+      DaemonThreads.perCore(1, 4));
+
+  private final DecryptionConfig config;
+
+  public BlobDecryptionProcessor(DecryptionConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * Decrypts a blob already in memory; its SHA-256 is checked against the dedup index before any work.
+   * {@code path} is {@code container/blobName}, which picks the tenant's keys.
+   */
+  public DecryptionResult decryptBytes(byte[] encryptedBlob, String name, String path) {
+    String contentKey = rejectDuplicateContent(encryptedBlob, name);
+    return decrypt(new ByteArrayInputStream(encryptedBlob), encryptedBlob.length, name, path, null, contentKey);
+  }
+
+  /**
+   * Decrypts a blob by URL, reading ranges ahead of the decryptor. A blob version that was already decrypted is
+   * recognised by its ETag before the first range is downloaded.
+   */
+  public DecryptionResult decryptBlob(String blobUrl) throws IOException {
+    BlobClient blobClient = AzureClientRegistry.blobClient(blobUrl);
+    return decryptBlob(blobClient, blobClient.getProperties());
+  }
+
+  private DecryptionResult decryptBlob(BlobClient blobClient, BlobProperties properties) throws IOException {
+    String name = blobClient.getBlobName();
+    String etagKey = DedupRecord.etagKey(name, properties.getETag());
+    rejectDuplicate(name, etagKey);
+
+    try (RangedBlobInputStream encryptedStream = RangedBlobInputStream.open(blobClient, properties,
+        config.getDownloadRangeSizeBytes(), config.getDownloadReadAhead())) {
+      return decrypt(encryptedStream, encryptedStream.getLength(), name,
+          blobClient.getContainerName() + "/" + name, etagKey, null);
+    }
+  }
+
+  /**
+   * Decrypts and uploads one blob and returns it with how long each stage took. The plaintext MD5 and SHA-256 are
+   * computed during the copy and stored on the blob when it is committed. Read, inflate and upload are time spent
+   * blocked in those streams; decrypt is the rest of the transfer and is only reported when the stages run
+   * sequentially, since in the pipeline they overlap.
+   *
+   * <p>Without a {@code contentKey} the ciphertext is hashed as it streams through, so a duplicate is only known
+   * once it has been decrypted: the check then runs before the block list commit, and the staged blocks are left
+   * uncommitted instead of creating another copy.
+   *
+   * <p>With archive extraction or output sharding the writer feeds the extractor or the record splitter instead
+   * of one upload, and each resulting blob is encoded on its own, so encoding time is counted as upload.
+   */
+  private DecryptionResult decrypt(InputStream encryptedStream, long encryptedSize, String name, String path,
+                               String etagKey, String contentKey) {
+    StageTimings timings = new StageTimings();
+    long stageStart;
+
+    // Keys resolve once the recipient key IDs have been read, so the keys stage is the time spent in the resolver.
+    TimedKeyResolver keyResolver = new TimedKeyResolver(keyResolverFor(path));
+
+    EventLog.record(EventType.STAGE_STARTED, StageTimings.UPLOAD);
+    AzureBlobStorageDecrypt destinationStorage = getDestinationStorage();
+
+    String decryptedBlobName = decryptedBlobName(name);
+    MessageDigest ciphertextDigest = contentKey == null ? newSha256() : null;
+    TimedInputStream timedInput = new TimedInputStream(ciphertextDigest == null
+        ? encryptedStream
+        : new DigestInputStream(encryptedStream, ciphertextDigest));
+    AtomicReference<TimedOutputStream> timedOutput = new AtomicReference<>();
+    AtomicReference<DecompressionStats> stats = new AtomicReference<>();
+    AtomicReference<String> streamedContentKey = new AtomicReference<>(contentKey);
+    AtomicLong writerNanos = new AtomicLong();
+    AtomicLong encodeNanos = new AtomicLong();
+
+    AzureBlobStorageDecrypt.BlobStreamWriter writer = outputStream -> {
+      long writerStart = System.nanoTime();
+      TimedOutputStream timedStream = new TimedOutputStream(outputStream);
+      timedOutput.set(timedStream);
+      EncodingOutputStream encodingStream = writesSeveralBlobs()
+          ? new EncodingOutputStream(timedStream, OutputCodec.NONE, 0, 1)
+          : newEncodingStream(timedStream, encryptedSize);
+      try {
+        TimedOutputStream timedEncoder = new TimedOutputStream(encodingStream);
+        if (config.isPipelineEnabled()) {
+          stats.set(PGPFileDecryptor.decryptStreamPipelined(timedInput, timedEncoder, keyResolver, encryptedSize));
+        } else {
+          stats.set(PGPFileDecryptor.decryptStream(timedInput, timedEncoder, keyResolver, encryptedSize));
+        }
+        long closeStart = System.nanoTime();
+        encodingStream.close();
+        // Time in the encoder that was not spent writing to the upload.
+        encodeNanos.set(timedEncoder.getNanos() + System.nanoTime() - closeStart - timedStream.getNanos());
+        if (ciphertextDigest != null) {
+          // The digest has to cover the whole blob, including anything after the last packet.
+          timedInput.transferTo(OutputStream.nullOutputStream());
+          streamedContentKey.set(DedupRecord.contentKey(ciphertextDigest.digest()));
+          rejectDuplicate(name, streamedContentKey.get());
+        }
+        writerNanos.set(System.nanoTime() - writerStart);
+        return encodingStream.describe(stats.get().getPlaintextChecksum());
+      } finally {
+        // Frees the codec's native context and pooled chunks when decryption failed; a no-op after close.
+        encodingStream.abort();
+      }
+    };
+
+    stageStart = System.nanoTime();
+    String sourceKey = etagKey != null ? etagKey : contentKey;
+    UploadedBlob uploaded;
+    try {
+      if (config.isArchiveExtractionEnabled()) {
+        uploaded = uploadExtracted(destinationStorage, name, encryptedSize, writer);
+      } else if (isSharded()) {
+        uploaded = uploadSharded(destinationStorage, name, writer);
+      } else if (sourceKey != null && isResumable(encryptedSize)) {
+        // A retry of the same source finds the checkpoint and only restages the blocks the service lost.
+        uploaded = destinationStorage.uploadResumable(decryptedBlobName, sourceKey, encryptedSize,
+            AzureClientRegistry.tableStorage(config.getLogsStorageUrl(), config.getLogsTableName()), writer);
+      } else {
+        uploaded = destinationStorage.uploadStream(decryptedBlobName, encryptedSize, writer);
+      }
+    } catch (RuntimeException e) {
+      throw duplicateOrSelf(e);
+    }
+    // Block list commit happens after the writer returns, so it counts as upload time.
+    long commitNanos = System.nanoTime() - stageStart - writerNanos.get();
+
+    long uploadNanos = timedOutput.get().getNanos() + commitNanos;
+    timings.record(StageTimings.KEYS, keyResolver.getNanos());
+    if (EventLog.isEnabled(EventType.KEYS_RESOLVED)) {
+      EventLog.record(EventType.KEYS_RESOLVED, name, getKeyCache().getMissCount(), "path=" + path);
+    }
+    timings.record(StageTimings.READ, timedInput.getNanos(), timedInput.getBytes());
+    if (!config.isPipelineEnabled()) {
+      timings.record(StageTimings.DECRYPT, writerNanos.get() - keyResolver.getNanos() - timedInput.getNanos()
+          - stats.get().getInflateNanos() - encodeNanos.get() - timedOutput.get().getNanos(), encryptedSize);
+    }
+    timings.record(StageTimings.INFLATE, stats.get().getInflateNanos(), stats.get().getUncompressedBytes());
+    if (config.getOutputCodec() != OutputCodec.NONE && !writesSeveralBlobs()) {
+      timings.record(StageTimings.ENCODE, encodeNanos.get(), uploaded.getContent().getPlaintextBytes());
+    }
+    timings.record(StageTimings.UPLOAD, uploadNanos, uploaded.getSizeBytes());
+    if (EventLog.isEnabled(EventType.BUFFER_POOL)) {
+      EventLog.record(EventType.BUFFER_POOL, name, 0, BufferPool.shared().toString());
+    }
+
+    recordDecrypted(name, encryptedSize, uploaded.getBlobName(), streamedContentKey.get(), etagKey);
+    return new DecryptionResult(uploaded, timings);
+  }
+
+  public DecryptionLog decryptBlobUrl(String blobUrl) {
+    BlobClient blobClient = AzureClientRegistry.blobClient(blobUrl);
+    String name = blobClient.getBlobName();
+    long startTime = System.nanoTime();
+    // Unknown until the blob properties are read; a failure before that leaves the size off the log.
+    Long blobSize = null;
+
+    try {
+      BlobProperties properties = blobClient.getProperties();
+      blobSize = properties.getBlobSize();
+      DecryptionResult result = decryptBlob(blobClient, properties);
+      StageTimings timings = result.getTimings();
+      long fileSize = timings.getBytes(StageTimings.READ);
+      timings.record(StageTimings.TOTAL, System.nanoTime() - startTime, fileSize);
+      StageMetrics.shared().record(timings);
+
+      DecryptionLog log = new DecryptionLog(name, "SUCCESS");
+      log.setFileSizeBytes(fileSize);
+      log.setProcessingTimeMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+      log.setStageTimings(timings.toString());
+      log.setUploadedBlob(result.getUploaded());
+      return log;
+
+    } catch (DuplicateBlobException e) {
+      DecryptionLog log = new DecryptionLog(name, "DUPLICATE");
+      log.setFileSizeBytes(e.getExisting().getSizeBytes());
+      log.setProcessingTimeMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+      log.setDuplicateOf(e.getExisting().getDecryptedBlobName());
+      return log;
+
+    } catch (Exception e) {
+      EventLog.error(EventType.DECRYPTION_FAILED, name, blobSize == null ? 0 : blobSize, e);
+      DecryptionLog log = new DecryptionLog(name, "FAILED");
+      log.setFileSizeBytes(blobSize);
+      log.setErrorMessage(e.getMessage());
+      return log;
+    }
+  }
+
+  /**
+   * Throws {@link DuplicateBlobException} if this ciphertext was decrypted before, otherwise returns its key for
+   * {@link #recordDecrypted}.
+   */
+  public String rejectDuplicateContent(byte[] encryptedBlob, String name) {
+    String contentKey = DedupRecord.contentKey(newSha256().digest(encryptedBlob));
+    rejectDuplicate(name, contentKey);
+    return contentKey;
+  }
+
+  /** Adds the decrypted blob to the dedup index under each non-null key. */
+  public void recordDecrypted(String name, long encryptedSize, String decryptedBlobName, String... keys) {
+    DedupIndex dedupIndex = getDedupIndex();
+    if (dedupIndex == null) {
+      return;
+    }
+    try {
+      for (String key : keys) {
+        if (key != null) {
+          dedupIndex.record(new DedupRecord(key, name, decryptedBlobName, encryptedSize));
+        }
+      }
+    } catch (RuntimeException e) {
+      // The blob is already uploaded; failing now would only make the retry produce a second copy.
+      EventLog.record(EventType.LOG_WRITE_FAILED, name, 0, "dedup index: " + e.getMessage());
+    }
+  }
+
+  private void rejectDuplicate(String name, String key) {
+    DedupIndex dedupIndex = getDedupIndex();
+    DedupRecord existing = dedupIndex != null ? dedupIndex.find(key) : null;
+    if (existing != null) {
+      if (EventLog.isEnabled(EventType.DUPLICATE_SKIPPED)) {
+        EventLog.record(EventType.DUPLICATE_SKIPPED, name, existing.getSizeBytes(),
+            "existing=" + existing.getDecryptedBlobName() + " key=" + key);
+      }
+      throw new DuplicateBlobException(name, existing);
+    }
+  }
+
+  /** Resolves recipient key IDs to the unlocked keys of the tenant that owns {@code path}. */
+  public PrivateKeyResolver keyResolverFor(String path) {
+    PGPKeyCache keyCache = getKeyCache();
+    return config.getKeyCatalog().resolverFor(path, keyCache::get);
+  }
+
+  /**
+   * Wraps {@code target} in the configured output codec. Blobs from {@value #PARALLEL_COMPRESSION_MIN_MB} MB of
+   * ciphertext up are compressed on several threads; below that there are too few chunks to spread.
+   */
+  public EncodingOutputStream newEncodingStream(OutputStream target, long encryptedSize) throws IOException {
+    int workers = encryptedSize >= PARALLEL_COMPRESSION_MIN_MB * BYTES_PER_MB
+        ? config.getOutputCompressionThreads()
+        : 1;
+    return new EncodingOutputStream(target, config.getOutputCodec(), config.getOutputCompressionLevel(), workers);
+  }
+
+  /**
+   * Splits the writer's plaintext into record-aligned shards under {@code <timestamp>-<decrypted name>/}, uploading
+   * them while decryption continues, and returns the manifest written once all shards are committed.
+   */
+  private UploadedBlob uploadSharded(AzureBlobStorageDecrypt storage, String name,
+                                     AzureBlobStorageDecrypt.BlobStreamWriter writer) {
+    String plaintextName = removeEncExtension(name);
+    long shardSizeBytes = config.getOutputShardSizeMb() * BYTES_PER_MB;
+    ShardedBlobWriter shards = new ShardedBlobWriter(storage, storage.addTimestampToBlobName(plaintextName),
+        extensionOf(plaintextName) + config.getOutputCodec().getFileExtension(), shardSizeBytes,
+        this::newEncodingStream);
+    RecordShardingOutputStream shardingStream = new RecordShardingOutputStream(config.getOutputShardFormat(),
+        shardSizeBytes, config.isOutputShardRepeatHeader(), shards);
+    try {
+      BlobContent plaintext = writer.writeTo(shardingStream);
+      shardingStream.close();
+      return shards.finish(name, config.getOutputShardFormat().name().toLowerCase(Locale.ROOT), plaintext);
+    } catch (Exception e) {
+      shards.abort();
+      throw new RuntimeException("Failed to shard decrypted blob: " + name, e);
+    }
+  }
+
+  /**
+   * Extracts the writer's plaintext on another thread, joined by a bounded pipe, and uploads each archive entry
+   * under {@code <timestamp>-<decrypted name>/}; plaintext that is not an archive becomes a single blob.
+   */
+  private UploadedBlob uploadExtracted(AzureBlobStorageDecrypt storage, String name, long encryptedSize,
+                                       AzureBlobStorageDecrypt.BlobStreamWriter writer) {
+    ArchiveBlobWriter archive = new ArchiveBlobWriter(storage, removeEncExtension(name),
+        config.getOutputCodec().getFileExtension(), encryptedSize, this::newEncodingStream);
+    BufferPipe pipe = new BufferPipe(EXTRACTION_BUFFERS, BufferPool.sizeFor(encryptedSize));
+    Future<?> extraction = EXTRACTION_EXECUTOR.submit(() -> {
+      try {
+        archive.extract(pipe.source());
+      } catch (Exception e) {
+        pipe.fail(e);
+        throw e;
+      }
+      return null;
+    });
+
+    try {
+      BlobContent plaintext = writer.writeTo(pipe.sink());
+      pipe.sink().close();
+      extraction.get();
+      pipe.release();
+      return archive.finish(plaintext);
+    } catch (Exception e) {
+      Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+      pipe.fail(cause);
+      // The extractor stops at its next read; its uploads can only be cleaned up once it has.
+      try {
+        extraction.get();
+      } catch (Exception ignored) {
+        // Already reported through the pipe.
+      }
+      archive.abort();
+      throw new RuntimeException("Failed to extract decrypted archive: " + name, cause);
+    }
+  }
+
+  /** Name of the decrypted blob before the upload timestamp: no encryption extension, plus the codec's. */
+  public String decryptedBlobName(String name) {
+    return removeEncExtension(name) + config.getOutputCodec().getFileExtension();
+  }
+
+  private PGPKeyCache getKeyCache() {
+    return PGPKeyCache.forVault(config.getKeyVaultUrl(), config.getKeyCacheTtl());
+  }
+
+  private boolean writesSeveralBlobs() {
+    return config.isArchiveExtractionEnabled() || isSharded();
+  }
+
+  private boolean isSharded() {
+    return config.getOutputShardSizeMb() > 0;
+  }
+
+  private boolean isResumable(long encryptedSize) {
+    long thresholdMb = config.getResumableUploadThresholdMb();
+    return thresholdMb > 0 && encryptedSize >= thresholdMb * BYTES_PER_MB;
+  }
+
+  private DedupIndex getDedupIndex() {
+    if (!config.isDedupEnabled()) {
+      return null;
+    }
+    return DedupIndex.forTable(config.getLogsStorageUrl(), config.getLogsTableName(), config.getDedupCacheSize());
+  }
+
+  private static RuntimeException duplicateOrSelf(RuntimeException e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof DuplicateBlobException) {
+        return (DuplicateBlobException) cause;
+      }
+    }
+    return e;
+  }
+
+  private static MessageDigest newSha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  public AzureBlobStorageDecrypt getDestinationStorage() {
+    return AzureClientRegistry.blobStorage(
+        config.getDestinationStorageUrl(),
+        config.getDestinationContainer(),
+        BlobUploadTuning.fromMegabytes(config.getUploadBlockSizeMb(), config.getUploadMaxConcurrency(),
+            config.getUploadSingleShotThresholdMb())
+    );
+  }
+
+  /** {@code .csv} for {@code in/data.csv}; empty when the last path segment has no extension. */
+  static String extensionOf(String filename) {
+    int dot = filename.lastIndexOf('.');
+    return dot > filename.lastIndexOf('/') ? filename.substring(dot) : "";
+  }
+
+  public static String removeEncExtension(String filename) {
+    if (filename.endsWith(".pgp")) {
+      return filename.substring(0, filename.length() - 4);
+    }
+    if (filename.endsWith(".gpg")) {
+      return filename.substring(0, filename.length() - 4);
+    }
+    if (filename.endsWith(".enc")) {
+      return filename.substring(0, filename.length() - 4);
+    }
+    return filename;
+  }
+}
@@ -1,6 +1,17 @@
 package org.sky.function;
 
+import org.sky.events.EventLevel;
+import org.sky.keys.KeyCatalog;
+import org.sky.utils.OutputCodec;
+import org.sky.utils.RecordFormat;
+
+import java.time.Duration;
+
 public class DecryptionConfig {
+  /** Each range is downloaded into one array, so its size must stay well inside an int. */
+  static final int MAX_DOWNLOAD_RANGE_SIZE_MB = 256;
+  private static final long BYTES_PER_MB = 1024L * 1024;
+
   private final String keyVaultUrl;
   private final String privateKeySecretName;
   private final String passphraseSecretName;
@@ -8,6 +19,28 @@ public class DecryptionConfig {
   private final String destinationContainer;
   private final String logsStorageUrl;
   private final String logsTableName;
+  private final boolean streamingEnabled;
+  private final Duration keyCacheTtl;
+  private final long uploadBlockSizeMb;
+  private final int uploadMaxConcurrency;
+  private final long uploadSingleShotThresholdMb;
+  private final int downloadRangeSizeMb;
+  private final int downloadReadAhead;
+  private final boolean pipelineEnabled;
+  private final Duration metricsExportInterval;
+  private final EventLevel eventLogLevel;
+  private final int verboseSampleRate;
+  private final boolean dedupEnabled;
+  private final int dedupCacheSize;
+  private final long resumableUploadThresholdMb;
+  private final KeyCatalog keyCatalog;
+  private final OutputCodec outputCodec;
+  private final int outputCompressionLevel;
+  private final int outputCompressionThreads;
+  private final long outputShardSizeMb;
+  private final RecordFormat outputShardFormat;
+  private final boolean outputShardRepeatHeader;
+  private final boolean archiveExtractionEnabled;
 
   public DecryptionConfig(String keyVaultUrl,
                           String destinationStorageUrl,
@@ -15,7 +48,29 @@ public class DecryptionConfig {
                           String logsStorageUrl,
                           String logsTableName,
                           String privateKeySecretName,
-                          String passphraseSecretName) {
+                          String passphraseSecretName,
+                          boolean streamingEnabled,
+                          Duration keyCacheTtl,
+                          long uploadBlockSizeMb,
+                          int uploadMaxConcurrency,
+                          long uploadSingleShotThresholdMb,
+                          int downloadRangeSizeMb,
+                          int downloadReadAhead,
+                          boolean pipelineEnabled,
+                          Duration metricsExportInterval,
+                          EventLevel eventLogLevel,
+                          int verboseSampleRate,
+                          boolean dedupEnabled,
+                          int dedupCacheSize,
+                          long resumableUploadThresholdMb,
+                          String keyCatalog,
+                          OutputCodec outputCodec,
+                          int outputCompressionLevel,
+                          int outputCompressionThreads,
+                          long outputShardSizeMb,
+                          RecordFormat outputShardFormat,
+                          boolean outputShardRepeatHeader,
+                          boolean archiveExtractionEnabled) {
     this.keyVaultUrl = keyVaultUrl;
     this.destinationStorageUrl = destinationStorageUrl;
     this.destinationContainer = destinationContainer;
@@ -23,6 +78,39 @@ public class DecryptionConfig {
     this.logsTableName = logsTableName;
     this.privateKeySecretName = privateKeySecretName;
     this.passphraseSecretName = passphraseSecretName;
+    this.streamingEnabled = streamingEnabled;
+    this.keyCacheTtl = keyCacheTtl;
+    this.uploadBlockSizeMb = uploadBlockSizeMb;
+    this.uploadMaxConcurrency = uploadMaxConcurrency;
+    this.uploadSingleShotThresholdMb = uploadSingleShotThresholdMb;
+    if (downloadRangeSizeMb < 1 || downloadRangeSizeMb > MAX_DOWNLOAD_RANGE_SIZE_MB) {
+      throw new IllegalArgumentException("DOWNLOAD_RANGE_SIZE_MB must be between 1 and " + MAX_DOWNLOAD_RANGE_SIZE_MB
+          + ": " + downloadRangeSizeMb);
+    }
+    if (downloadReadAhead < 1) {
+      throw new IllegalArgumentException("DOWNLOAD_READ_AHEAD must be at least 1: " + downloadReadAhead);
+    }
+    this.downloadRangeSizeMb = downloadRangeSizeMb;
+    this.downloadReadAhead = downloadReadAhead;
+    this.pipelineEnabled = pipelineEnabled;
+    this.metricsExportInterval = metricsExportInterval;
+    this.eventLogLevel = eventLogLevel;
+    this.verboseSampleRate = verboseSampleRate;
+    this.dedupEnabled = dedupEnabled;
+    this.dedupCacheSize = dedupCacheSize;
+    this.resumableUploadThresholdMb = resumableUploadThresholdMb;
+    // Fail on missing or half-set key secrets when the settings are read, not on the first blob.
+    this.keyCatalog = KeyCatalog.forSettings(keyCatalog, privateKeySecretName, passphraseSecretName);
+    this.outputCodec = outputCodec;
+    // Fail on an out-of-range level when the settings are read, not on the first large blob.
+    this.outputCompressionLevel = outputCodec.levelFor(outputCompressionLevel);
+    this.outputCompressionThreads = outputCompressionThreads > 0
+        ? outputCompressionThreads
+        : Runtime.getRuntime().availableProcessors();
+    this.outputShardSizeMb = outputShardSizeMb;
+    this.outputShardFormat = outputShardFormat;
+    this.outputShardRepeatHeader = outputShardRepeatHeader;
+    this.archiveExtractionEnabled = archiveExtractionEnabled;
   }
 
   public String getKeyVaultUrl() { return keyVaultUrl; }
@@ -32,4 +120,28 @@ public class DecryptionConfig {
   public String getDestinationContainer() { return destinationContainer; }
   public String getLogsStorageUrl() { return logsStorageUrl; }
   public String getLogsTableName() { return logsTableName; }
+  public boolean isStreamingEnabled() { return streamingEnabled; }
+  public Duration getKeyCacheTtl() { return keyCacheTtl; }
+  public long getUploadBlockSizeMb() { return uploadBlockSizeMb; }
+  public int getUploadMaxConcurrency() { return uploadMaxConcurrency; }
+  public long getUploadSingleShotThresholdMb() { return uploadSingleShotThresholdMb; }
+  public int getDownloadRangeSizeBytes() { return Math.toIntExact(downloadRangeSizeMb * BYTES_PER_MB); }
+  public int getDownloadReadAhead() { return downloadReadAhead; }
+  public boolean isPipelineEnabled() { return pipelineEnabled; }
+  public Duration getMetricsExportInterval() { return metricsExportInterval; }
+  public EventLevel getEventLogLevel() { return eventLogLevel; }
+  public int getVerboseSampleRate() { return verboseSampleRate; }
+  public boolean isDedupEnabled() { return dedupEnabled; }
+  public int getDedupCacheSize() { return dedupCacheSize; }
+  public long getResumableUploadThresholdMb() { return resumableUploadThresholdMb; }
+  public KeyCatalog getKeyCatalog() { return keyCatalog; }
+  public OutputCodec getOutputCodec() { return outputCodec; }
+  public int getOutputCompressionLevel() { return outputCompressionLevel; }
+  public int getOutputCompressionThreads() { return outputCompressionThreads; }
+  /** Target size of each output shard before encoding; 0 uploads a single blob. */
+  public long getOutputShardSizeMb() { return outputShardSizeMb; }
+  public RecordFormat getOutputShardFormat() { return outputShardFormat; }
+  public boolean isOutputShardRepeatHeader() { return outputShardRepeatHeader; }
+  /** Uploads the entries of a ZIP, TAR or TAR.GZ plaintext instead of the archive; takes precedence over sharding. */
+  public boolean isArchiveExtractionEnabled() { return archiveExtractionEnabled; }
 }
\ No newline at end of file
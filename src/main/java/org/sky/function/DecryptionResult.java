@@ -0,0 +1,18 @@
+package org.sky.function;
+
+import org.sky.metrics.StageTimings;
+import org.sky.model.UploadedBlob;
+
+/** The decrypted blob as uploaded, with its checksum, and how long each stage took. */
+public class DecryptionResult {
+  private final UploadedBlob uploaded;
+  private final StageTimings timings;
+
+  public DecryptionResult(UploadedBlob uploaded, StageTimings timings) {
+    this.uploaded = uploaded;
+    this.timings = timings;
+  }
+
+  public UploadedBlob getUploaded() { return uploaded; }
+  public StageTimings getTimings() { return timings; }
+}
@@ -0,0 +1,97 @@
+package org.sky.function;
+
+import org.sky.azure.AzureClientRegistry;
+import org.sky.events.EventLog;
+import org.sky.events.EventType;
+import org.sky.keys.PGPKeyCache;
+import org.sky.utils.CryptoProvider;
+import org.sky.utils.DaemonThreads;
+import org.sky.utils.SyntheticDecryption;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cold-start work that does not depend on a blob. {@link #start} builds the crypto provider and the credential
+ * on background threads when the function class loads, so the first invocation overlaps with them instead of
+ * waiting in the class initializer. {@link #run} is the warmup trigger: it also decrypts a synthetic file,
+ * unlocks the default key ring and opens connections to the destination and log storage.
+ */
+final class InstanceWarmup {
+
+  private static final ExecutorService WARMUP_EXECUTOR = DaemonThreads.boundedPool("instance-warmup", 8);
+  private static final AtomicBoolean STARTED = new AtomicBoolean();
+
+  private InstanceWarmup() {
+  }
+
+  /** Returns at once; a caller that needs the provider or credential before they are built waits for them. */
+  static void start() {
+    if (STARTED.compareAndSet(false, true)) {
+      WARMUP_EXECUTOR.execute(CryptoProvider::get);
+      WARMUP_EXECUTOR.execute(AzureClientRegistry::warmUp);
+    }
+  }
+
+  /**
+   * Runs every step in parallel and waits for them. A failed step is recorded and does not fail the others: the
+   * instance still serves, only colder.
+   */
+  static void run(DecryptionConfig config) {
+    start();
+    long startTime = System.nanoTime();
+    List<Future<String>> steps = new ArrayList<>();
+    steps.add(submit("synthetic decryption",
+        () -> "synthetic_bytes=" + SyntheticDecryption.run()));
+    steps.add(submit("destination storage",
+        () -> "destination_exists=" + AzureClientRegistry.connect(config.getDestinationStorageUrl(),
+            config.getDestinationContainer())));
+    steps.add(submit("log table", () -> {
+      AzureClientRegistry.tableStorage(config.getLogsStorageUrl(), config.getLogsTableName());
+      return "table=" + config.getLogsTableName();
+    }));
+    if (config.getPrivateKeySecretName() != null) {
+      steps.add(submit("default key ring", () -> "keys=" + PGPKeyCache.forVault(config.getKeyVaultUrl(),
+          config.getKeyCacheTtl()).get(config.getPrivateKeySecretName(), config.getPassphraseSecretName())
+          .getKeyIds().size()));
+    }
+
+    StringBuilder detail = new StringBuilder();
+    for (Future<String> step : steps) {
+      String result = await(step);
+      if (result != null) {
+        detail.append(detail.length() == 0 ? "" : ", ").append(result);
+      }
+    }
+    EventLog.record(EventType.WARMED_UP, "instance", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime),
+        detail.toString());
+  }
+
+  private static Future<String> submit(String name, Callable<String> step) {
+    return WARMUP_EXECUTOR.submit(() -> {
+      try {
+        return step.call();
+      } catch (Exception e) {
+        EventLog.record(EventType.WARMUP_STEP_FAILED, name, 0, e.getMessage());
+        return null;
+      }
+    });
+  }
+
+  private static String await(Future<String> step) {
+    try {
+      return step.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      return null;
+    }
+  }
+}
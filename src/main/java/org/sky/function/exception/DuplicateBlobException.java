@@ -0,0 +1,16 @@
+package org.sky.function.exception;
+
+import org.sky.model.DedupRecord;
+
+public class DuplicateBlobException extends RuntimeException {
+    private final DedupRecord existing;
+
+    public DuplicateBlobException(String blobName, DedupRecord existing) {
+        super("Blob " + blobName + " was already decrypted to " + existing.getDecryptedBlobName());
+        this.existing = existing;
+    }
+
+    public DedupRecord getExisting() {
+        return existing;
+    }
+}
@@ -0,0 +1,144 @@
+package org.sky.keys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps blob paths and PGP key IDs to the Key Vault secrets of the tenant that owns them, so one instance can
+ * decrypt for every partner.
+ *
+ * <p>The catalogue is written as {@code prefix=keySecret:passphraseSecret[:keyId,keyId];...}, e.g.
+ * {@code encrypted-files/acme/=pgp-key-acme:pgp-pass-acme:1A2B3C4D5E6F7081}. Paths are
+ * {@code container/blobName}; the longest matching prefix wins and an empty prefix matches everything.
+ *
+ * <p>A blob is only ever decrypted with the ring of the tenant that owns its path, whatever key it was encrypted
+ * to. A route that declares key IDs accepts only those, so a message to any other key fails without loading the
+ * tenant's secrets.
+ */
+public class KeyCatalog {
+
+  private static final ConcurrentHashMap<List<Object>, KeyCatalog> CATALOGS_BY_SPEC = new ConcurrentHashMap<>();
+
+  private final List<Route> routes;
+
+  KeyCatalog(List<Route> routes) {
+    List<Route> sorted = new ArrayList<>(routes);
+    sorted.sort(Comparator.comparingInt((Route route) -> route.prefix.length()).reversed());
+    this.routes = sorted;
+  }
+
+  /**
+   * The catalogue for {@code spec}, shared by every invocation with the same settings. A single secret pair
+   * configured the old way becomes the catch-all route.
+   */
+  public static KeyCatalog forSpec(String spec, KeySecretNames defaultSecrets) {
+    // Both secret names are part of the key: settings differing only in the passphrase get their own catalogue.
+    List<Object> key = Arrays.asList(spec, defaultSecrets);
+    return CATALOGS_BY_SPEC.computeIfAbsent(key, ignored -> parse(spec, defaultSecrets));
+  }
+
+  /**
+   * The catalogue for the {@code PGP_KEY_CATALOG}, {@code PGP_PRIVATE_KEY_SECRET_NAME} and
+   * {@code PGP_PASSPHRASE_SECRET_NAME} settings. The two secret names are set together or not at all, and without
+   * them the catalogue has to route every path.
+   */
+  public static KeyCatalog forSettings(String spec, String privateKeySecretName, String passphraseSecretName) {
+    if ((privateKeySecretName == null) != (passphraseSecretName == null)) {
+      throw new IllegalArgumentException(
+          "PGP_PRIVATE_KEY_SECRET_NAME and PGP_PASSPHRASE_SECRET_NAME must be set together");
+    }
+    if (spec == null && privateKeySecretName == null) {
+      throw new IllegalArgumentException(
+          "Set PGP_KEY_CATALOG, or PGP_PRIVATE_KEY_SECRET_NAME and PGP_PASSPHRASE_SECRET_NAME");
+    }
+    return forSpec(spec, privateKeySecretName != null
+        ? new KeySecretNames(privateKeySecretName, passphraseSecretName)
+        : null);
+  }
+
+  static KeyCatalog parse(String spec, KeySecretNames defaultSecrets) {
+    List<Route> routes = new ArrayList<>();
+    if (spec != null) {
+      for (String entry : spec.split(";")) {
+        if (entry.isBlank()) {
+          continue;
+        }
+        int separator = entry.lastIndexOf('=');
+        String[] fields = entry.substring(separator + 1).trim().split(":");
+        if (separator < 0 || fields.length < 2 || fields.length > 3) {
+          throw new IllegalArgumentException("Invalid key catalogue entry: " + entry);
+        }
+        Set<Long> keyIds = new HashSet<>();
+        if (fields.length == 3) {
+          for (String keyId : fields[2].split(",")) {
+            keyIds.add(Long.parseUnsignedLong(keyId.trim(), 16));
+          }
+        }
+        routes.add(new Route(entry.substring(0, separator).trim(),
+            new KeySecretNames(fields[0].trim(), fields[1].trim()), keyIds));
+      }
+    }
+    if (defaultSecrets != null) {
+      routes.add(new Route("", defaultSecrets, Set.of()));
+    }
+    if (routes.isEmpty()) {
+      throw new IllegalArgumentException("Key catalogue has no entries and no default key secrets");
+    }
+    return new KeyCatalog(routes);
+  }
+
+  /** The secrets of the tenant that owns {@code path}, or null if no prefix matches. */
+  public KeySecretNames forPath(String path) {
+    Route route = routeFor(path);
+    return route != null ? route.secrets : null;
+  }
+
+  /**
+   * A resolver for one blob: recipient key IDs resolve only against the ring of the tenant that owns
+   * {@code path}, and only to the IDs its route declares, if any.
+   */
+  public PrivateKeyResolver resolverFor(String path, RingLoader loader) {
+    Route route = routeFor(path);
+    return keyId -> {
+      if (route == null || !route.accepts(keyId)) {
+        return null;
+      }
+      return loader.load(route.secrets).resolve(keyId);
+    };
+  }
+
+  private Route routeFor(String path) {
+    for (Route route : routes) {
+      if (path.startsWith(route.prefix)) {
+        return route;
+      }
+    }
+    return null;
+  }
+
+  @FunctionalInterface
+  public interface RingLoader {
+    UnlockedKeyRing load(KeySecretNames secrets);
+  }
+
+  private static final class Route {
+    final String prefix;
+    final KeySecretNames secrets;
+    final Set<Long> keyIds;
+
+    Route(String prefix, KeySecretNames secrets, Set<Long> keyIds) {
+      this.prefix = prefix;
+      this.secrets = secrets;
+      this.keyIds = keyIds;
+    }
+
+    boolean accepts(long keyId) {
+      return keyIds.isEmpty() || keyIds.contains(keyId);
+    }
+  }
+}
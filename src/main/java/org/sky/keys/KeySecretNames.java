@@ -0,0 +1,40 @@
+package org.sky.keys;
+
+import java.util.Objects;
+
+/** The pair of Key Vault secrets that holds one PGP key ring and its passphrase. */
+public class KeySecretNames {
+  private final String privateKeySecretName;
+  private final String passphraseSecretName;
+
+  public KeySecretNames(String privateKeySecretName, String passphraseSecretName) {
+    this.privateKeySecretName = privateKeySecretName;
+    this.passphraseSecretName = passphraseSecretName;
+  }
+
+  public String getPrivateKeySecretName() { return privateKeySecretName; }
+  public String getPassphraseSecretName() { return passphraseSecretName; }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof KeySecretNames)) {
+      return false;
+    }
+    KeySecretNames names = (KeySecretNames) other;
+    return Objects.equals(privateKeySecretName, names.privateKeySecretName)
+        && Objects.equals(passphraseSecretName, names.passphraseSecretName);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(privateKeySecretName, passphraseSecretName);
+  }
+
+  @Override
+  public String toString() {
+    return privateKeySecretName;
+  }
+}
@@ -0,0 +1,193 @@
+package org.sky.keys;
+
+import org.sky.azure.AzureClientRegistry;
+import org.sky.azure.AzureKeyVaultClient;
+import org.sky.events.EventLog;
+import org.sky.events.EventType;
+import org.sky.model.VersionedSecret;
+import org.sky.utils.DaemonThreads;
+import org.sky.utils.PGPFileDecryptor;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Unlocked key rings by secret names. Key Vault reads and the S2K unlock run outside the map: one caller per
+ * key loads while the others wait on its future, so lookups of other keys are never blocked behind it.
+ */
+public class PGPKeyCache {
+
+  private static final ConcurrentHashMap<List<Object>, PGPKeyCache> CACHES_BY_VAULT = new ConcurrentHashMap<>();
+  private static final double REFRESH_AHEAD_RATIO = 0.8;
+  private static final Executor REFRESH_EXECUTOR = Executors.newSingleThreadExecutor(
+      DaemonThreads.named("pgp-key-refresh"));
+
+  private final SecretLoader secretLoader;
+  private final long ttlNanos;
+  private final long refreshAheadNanos;
+  private final Executor refreshExecutor;
+  private final LongSupplier clock;
+  private final ConcurrentHashMap<String, CacheEntry> entries = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, CompletableFuture<CacheEntry>> loading = new ConcurrentHashMap<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder refreshes = new LongAdder();
+  private final Logger logger = Logger.getLogger(PGPKeyCache.class.getName());
+
+  PGPKeyCache(SecretLoader secretLoader, Duration ttl, Executor refreshExecutor, LongSupplier clock) {
+    this.secretLoader = secretLoader;
+    this.ttlNanos = ttl.toNanos();
+    this.refreshAheadNanos = (long) (ttlNanos * REFRESH_AHEAD_RATIO);
+    this.refreshExecutor = refreshExecutor;
+    this.clock = clock;
+  }
+
+  /** One cache per vault and TTL, so a changed KEY_CACHE_TTL_MINUTES applies from the next invocation. */
+  public static PGPKeyCache forVault(String keyVaultUrl, Duration ttl) {
+    return CACHES_BY_VAULT.computeIfAbsent(Arrays.asList(keyVaultUrl, ttl), key -> {
+      AzureKeyVaultClient keyVaultClient = AzureClientRegistry.keyVault(keyVaultUrl);
+      return new PGPKeyCache(keyVaultClient::getVersionedSecret, ttl, REFRESH_EXECUTOR, System::nanoTime);
+    });
+  }
+
+  public UnlockedKeyRing get(String privateKeySecretName, String passphraseSecretName) {
+    String cacheKey = privateKeySecretName + "|" + passphraseSecretName;
+    CacheEntry entry = entries.get(cacheKey);
+    long now = clock.getAsLong();
+
+    if (entry != null && !entry.isExpired(now)) {
+      hits.increment();
+      if (entry.needsRefresh(now)) {
+        scheduleRefresh(cacheKey, entry, privateKeySecretName, passphraseSecretName);
+      }
+      return entry.keyRing;
+    }
+
+    misses.increment();
+    CompletableFuture<CacheEntry> ownLoad = new CompletableFuture<>();
+    CompletableFuture<CacheEntry> inFlight = loading.putIfAbsent(cacheKey, ownLoad);
+    if (inFlight != null) {
+      return await(inFlight).keyRing;
+    }
+    try {
+      // Another caller may have finished loading between the lookup above and claiming the load.
+      CacheEntry current = entries.get(cacheKey);
+      CacheEntry loaded = current != null && current != entry && !current.isExpired(clock.getAsLong())
+          ? current
+          : load(current, privateKeySecretName, passphraseSecretName);
+      entries.put(cacheKey, loaded);
+      ownLoad.complete(loaded);
+      return loaded.keyRing;
+    } catch (RuntimeException | Error e) {
+      ownLoad.completeExceptionally(e);
+      throw e;
+    } finally {
+      loading.remove(cacheKey, ownLoad);
+    }
+  }
+
+  public UnlockedKeyRing get(KeySecretNames secrets) {
+    return get(secrets.getPrivateKeySecretName(), secrets.getPassphraseSecretName());
+  }
+
+  public void invalidate(String privateKeySecretName, String passphraseSecretName) {
+    entries.remove(privateKeySecretName + "|" + passphraseSecretName);
+  }
+
+  public void invalidateAll() {
+    entries.clear();
+  }
+
+  public long getHitCount() { return hits.sum(); }
+  public long getMissCount() { return misses.sum(); }
+  public long getRefreshCount() { return refreshes.sum(); }
+
+  private void scheduleRefresh(String cacheKey, CacheEntry entry,
+                               String privateKeySecretName, String passphraseSecretName) {
+    if (!entry.refreshing.compareAndSet(false, true)) {
+      return;
+    }
+    refreshExecutor.execute(() -> {
+      try {
+        CacheEntry refreshed = load(entry, privateKeySecretName, passphraseSecretName);
+        // Dropped if the entry was invalidated or reloaded while the refresh ran.
+        if (entries.replace(cacheKey, entry, refreshed)) {
+          refreshes.increment();
+        }
+      } catch (Exception e) {
+        entry.refreshing.set(false);
+        logger.log(Level.WARNING, "Background refresh of PGP key ring failed: " + privateKeySecretName, e);
+      }
+    });
+  }
+
+  private static CacheEntry await(CompletableFuture<CacheEntry> load) {
+    try {
+      return load.join();
+    } catch (CompletionException e) {
+      // The loading caller already threw this; waiters see the same failure.
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private CacheEntry load(CacheEntry current, String privateKeySecretName, String passphraseSecretName) {
+    VersionedSecret privateKeySecret = secretLoader.load(privateKeySecretName);
+    VersionedSecret passphraseSecret = secretLoader.load(passphraseSecretName);
+    String version = privateKeySecret.getVersion() + "|" + passphraseSecret.getVersion();
+    long now = clock.getAsLong();
+
+    // Same secret versions: keep the already unlocked keys and skip the parse and S2K work.
+    if (current != null && version.equals(current.keyRing.getVersion())) {
+      return new CacheEntry(current.keyRing, now);
+    }
+
+    byte[] privateKeyBytes = Base64.getDecoder().decode(privateKeySecret.getValue());
+    UnlockedKeyRing keyRing = new UnlockedKeyRing(version, PGPFileDecryptor.unlockPrivateKeys(
+        PGPFileDecryptor.readSecretKeyRing(privateKeyBytes), passphraseSecret.getValue()));
+
+    EventLog.record(EventType.KEY_RING_LOADED, privateKeySecretName, keyRing.getKeyIds().size());
+    return new CacheEntry(keyRing, now);
+  }
+
+  @FunctionalInterface
+  interface SecretLoader {
+    VersionedSecret load(String secretName);
+  }
+
+  private class CacheEntry {
+    private final UnlockedKeyRing keyRing;
+    private final long loadedAt;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    CacheEntry(UnlockedKeyRing keyRing, long loadedAt) {
+      this.keyRing = keyRing;
+      this.loadedAt = loadedAt;
+    }
+
+    boolean isExpired(long now) {
+      return now - loadedAt >= ttlNanos;
+    }
+
+    boolean needsRefresh(long now) {
+      return now - loadedAt >= refreshAheadNanos;
+    }
+  }
+}
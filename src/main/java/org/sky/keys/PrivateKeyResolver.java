@@ -0,0 +1,9 @@
+package org.sky.keys;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+
+@FunctionalInterface
+public interface PrivateKeyResolver {
+  PGPPrivateKey resolve(long keyId) throws PGPException;
+}
@@ -0,0 +1,29 @@
+package org.sky.keys;
+
+import org.bouncycastle.openpgp.PGPPrivateKey;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class UnlockedKeyRing implements PrivateKeyResolver {
+  private final String version;
+  private final Map<Long, PGPPrivateKey> privateKeys;
+
+  public UnlockedKeyRing(String version, Map<Long, PGPPrivateKey> privateKeys) {
+    if (privateKeys == null || privateKeys.isEmpty()) {
+      throw new IllegalArgumentException("Unlocked key ring must contain at least one private key");
+    }
+    this.version = version;
+    this.privateKeys = Collections.unmodifiableMap(new HashMap<>(privateKeys));
+  }
+
+  @Override
+  public PGPPrivateKey resolve(long keyId) {
+    return privateKeys.get(keyId);
+  }
+
+  public String getVersion() { return version; }
+  public Set<Long> getKeyIds() { return privateKeys.keySet(); }
+}
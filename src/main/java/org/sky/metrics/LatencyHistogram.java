@@ -0,0 +1,106 @@
+package org.sky.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets: each power of two is split into 16 linear
+ * sub-buckets, so any recorded value is reported within 6.25% over a range of nanoseconds to hours. Recording is
+ * a few atomic increments; {@link #snapshotAndReset()} hands the interval's counts to the exporter.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAdder totalBytes = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  public void record(long nanos, long bytes) {
+    long value = Math.max(0, nanos);
+    counts.incrementAndGet(bucketIndex(value));
+    totalNanos.add(value);
+    totalBytes.add(bytes);
+    maxNanos.accumulateAndGet(value, Math::max);
+  }
+
+  public Snapshot snapshotAndReset() {
+    long[] snapshot = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshot[i] = counts.getAndSet(i, 0);
+    }
+    return new Snapshot(snapshot, totalNanos.sumThenReset(), totalBytes.sumThenReset(), maxNanos.getAndSet(0));
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /** Midpoint of the values that fall in the bucket. */
+  static long bucketValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lowerBound + ((1L << shift) >> 1);
+  }
+
+  public static final class Snapshot {
+    private final long[] counts;
+    private final long count;
+    private final long totalNanos;
+    private final long totalBytes;
+    private final long maxNanos;
+
+    Snapshot(long[] counts, long totalNanos, long totalBytes, long maxNanos) {
+      long sum = 0;
+      for (long bucketCount : counts) {
+        sum += bucketCount;
+      }
+      this.counts = counts;
+      this.count = sum;
+      this.totalNanos = totalNanos;
+      this.totalBytes = totalBytes;
+      this.maxNanos = maxNanos;
+    }
+
+    public long getCount() { return count; }
+    public long getTotalNanos() { return totalNanos; }
+    public long getTotalBytes() { return totalBytes; }
+    public long getMaxNanos() { return maxNanos; }
+
+    /** The value below which {@code percentile} percent of the recordings fall, for 0 &lt; percentile &lt;= 100. */
+    public long getValueAtPercentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(bucketValue(i), maxNanos);
+        }
+      }
+      return maxNanos;
+    }
+
+    /** Bytes moved per second of time spent in the stage, or 0 when the stage carries no byte count. */
+    public double getMegabytesPerSecond() {
+      if (totalNanos == 0) {
+        return 0;
+      }
+      return totalBytes / (1024.0 * 1024.0) / (totalNanos / 1_000_000_000.0);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package org.sky.metrics;
+
+import org.sky.utils.DaemonThreads;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Per-instance latency histograms and throughput for every decryption stage. Invocations record into the shared
+ * instance; a daemon thread logs p50/p95/p99, max and MB/s per stage once per export interval and starts the next
+ * interval from zero, so each line describes only the invocations since the previous one.
+ */
+public final class StageMetrics {
+
+  private static final StageMetrics SHARED = new StageMetrics();
+
+  private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+  private final Logger logger = Logger.getLogger(StageMetrics.class.getName());
+  private ScheduledExecutorService exporter;
+
+  StageMetrics() {
+  }
+
+  public static StageMetrics shared() {
+    return SHARED;
+  }
+
+  public void record(StageTimings timings) {
+    for (String stage : timings.stageNames()) {
+      record(stage, timings.getNanos(stage), timings.getBytes(stage));
+    }
+  }
+
+  public void record(String stage, long nanos, long bytes) {
+    histograms.computeIfAbsent(stage, name -> new LatencyHistogram()).record(nanos, bytes);
+  }
+
+  /** Starts the periodic export on first call; later calls and a zero or negative interval do nothing. */
+  public synchronized void startExport(Duration interval) {
+    if (exporter != null || interval.isZero() || interval.isNegative()) {
+      return;
+    }
+    exporter = Executors.newSingleThreadScheduledExecutor(DaemonThreads.named("stage-metrics-export"));
+    long seconds = Math.max(1, interval.getSeconds());
+    exporter.scheduleAtFixedRate(() -> export().forEach(logger::info), seconds, seconds, TimeUnit.SECONDS);
+  }
+
+  /** Formats and resets the current interval; stages with no recordings since the last export are skipped. */
+  public List<String> export() {
+    List<String> lines = new ArrayList<>();
+    for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+      LatencyHistogram.Snapshot snapshot = entry.getValue().snapshotAndReset();
+      if (snapshot.getCount() == 0) {
+        continue;
+      }
+      lines.add(String.format(Locale.ROOT,
+          "Stage %s: count=%d p50=%.1f ms p95=%.1f ms p99=%.1f ms max=%.1f ms throughput=%.1f MB/s",
+          entry.getKey(), snapshot.getCount(),
+          millis(snapshot.getValueAtPercentile(50)),
+          millis(snapshot.getValueAtPercentile(95)),
+          millis(snapshot.getValueAtPercentile(99)),
+          millis(snapshot.getMaxNanos()),
+          snapshot.getMegabytesPerSecond()));
+    }
+    return lines;
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1_000_000.0;
+  }
+}
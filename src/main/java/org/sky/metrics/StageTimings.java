@@ -0,0 +1,67 @@
+package org.sky.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Nanosecond timings of the stages of one decryption, in the order they ran. {@link #toString()} is the compact
+ * form stored on the decryption log row, e.g. {@code keys=0.4;read=12.0;decrypt=801.3;inflate=203.1;upload=410.9}
+ * in milliseconds.
+ */
+public class StageTimings {
+
+  public static final String KEYS = "keys";
+  public static final String READ = "read";
+  public static final String DECRYPT = "decrypt";
+  public static final String INFLATE = "inflate";
+  public static final String ENCODE = "encode";
+  public static final String UPLOAD = "upload";
+  public static final String LOG = "log";
+  public static final String TOTAL = "total";
+
+  private final Map<String, Stage> stages = new LinkedHashMap<>();
+
+  public void record(String stage, long nanos) {
+    record(stage, nanos, 0);
+  }
+
+  /** Adds to the stage; {@code bytes} is what the stage moved and feeds its MB/s, or 0 if not meaningful. */
+  public void record(String stage, long nanos, long bytes) {
+    Stage timing = stages.computeIfAbsent(stage, name -> new Stage());
+    timing.nanos += Math.max(0, nanos);
+    timing.bytes += bytes;
+  }
+
+  public long getNanos(String stage) {
+    Stage timing = stages.get(stage);
+    return timing == null ? 0 : timing.nanos;
+  }
+
+  public long getBytes(String stage) {
+    Stage timing = stages.get(stage);
+    return timing == null ? 0 : timing.bytes;
+  }
+
+  public Iterable<String> stageNames() {
+    return stages.keySet();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder();
+    for (Map.Entry<String, Stage> entry : stages.entrySet()) {
+      if (text.length() > 0) {
+        text.append(';');
+      }
+      text.append(entry.getKey()).append('=')
+          .append(String.format(Locale.ROOT, "%.1f", entry.getValue().nanos / 1_000_000.0));
+    }
+    return text.toString();
+  }
+
+  private static final class Stage {
+    long nanos;
+    long bytes;
+  }
+}
@@ -0,0 +1,41 @@
+package org.sky.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Measures how long callers spend blocked in reads of the wrapped stream, and how many bytes it returned. */
+public class TimedInputStream extends FilterInputStream {
+
+  private long nanos;
+  private long bytes;
+
+  public TimedInputStream(InputStream in) {
+    super(in);
+  }
+
+  @Override
+  public int read() throws IOException {
+    long start = System.nanoTime();
+    int value = in.read();
+    nanos += System.nanoTime() - start;
+    if (value != -1) {
+      bytes++;
+    }
+    return value;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    long start = System.nanoTime();
+    int count = in.read(buffer, offset, length);
+    nanos += System.nanoTime() - start;
+    if (count > 0) {
+      bytes += count;
+    }
+    return count;
+  }
+
+  public long getNanos() { return nanos; }
+  public long getBytes() { return bytes; }
+}
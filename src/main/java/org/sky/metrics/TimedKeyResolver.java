@@ -0,0 +1,33 @@
+package org.sky.metrics;
+
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.sky.keys.PrivateKeyResolver;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures time spent resolving private keys: Key Vault reads and S2K unlocks on a cache miss. Keys resolve when
+ * the decryptor reaches the recipient list, possibly on a pipeline thread, so the total is kept atomically.
+ */
+public class TimedKeyResolver implements PrivateKeyResolver {
+
+  private final PrivateKeyResolver resolver;
+  private final AtomicLong nanos = new AtomicLong();
+
+  public TimedKeyResolver(PrivateKeyResolver resolver) {
+    this.resolver = resolver;
+  }
+
+  @Override
+  public PGPPrivateKey resolve(long keyId) throws PGPException {
+    long start = System.nanoTime();
+    try {
+      return resolver.resolve(keyId);
+    } finally {
+      nanos.addAndGet(System.nanoTime() - start);
+    }
+  }
+
+  public long getNanos() { return nanos.get(); }
+}
@@ -0,0 +1,42 @@
+package org.sky.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/** Measures how long callers spend blocked in writes to the wrapped stream, and how many bytes they wrote. */
+public class TimedOutputStream extends FilterOutputStream {
+
+  private long nanos;
+  private long bytes;
+
+  public TimedOutputStream(OutputStream out) {
+    super(out);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    long start = System.nanoTime();
+    out.write(b);
+    nanos += System.nanoTime() - start;
+    bytes++;
+  }
+
+  @Override
+  public void write(byte[] buffer, int offset, int length) throws IOException {
+    long start = System.nanoTime();
+    out.write(buffer, offset, length);
+    nanos += System.nanoTime() - start;
+    bytes += length;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    long start = System.nanoTime();
+    out.flush();
+    nanos += System.nanoTime() - start;
+  }
+
+  public long getNanos() { return nanos; }
+  public long getBytes() { return bytes; }
+}
@@ -0,0 +1,7 @@
+package org.sky.model;
+
+import java.util.List;
+
+public class BlobBatchMessage {
+  public List<String> blobUrls;
+}
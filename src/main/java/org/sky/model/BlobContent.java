@@ -0,0 +1,54 @@
+package org.sky.model;
+
+import java.util.Base64;
+
+/**
+ * What a writer handed to the upload: the checksum of the plaintext and, when an output codec was applied, the
+ * {@code Content-Encoding}, the plaintext size and the MD5 of the encoded bytes. {@link #getContentMd5()} is always
+ * the MD5 of the bytes as stored, which is what {@code Content-MD5} must describe.
+ */
+public class BlobContent {
+  private final PlaintextChecksum plaintextChecksum;
+  private final String contentEncoding;
+  private final long plaintextBytes;
+  private final byte[] contentMd5;
+
+  private BlobContent(PlaintextChecksum plaintextChecksum, String contentEncoding, long plaintextBytes,
+                      byte[] contentMd5) {
+    this.plaintextChecksum = plaintextChecksum;
+    this.contentEncoding = contentEncoding;
+    this.plaintextBytes = plaintextBytes;
+    this.contentMd5 = contentMd5;
+  }
+
+  /** Plaintext stored as is; {@code checksum} may be null if none was computed. */
+  public static BlobContent plain(PlaintextChecksum checksum, long plaintextBytes) {
+    return new BlobContent(checksum, null, plaintextBytes, checksum != null ? checksum.getMd5() : null);
+  }
+
+  public static BlobContent encoded(PlaintextChecksum checksum, String contentEncoding, long plaintextBytes,
+                                    byte[] encodedMd5) {
+    return new BlobContent(checksum, contentEncoding, plaintextBytes, encodedMd5.clone());
+  }
+
+  /**
+   * Plaintext stored across several blobs, as shards or archive entries: each carries its own {@code Content-MD5},
+   * so the whole has none.
+   */
+  public static BlobContent sharded(PlaintextChecksum checksum, String contentEncoding, long plaintextBytes) {
+    return new BlobContent(checksum, contentEncoding, plaintextBytes, null);
+  }
+
+  public PlaintextChecksum getPlaintextChecksum() { return plaintextChecksum; }
+  /** {@code gzip} or {@code zstd}, or null when the plaintext is stored as is. */
+  public String getContentEncoding() { return contentEncoding; }
+  public long getPlaintextBytes() { return plaintextBytes; }
+
+  public byte[] getContentMd5() {
+    return contentMd5 != null ? contentMd5.clone() : null;
+  }
+
+  public String getContentMd5Base64() {
+    return contentMd5 != null ? Base64.getEncoder().encodeToString(contentMd5) : null;
+  }
+}
@@ -0,0 +1,25 @@
+package org.sky.model;
+
+import java.util.Map;
+
+public class BlobEventSchema {
+  public static final String BLOB_CREATED = "Microsoft.Storage.BlobCreated";
+
+  public String id;
+  public String topic;
+  public String subject;
+  public String eventType;
+  public String eventTime;
+  public String dataVersion;
+  public String metadataVersion;
+  public Map<String, Object> data;
+
+  public String getBlobUrl() {
+    return data != null ? (String) data.get("url") : null;
+  }
+
+  public Long getContentLength() {
+    Object contentLength = data != null ? data.get("contentLength") : null;
+    return contentLength instanceof Number ? ((Number) contentLength).longValue() : null;
+  }
+}
@@ -0,0 +1,45 @@
+package org.sky.model;
+
+public class DecompressionStats {
+  private final String algorithm;
+  private long compressedBytes;
+  private long uncompressedBytes;
+  private long inflateNanos;
+  private PlaintextChecksum plaintextChecksum;
+
+  public DecompressionStats(String algorithm) {
+    this.algorithm = algorithm;
+  }
+
+  public void addCompressedBytes(long bytes) {
+    compressedBytes += bytes;
+  }
+
+  public void addUncompressedBytes(long bytes) {
+    uncompressedBytes += bytes;
+  }
+
+  public void addInflateNanos(long nanos) {
+    inflateNanos += nanos;
+  }
+
+  public void setPlaintextChecksum(PlaintextChecksum plaintextChecksum) {
+    this.plaintextChecksum = plaintextChecksum;
+  }
+
+  public String getAlgorithm() { return algorithm; }
+  public long getCompressedBytes() { return compressedBytes; }
+  public long getUncompressedBytes() { return uncompressedBytes; }
+  public long getInflateNanos() { return inflateNanos; }
+  public PlaintextChecksum getPlaintextChecksum() { return plaintextChecksum; }
+
+  public double getRatio() {
+    return compressedBytes == 0 ? 1.0 : (double) uncompressedBytes / compressedBytes;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: %d -> %d bytes (x%.2f) in %d ms", algorithm, compressedBytes, uncompressedBytes,
+        getRatio(), inflateNanos / 1_000_000);
+  }
+}
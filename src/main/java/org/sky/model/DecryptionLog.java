@@ -2,23 +2,94 @@ package org.sky.model;
 
 import com.azure.data.tables.models.TableEntity;
 
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 public class DecryptionLog {
+  public static final int SHARD_COUNT = 8;
+  public static final String INDEX_PARTITION_PREFIX = "blob-";
+
+  private static final DateTimeFormatter HOUR_BUCKET_FORMAT =
+      DateTimeFormatter.ofPattern("yyyyMMddHH").withZone(ZoneOffset.UTC);
+
   private String blobName;
   private String status;
   private Long fileSizeBytes;
   private Long processingTimeMs;
   private String errorMessage;
+  private String stageTimings;
+  private String duplicateOf;
+  private String contentMd5;
+  private String contentSha256;
+  private String contentEncoding;
+  private Long plaintextSizeBytes;
+  private Long storedSizeBytes;
   private OffsetDateTime timestamp;
   private String rowKey;
 
   public DecryptionLog(String blobName, String status) {
     this.blobName = blobName;
     this.status = status;
-    this.timestamp = OffsetDateTime.now();
-    this.rowKey = UUID.randomUUID().toString();
+    this.timestamp = OffsetDateTime.now(ZoneOffset.UTC);
+    this.rowKey = rowKeyPrefix(timestamp.toInstant()) + "-" + UUID.randomUUID();
+  }
+
+  private DecryptionLog(String blobName, String status, OffsetDateTime timestamp, String rowKey) {
+    this.blobName = blobName;
+    this.status = status;
+    this.timestamp = timestamp;
+    this.rowKey = rowKey;
+  }
+
+  public static DecryptionLog fromTableEntity(TableEntity entity) {
+    DecryptionLog log = new DecryptionLog(
+        (String) entity.getProperty("BlobName"),
+        (String) entity.getProperty("Status"),
+        (OffsetDateTime) entity.getProperty("ProcessedAt"),
+        // Index entries carry the row key of the log entry they point to.
+        entity.getProperty("LogRowKey") != null ? (String) entity.getProperty("LogRowKey") : entity.getRowKey());
+    log.fileSizeBytes = (Long) entity.getProperty("FileSizeBytes");
+    log.processingTimeMs = (Long) entity.getProperty("ProcessingTimeMs");
+    log.errorMessage = (String) entity.getProperty("ErrorMessage");
+    log.stageTimings = (String) entity.getProperty("StageTimings");
+    log.duplicateOf = (String) entity.getProperty("DuplicateOf");
+    log.contentMd5 = (String) entity.getProperty("ContentMD5");
+    log.contentSha256 = (String) entity.getProperty("ContentSHA256");
+    log.contentEncoding = (String) entity.getProperty("ContentEncoding");
+    log.plaintextSizeBytes = (Long) entity.getProperty("PlaintextSizeBytes");
+    log.storedSizeBytes = (Long) entity.getProperty("StoredSizeBytes");
+    return log;
+  }
+
+  public static String partitionKey(Instant instant, int shard) {
+    return HOUR_BUCKET_FORMAT.format(instant) + "-" + String.format("%02d", shard);
+  }
+
+  public static int shardFor(String blobName) {
+    return Math.floorMod(blobName.hashCode(), SHARD_COUNT);
+  }
+
+  // Row keys sort newest first: the prefix is the remaining distance to Long.MAX_VALUE, zero padded.
+  public static String rowKeyPrefix(Instant instant) {
+    return String.format("%019d", Long.MAX_VALUE - instant.toEpochMilli());
+  }
+
+  /**
+   * Index entries are spread over {@value #SHARD_COUNT} partitions by the hash of the blob name, so a batch of logs
+   * writes its index rows in as many transactions at most.
+   */
+  public static String indexPartitionKey(String blobName) {
+    return INDEX_PARTITION_PREFIX + String.format("%02d", TableKeys.shardOf(TableKeys.nameHash(blobName), SHARD_COUNT));
+  }
+
+  /** Every index row key of {@code blobName} starts with this, followed by the log entry's own row key. */
+  public static String indexRowKeyPrefix(String blobName) {
+    return TableKeys.nameHash(blobName) + "-";
   }
 
   public void setFileSizeBytes(Long fileSizeBytes) {
@@ -33,12 +104,77 @@ public class DecryptionLog {
     this.errorMessage = errorMessage;
   }
 
+  /** Compact per-stage breakdown in milliseconds, e.g. {@code keys=0.4;decrypt=801.3;upload=410.9}. */
+  public void setStageTimings(String stageTimings) {
+    this.stageTimings = stageTimings;
+  }
+
+  /** For a {@code DUPLICATE} entry, the decrypted blob produced when the same blob was first processed. */
+  public void setDuplicateOf(String duplicateOf) {
+    this.duplicateOf = duplicateOf;
+  }
+
+  /**
+   * The decrypted blob as stored: its {@code Content-MD5}, the SHA-256 of the plaintext, and with an output codec
+   * the {@code Content-Encoding} and the sizes before and after encoding.
+   */
+  public void setUploadedBlob(UploadedBlob uploaded) {
+    BlobContent content = uploaded != null ? uploaded.getContent() : null;
+    if (content == null) {
+      return;
+    }
+    this.contentMd5 = content.getContentMd5Base64();
+    this.contentSha256 = content.getPlaintextChecksum() != null
+        ? content.getPlaintextChecksum().getSha256Hex()
+        : null;
+    this.contentEncoding = content.getContentEncoding();
+    this.plaintextSizeBytes = content.getPlaintextBytes();
+    this.storedSizeBytes = uploaded.getSizeBytes();
+  }
+
+  public String getBlobName() { return blobName; }
+  public String getStatus() { return status; }
+  public Long getFileSizeBytes() { return fileSizeBytes; }
+  public Long getProcessingTimeMs() { return processingTimeMs; }
+  public String getErrorMessage() { return errorMessage; }
+  public String getStageTimings() { return stageTimings; }
+  public String getDuplicateOf() { return duplicateOf; }
+  public String getContentMd5() { return contentMd5; }
+  public String getContentSha256() { return contentSha256; }
+  public String getContentEncoding() { return contentEncoding; }
+  public Long getPlaintextSizeBytes() { return plaintextSizeBytes; }
+  public Long getStoredSizeBytes() { return storedSizeBytes; }
+  public OffsetDateTime getTimestamp() { return timestamp; }
+  public String getRowKey() { return rowKey; }
+
+  public String getPartitionKey() {
+    return partitionKey(timestamp.toInstant(), shardFor(blobName));
+  }
+
   public TableEntity toTableEntity() {
-    TableEntity entity = new TableEntity("DecryptionLog", rowKey);
+    return addProperties(new TableEntity(getPartitionKey(), rowKey));
+  }
 
+  public TableEntity toIndexEntity() {
+    TableEntity entity = addProperties(new TableEntity(indexPartitionKey(blobName),
+        indexRowKeyPrefix(blobName) + rowKey));
+    entity.addProperty("LogPartitionKey", getPartitionKey());
+    entity.addProperty("LogRowKey", rowKey);
+    return entity;
+  }
+
+  public List<TableEntity> toTableEntities() {
+    List<TableEntity> entities = new ArrayList<>(2);
+    entities.add(toTableEntity());
+    entities.add(toIndexEntity());
+    return entities;
+  }
+
+  private TableEntity addProperties(TableEntity entity) {
     entity.addProperty("BlobName", blobName);
     entity.addProperty("Status", status);
-    entity.addProperty("Timestamp", timestamp.toString());
+    // "Timestamp" is a server-managed system property, so the processing time is stored separately.
+    entity.addProperty("ProcessedAt", timestamp);
 
     if (fileSizeBytes != null) {
       entity.addProperty("FileSizeBytes", fileSizeBytes);
@@ -52,6 +188,31 @@ public class DecryptionLog {
       entity.addProperty("ErrorMessage", errorMessage);
     }
 
+    if (stageTimings != null) {
+      entity.addProperty("StageTimings", stageTimings);
+    }
+
+    if (duplicateOf != null) {
+      entity.addProperty("DuplicateOf", duplicateOf);
+    }
+
+    if (contentMd5 != null) {
+      entity.addProperty("ContentMD5", contentMd5);
+    }
+
+    if (contentSha256 != null) {
+      entity.addProperty("ContentSHA256", contentSha256);
+    }
+
+    if (contentEncoding != null) {
+      entity.addProperty("ContentEncoding", contentEncoding);
+    }
+
+    if (plaintextSizeBytes != null) {
+      entity.addProperty("PlaintextSizeBytes", plaintextSizeBytes);
+      entity.addProperty("StoredSizeBytes", storedSizeBytes);
+    }
+
     return entity;
   }
-}
\ No newline at end of file
+}
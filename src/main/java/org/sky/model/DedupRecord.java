@@ -0,0 +1,73 @@
+package org.sky.model;
+
+import com.azure.data.tables.models.TableEntity;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * One entry of the deduplication index: a blob that was already decrypted, found either by the ETag of the source
+ * blob or by the SHA-256 of its ciphertext, and the decrypted blob it produced.
+ */
+public class DedupRecord {
+  public static final String PARTITION_PREFIX = "dedup-";
+
+  private final String key;
+  private final String sourceBlobName;
+  private final String decryptedBlobName;
+  private final long sizeBytes;
+  private final OffsetDateTime processedAt;
+
+  public DedupRecord(String key, String sourceBlobName, String decryptedBlobName, long sizeBytes) {
+    this(key, sourceBlobName, decryptedBlobName, sizeBytes, OffsetDateTime.now(ZoneOffset.UTC));
+  }
+
+  private DedupRecord(String key, String sourceBlobName, String decryptedBlobName, long sizeBytes,
+                      OffsetDateTime processedAt) {
+    this.key = key;
+    this.sourceBlobName = sourceBlobName;
+    this.decryptedBlobName = decryptedBlobName;
+    this.sizeBytes = sizeBytes;
+    this.processedAt = processedAt;
+  }
+
+  public static DedupRecord fromTableEntity(TableEntity entity) {
+    Long sizeBytes = (Long) entity.getProperty("FileSizeBytes");
+    return new DedupRecord(
+        entity.getRowKey(),
+        (String) entity.getProperty("SourceBlobName"),
+        (String) entity.getProperty("DecryptedBlobName"),
+        sizeBytes != null ? sizeBytes : 0,
+        (OffsetDateTime) entity.getProperty("ProcessedAt"));
+  }
+
+  /** Same blob version delivered again, e.g. a trigger that fired twice. */
+  public static String etagKey(String blobName, String etag) {
+    // ETags come quoted.
+    return "etag-" + TableKeys.nameHash(blobName) + "-" + etag.replace("\"", "");
+  }
+
+  /** Same ciphertext under any name, e.g. a partner re-sending a file. */
+  public static String contentKey(byte[] sha256) {
+    return "sha256-" + TableKeys.hex(sha256);
+  }
+
+  public static String partitionKey(String key) {
+    return PARTITION_PREFIX + String.format("%02d", Math.floorMod(key.hashCode(), DecryptionLog.SHARD_COUNT));
+  }
+
+  public String getKey() { return key; }
+  public String getSourceBlobName() { return sourceBlobName; }
+  public String getDecryptedBlobName() { return decryptedBlobName; }
+  public long getSizeBytes() { return sizeBytes; }
+  public OffsetDateTime getProcessedAt() { return processedAt; }
+
+  public TableEntity toTableEntity() {
+    TableEntity entity = new TableEntity(partitionKey(key), key);
+    entity.addProperty("SourceBlobName", sourceBlobName);
+    entity.addProperty("DecryptedBlobName", decryptedBlobName);
+    entity.addProperty("FileSizeBytes", sizeBytes);
+    entity.addProperty("ProcessedAt", processedAt);
+    return entity;
+  }
+}
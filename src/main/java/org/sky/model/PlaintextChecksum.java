@@ -0,0 +1,44 @@
+package org.sky.model;
+
+import java.util.Base64;
+
+/**
+ * MD5 and SHA-256 of a decrypted blob, computed while the plaintext was copied to the upload. The MD5 is stored as
+ * the blob's {@code Content-MD5} and the SHA-256 as metadata, so consumers can verify a download without hashing
+ * it twice.
+ */
+public class PlaintextChecksum {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final byte[] md5;
+  private final byte[] sha256;
+
+  public PlaintextChecksum(byte[] md5, byte[] sha256) {
+    this.md5 = md5.clone();
+    this.sha256 = sha256.clone();
+  }
+
+  public byte[] getMd5() { return md5.clone(); }
+  public byte[] getSha256() { return sha256.clone(); }
+
+  /** The form of the {@code Content-MD5} header. */
+  public String getMd5Base64() {
+    return Base64.getEncoder().encodeToString(md5);
+  }
+
+  /** Lowercase hex, the form printed by {@code sha256sum}. */
+  public String getSha256Hex() {
+    char[] hex = new char[sha256.length * 2];
+    for (int i = 0; i < sha256.length; i++) {
+      hex[i * 2] = HEX_DIGITS[(sha256[i] >> 4) & 0xF];
+      hex[i * 2 + 1] = HEX_DIGITS[sha256[i] & 0xF];
+    }
+    return new String(hex);
+  }
+
+  @Override
+  public String toString() {
+    return "md5=" + getMd5Base64() + " sha256=" + getSha256Hex();
+  }
+}
@@ -0,0 +1,107 @@
+package org.sky.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The shards a decrypted blob was split into, in order, with the records, sizes and checksums of each. It is
+ * uploaded as {@value #FILE_NAME} after every shard was committed, so consumers read the shards through it and
+ * never see a partial set.
+ */
+public class ShardManifest {
+  public static final String FILE_NAME = "manifest.json";
+
+  private final String sourceBlobName;
+  private final String recordFormat;
+  private final String contentEncoding;
+  private final BlobContent plaintext;
+  private final List<Shard> shards;
+
+  public ShardManifest(String sourceBlobName, String recordFormat, String contentEncoding, BlobContent plaintext,
+                       List<Shard> shards) {
+    this.sourceBlobName = sourceBlobName;
+    this.recordFormat = recordFormat;
+    this.contentEncoding = contentEncoding;
+    this.plaintext = plaintext;
+    this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+  }
+
+  public List<Shard> getShards() { return shards; }
+
+  public long getRecords() {
+    return shards.stream().mapToLong(Shard::getRecords).sum();
+  }
+
+  public long getStoredBytes() {
+    return shards.stream().mapToLong(shard -> shard.getBlob().getSizeBytes()).sum();
+  }
+
+  public byte[] toJsonBytes() {
+    StringBuilder json = new StringBuilder(256 + shards.size() * 256);
+    json.append("{\n");
+    field(json, "  ", "source", sourceBlobName).append(",\n");
+    field(json, "  ", "recordFormat", recordFormat).append(",\n");
+    field(json, "  ", "contentEncoding", contentEncoding).append(",\n");
+    json.append("  \"records\": ").append(getRecords()).append(",\n");
+    json.append("  \"plaintextBytes\": ").append(plaintext.getPlaintextBytes()).append(",\n");
+    PlaintextChecksum checksum = plaintext.getPlaintextChecksum();
+    field(json, "  ", "plaintextSha256", checksum != null ? checksum.getSha256Hex() : null).append(",\n");
+    json.append("  \"shards\": [");
+    for (int i = 0; i < shards.size(); i++) {
+      json.append(i == 0 ? "\n" : ",\n");
+      shards.get(i).appendJson(json);
+    }
+    json.append(shards.isEmpty() ? "]\n" : "\n  ]\n").append("}\n");
+    return json.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static StringBuilder field(StringBuilder json, String indent, String name, String value) {
+    json.append(indent).append('"').append(name).append("\": ");
+    if (value == null) {
+      return json.append("null");
+    }
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    return json.append('"');
+  }
+
+  /** One shard blob and the number of records in it, not counting a repeated header. */
+  public static class Shard {
+    private final UploadedBlob blob;
+    private final long records;
+
+    public Shard(UploadedBlob blob, long records) {
+      this.blob = blob;
+      this.records = records;
+    }
+
+    public UploadedBlob getBlob() { return blob; }
+    public long getRecords() { return records; }
+
+    private void appendJson(StringBuilder json) {
+      BlobContent content = blob.getContent();
+      PlaintextChecksum checksum = content != null ? content.getPlaintextChecksum() : null;
+      json.append("    {\n");
+      field(json, "      ", "blob", blob.getBlobName()).append(",\n");
+      json.append("      \"records\": ").append(records).append(",\n");
+      json.append("      \"plaintextBytes\": ").append(content != null ? content.getPlaintextBytes() : blob.getSizeBytes())
+          .append(",\n");
+      json.append("      \"storedBytes\": ").append(blob.getSizeBytes()).append(",\n");
+      field(json, "      ", "contentMd5", content != null ? content.getContentMd5Base64() : null).append(",\n");
+      field(json, "      ", "sha256", checksum != null ? checksum.getSha256Hex() : null).append('\n');
+      json.append("    }");
+    }
+  }
+}
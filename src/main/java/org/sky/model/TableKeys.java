@@ -0,0 +1,40 @@
+package org.sky.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Table keys derived from blob names. Names may contain characters keys do not allow ({@code /}, {@code \},
+ * {@code #}, {@code ?}) and run past the 1 KiB key limit, so they are stored as a fixed-length hash.
+ */
+final class TableKeys {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private TableKeys() {
+  }
+
+  /** Lowercase hex SHA-256 of the UTF-8 name: 64 characters, whatever the name. */
+  static String nameHash(String name) {
+    try {
+      return hex(MessageDigest.getInstance("SHA-256").digest(name.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  /** One of {@code shardCount} buckets for a {@link #nameHash}, spread by its leading bytes. */
+  static int shardOf(String nameHash, int shardCount) {
+    return Math.floorMod(Integer.parseUnsignedInt(nameHash.substring(0, 8), 16), shardCount);
+  }
+
+  static String hex(byte[] bytes) {
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+      hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+    }
+    return new String(hex);
+  }
+}
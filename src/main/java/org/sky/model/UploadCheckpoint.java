@@ -0,0 +1,67 @@
+package org.sky.model;
+
+import com.azure.data.tables.models.TableEntity;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Progress of a resumable upload, keyed by the source blob's dedup key. The first attempt fixes the target blob
+ * name and block size; every retry reuses them so the deterministic block IDs line up with the blocks already
+ * staged.
+ */
+public class UploadCheckpoint {
+  public static final String PARTITION_PREFIX = "upload-";
+
+  private final String sourceKey;
+  private final String targetBlobName;
+  private final long blockSize;
+  private final long stagedBytes;
+  private final OffsetDateTime updatedAt;
+
+  public UploadCheckpoint(String sourceKey, String targetBlobName, long blockSize, long stagedBytes) {
+    this(sourceKey, targetBlobName, blockSize, stagedBytes, OffsetDateTime.now(ZoneOffset.UTC));
+  }
+
+  private UploadCheckpoint(String sourceKey, String targetBlobName, long blockSize, long stagedBytes,
+                           OffsetDateTime updatedAt) {
+    this.sourceKey = sourceKey;
+    this.targetBlobName = targetBlobName;
+    this.blockSize = blockSize;
+    this.stagedBytes = stagedBytes;
+    this.updatedAt = updatedAt;
+  }
+
+  public static UploadCheckpoint fromTableEntity(TableEntity entity) {
+    return new UploadCheckpoint(
+        entity.getRowKey(),
+        (String) entity.getProperty("TargetBlobName"),
+        (Long) entity.getProperty("BlockSize"),
+        (Long) entity.getProperty("StagedBytes"),
+        (OffsetDateTime) entity.getProperty("UpdatedAt"));
+  }
+
+  public static String partitionKey(String sourceKey) {
+    return PARTITION_PREFIX + String.format("%02d",
+        Math.floorMod(sourceKey.hashCode(), DecryptionLog.SHARD_COUNT));
+  }
+
+  public UploadCheckpoint withStagedBytes(long stagedBytes) {
+    return new UploadCheckpoint(sourceKey, targetBlobName, blockSize, stagedBytes);
+  }
+
+  public String getSourceKey() { return sourceKey; }
+  public String getTargetBlobName() { return targetBlobName; }
+  public long getBlockSize() { return blockSize; }
+  public long getStagedBytes() { return stagedBytes; }
+  public OffsetDateTime getUpdatedAt() { return updatedAt; }
+
+  public TableEntity toTableEntity() {
+    TableEntity entity = new TableEntity(partitionKey(sourceKey), sourceKey);
+    entity.addProperty("TargetBlobName", targetBlobName);
+    entity.addProperty("BlockSize", blockSize);
+    entity.addProperty("StagedBytes", stagedBytes);
+    entity.addProperty("UpdatedAt", updatedAt);
+    return entity;
+  }
+}
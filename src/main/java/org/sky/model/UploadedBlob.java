@@ -0,0 +1,23 @@
+package org.sky.model;
+
+public class UploadedBlob {
+  private final String blobName;
+  private final long sizeBytes;
+  private final BlobContent content;
+
+  public UploadedBlob(String blobName, long sizeBytes) {
+    this(blobName, sizeBytes, null);
+  }
+
+  public UploadedBlob(String blobName, long sizeBytes, BlobContent content) {
+    this.blobName = blobName;
+    this.sizeBytes = sizeBytes;
+    this.content = content;
+  }
+
+  public String getBlobName() { return blobName; }
+  /** Bytes stored, after any output encoding. */
+  public long getSizeBytes() { return sizeBytes; }
+  /** Checksums and encoding of the uploaded content, or null if the writer did not describe it. */
+  public BlobContent getContent() { return content; }
+}
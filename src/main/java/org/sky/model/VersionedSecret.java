@@ -0,0 +1,17 @@
+package org.sky.model;
+
+public class VersionedSecret {
+  private final String name;
+  private final String version;
+  private final String value;
+
+  public VersionedSecret(String name, String version, String value) {
+    this.name = name;
+    this.version = version;
+    this.value = value;
+  }
+
+  public String getName() { return name; }
+  public String getVersion() { return version; }
+  public String getValue() { return value; }
+}
@@ -0,0 +1,131 @@
+package org.sky.utils;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.AsiExtraField;
+import org.apache.commons.compress.archivers.zip.UnixStat;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipShort;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Archive layouts whose entries can be read as the plaintext streams in, recognised by their first bytes rather
+ * than by the blob name.
+ */
+public enum ArchiveFormat {
+  ZIP,
+  TAR,
+  TAR_GZIP;
+
+  /** Read-ahead needed by {@link #detect}; the stream passed to it must buffer at least this much. */
+  public static final int DETECT_LIMIT = 64 * 1024;
+  private static final int TAR_HEADER_SIZE = 512;
+  private static final ZipShort ASI_HEADER_ID = new AsiExtraField().getHeaderId();
+
+  /**
+   * Recognises the archive at the start of {@code in}, which must support mark, and resets the stream to where it
+   * was. Returns null for anything else, including a gzip file that does not hold a tarball.
+   */
+  public static ArchiveFormat detect(InputStream in) throws IOException {
+    in.mark(DETECT_LIMIT);
+    byte[] head = in.readNBytes(TAR_HEADER_SIZE);
+    in.reset();
+    if (ZipArchiveInputStream.matches(head, head.length)) {
+      return ZIP;
+    }
+    if (TarArchiveInputStream.matches(head, head.length)) {
+      return TAR;
+    }
+    if (GzipCompressorInputStream.matches(head, head.length)) {
+      in.mark(DETECT_LIMIT);
+      byte[] inflated;
+      try {
+        // Only the first tar header is inflated. The shield keeps the gzip reader from closing the source or
+        // moving its mark.
+        inflated = new GzipCompressorInputStream(new FilterInputStream(in) {
+          @Override
+          public boolean markSupported() {
+            return false;
+          }
+
+          @Override
+          public void close() {
+          }
+        }).readNBytes(TAR_HEADER_SIZE);
+      } catch (IOException e) {
+        inflated = new byte[0];
+      }
+      in.reset();
+      if (TarArchiveInputStream.matches(inflated, inflated.length)) {
+        return TAR_GZIP;
+      }
+    }
+    return null;
+  }
+
+  public ArchiveInputStream<? extends ArchiveEntry> open(InputStream in) throws IOException {
+    switch (this) {
+      case ZIP:
+        // Entries written by a streaming zipper may be stored with a data descriptor instead of sizes up front.
+        return new ZipArchiveInputStream(in, StandardCharsets.UTF_8.name(), true, true);
+      case TAR:
+        return new TarArchiveInputStream(in);
+      default:
+        return new TarArchiveInputStream(new GzipCompressorInputStream(in, true));
+    }
+  }
+
+  /**
+   * Whether {@code entry} holds file data, as opposed to a directory, link or device. A streamed ZIP entry only
+   * carries its Unix mode when the zipper wrote an ASi extra field; otherwise the mode is in the central directory,
+   * read with {@link ZipTailInputStream#unixModes()} once the archive ends.
+   */
+  public static boolean isFile(ArchiveEntry entry) {
+    if (entry instanceof TarArchiveEntry) {
+      TarArchiveEntry tarEntry = (TarArchiveEntry) entry;
+      // TarArchiveEntry.isFile is true for any type but a directory, links and devices included.
+      return tarEntry.isFile() && !tarEntry.isSymbolicLink() && !tarEntry.isLink() && !tarEntry.isFIFO()
+          && !tarEntry.isCharacterDevice() && !tarEntry.isBlockDevice();
+    }
+    if (entry instanceof ZipArchiveEntry) {
+      ZipArchiveEntry zipEntry = (ZipArchiveEntry) entry;
+      AsiExtraField asi = (AsiExtraField) zipEntry.getExtraField(ASI_HEADER_ID);
+      int mode = asi != null ? asi.getMode() : zipEntry.getUnixMode();
+      return !zipEntry.isDirectory() && !zipEntry.isUnixSymlink() && isRegularFileMode(mode);
+    }
+    return !entry.isDirectory();
+  }
+
+  /** Whether a ZIP entry's Unix {@code mode} is a regular file; 0, for an entry not made on Unix, counts as one. */
+  public static boolean isRegularFileMode(int mode) {
+    int type = mode & UnixStat.FILE_TYPE_FLAG;
+    return type == 0 || type == UnixStat.FILE_FLAG;
+  }
+
+  /**
+   * The entry name as a relative blob path: backslashes become slashes, and empty and {@code .} segments are
+   * dropped. Returns null if the name climbs out with {@code ..} or nothing is left.
+   */
+  public static String safePath(String entryName) {
+    List<String> segments = new ArrayList<>();
+    for (String segment : entryName.replace('\\', '/').split("/")) {
+      if (segment.equals("..")) {
+        return null;
+      }
+      if (!segment.isEmpty() && !segment.equals(".")) {
+        segments.add(segment);
+      }
+    }
+    return segments.isEmpty() ? null : String.join("/", segments);
+  }
+}
@@ -0,0 +1,194 @@
+package org.sky.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands bytes from one pipeline stage thread to the next through a fixed set of buffers. A writer blocks when
+ * every buffer is waiting to be read, which is the backpressure that keeps a fast stage from running ahead of a
+ * slow one. Either side can {@link #fail} the pipe, and the other side then fails on its next read or write.
+ */
+public class BufferPipe {
+
+  private static final long POLL_INTERVAL_MS = 100;
+
+  private final BlockingQueue<Chunk> free;
+  private final BlockingQueue<Chunk> filled;
+  private final int bufferSize;
+  private final Sink sink = new Sink();
+  private final Source source = new Source();
+  private volatile Throwable failure;
+
+  public BufferPipe(int bufferCount, int bufferSize) {
+    this.free = new ArrayBlockingQueue<>(bufferCount);
+    this.filled = new ArrayBlockingQueue<>(bufferCount + 1);
+    this.bufferSize = bufferSize;
+    for (int i = 0; i < bufferCount; i++) {
+      free.add(new Chunk(BufferPool.shared().acquire(bufferSize)));
+    }
+  }
+
+  public OutputStream sink() {
+    return sink;
+  }
+
+  public InputStream source() {
+    return source;
+  }
+
+  public synchronized void fail(Throwable cause) {
+    if (failure == null) {
+      failure = cause;
+    }
+  }
+
+  /**
+   * Returns the buffers to the shared pool. Only call it once both sides are finished; after a failure, skip it
+   * and let the buffers be collected, since a stage that has not stopped yet may still be using one.
+   */
+  public void release() {
+    Chunk chunk;
+    while ((chunk = free.poll()) != null) {
+      BufferPool.shared().release(chunk.data);
+    }
+  }
+
+  /** The first failure reported by any stage, or null while the pipe is healthy. */
+  public Throwable getFailure() {
+    return failure;
+  }
+
+  private Chunk take(BlockingQueue<Chunk> queue) throws IOException {
+    try {
+      while (true) {
+        checkFailure();
+        Chunk chunk = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        if (chunk != null) {
+          return chunk;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for pipeline buffer");
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    Throwable cause = failure;
+    if (cause != null) {
+      throw new IOException("Pipeline cancelled", cause);
+    }
+  }
+
+  private static final class Chunk {
+    static final Chunk END = new Chunk(new byte[0]);
+
+    final byte[] data;
+    int length;
+
+    Chunk(byte[] data) {
+      this.data = data;
+    }
+  }
+
+  private final class Sink extends OutputStream {
+    private final byte[] single = new byte[1];
+    private Chunk current;
+    private boolean closed;
+
+    @Override
+    public void write(int b) throws IOException {
+      single[0] = (byte) b;
+      write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+      while (length > 0) {
+        if (current == null) {
+          current = take(free);
+          current.length = 0;
+        }
+        int count = Math.min(length, bufferSize - current.length);
+        System.arraycopy(buffer, offset, current.data, current.length, count);
+        current.length += count;
+        offset += count;
+        length -= count;
+        if (current.length == bufferSize) {
+          flush();
+        }
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (current != null && current.length > 0) {
+        checkFailure();
+        filled.add(current);
+        current = null;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        flush();
+        closed = true;
+        filled.add(Chunk.END);
+      }
+    }
+  }
+
+  private final class Source extends InputStream {
+    private Chunk current;
+    private int position;
+    private boolean ended;
+
+    @Override
+    public int read() throws IOException {
+      if (!ensureChunk()) {
+        return -1;
+      }
+      return current.data[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      if (!ensureChunk()) {
+        return -1;
+      }
+      int count = Math.min(length, current.length - position);
+      System.arraycopy(current.data, position, buffer, offset, count);
+      position += count;
+      return count;
+    }
+
+    private boolean ensureChunk() throws IOException {
+      while (current == null || position >= current.length) {
+        if (ended) {
+          return false;
+        }
+        if (current != null) {
+          free.add(current);
+          current = null;
+        }
+        Chunk next = take(filled);
+        if (next == Chunk.END) {
+          ended = true;
+          return false;
+        }
+        current = next;
+        position = 0;
+      }
+      return true;
+    }
+  }
+}
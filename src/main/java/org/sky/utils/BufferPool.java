@@ -0,0 +1,164 @@
+package org.sky.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide pool of heap arrays and direct buffers in power-of-two size classes from 16 KB to 16 MB. Released
+ * buffers are kept only while the idle total stays under a fixed budget, so the pool never holds more than that
+ * however many decryptions ran concurrently; anything over the budget is left to the garbage collector.
+ */
+public final class BufferPool {
+
+  private static final int MIN_CLASS_SHIFT = 14;
+  private static final int MAX_CLASS_SHIFT = 24;
+  private static final int CLASS_COUNT = MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+  private static final int MIN_TRANSFER_SIZE = 1 << MIN_CLASS_SHIFT;
+  private static final int MAX_TRANSFER_SIZE = 1024 * 1024;
+  private static final int DEFAULT_TRANSFER_SIZE = 64 * 1024;
+  private static final int TRANSFERS_PER_BLOB = 16;
+  private static final long MAX_SHARED_RETAINED_BYTES = 256L * 1024 * 1024;
+
+  private static final BufferPool SHARED = new BufferPool(
+      Math.min(MAX_SHARED_RETAINED_BYTES, Runtime.getRuntime().maxMemory() / 8));
+
+  private final long maxRetainedBytes;
+  private final AtomicLong retainedBytes = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final Deque<byte[]>[] heapBuffers = newClasses();
+  private final Deque<ByteBuffer>[] directBuffers = newClasses();
+
+  public BufferPool(long maxRetainedBytes) {
+    this.maxRetainedBytes = maxRetainedBytes;
+  }
+
+  public static BufferPool shared() {
+    return SHARED;
+  }
+
+  /**
+   * Copy buffer size for a blob of the given length: about a sixteenth of it, between 16 KB and 1 MB, so small
+   * blobs do not take megabyte buffers and large ones do not pay a read call per few kilobytes. Unknown
+   * lengths (zero or negative) get 64 KB.
+   */
+  public static int sizeFor(long expectedLength) {
+    if (expectedLength <= 0) {
+      return DEFAULT_TRANSFER_SIZE;
+    }
+    long target = Math.max(MIN_TRANSFER_SIZE, Math.min(MAX_TRANSFER_SIZE, expectedLength / TRANSFERS_PER_BLOB));
+    return classSize(classIndex((int) target));
+  }
+
+  /** Returns an array of at least {@code minSize} bytes, rounded up to its size class. */
+  public byte[] acquire(int minSize) {
+    int index = classIndex(minSize);
+    if (index >= CLASS_COUNT) {
+      misses.increment();
+      return new byte[minSize];
+    }
+    byte[] buffer = heapBuffers[index].pollFirst();
+    if (buffer == null) {
+      misses.increment();
+      return new byte[classSize(index)];
+    }
+    hits.increment();
+    retainedBytes.addAndGet(-buffer.length);
+    return buffer;
+  }
+
+  /** Returns a cleared direct buffer with a capacity of at least {@code minSize} bytes. */
+  public ByteBuffer acquireDirect(int minSize) {
+    int index = classIndex(minSize);
+    if (index >= CLASS_COUNT) {
+      misses.increment();
+      return ByteBuffer.allocateDirect(minSize);
+    }
+    ByteBuffer buffer = directBuffers[index].pollFirst();
+    if (buffer == null) {
+      misses.increment();
+      return ByteBuffer.allocateDirect(classSize(index));
+    }
+    hits.increment();
+    retainedBytes.addAndGet(-buffer.capacity());
+    buffer.clear();
+    return buffer;
+  }
+
+  /** Hands an array back. The caller must not touch it afterwards; sizes outside the classes are dropped. */
+  public void release(byte[] buffer) {
+    int index = pooledClass(buffer.length);
+    if (index >= 0 && reserve(buffer.length)) {
+      heapBuffers[index].offerFirst(buffer);
+    }
+  }
+
+  public void release(ByteBuffer buffer) {
+    int index = buffer.isDirect() ? pooledClass(buffer.capacity()) : -1;
+    if (index >= 0 && reserve(buffer.capacity())) {
+      directBuffers[index].offerFirst(buffer);
+    }
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  /** Bytes held by idle buffers waiting in the pool. */
+  public long getRetainedBytes() {
+    return retainedBytes.get();
+  }
+
+  public long getMaxRetainedBytes() {
+    return maxRetainedBytes;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("hits: %d, misses: %d, held: %.1f MB", getHitCount(), getMissCount(),
+        getRetainedBytes() / (1024.0 * 1024.0));
+  }
+
+  private boolean reserve(int size) {
+    long current;
+    do {
+      current = retainedBytes.get();
+      if (current + size > maxRetainedBytes) {
+        return false;
+      }
+    } while (!retainedBytes.compareAndSet(current, current + size));
+    return true;
+  }
+
+  private static int classIndex(int size) {
+    if (size <= MIN_TRANSFER_SIZE) {
+      return 0;
+    }
+    return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_CLASS_SHIFT;
+  }
+
+  private static int classSize(int index) {
+    return 1 << (index + MIN_CLASS_SHIFT);
+  }
+
+  private static int pooledClass(int size) {
+    int index = classIndex(size);
+    return index < CLASS_COUNT && classSize(index) == size ? index : -1;
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static <T> Deque<T>[] newClasses() {
+    Deque<T>[] classes = new Deque[CLASS_COUNT];
+    for (int i = 0; i < CLASS_COUNT; i++) {
+      classes[i] = new ConcurrentLinkedDeque<>();
+    }
+    return classes;
+  }
+}
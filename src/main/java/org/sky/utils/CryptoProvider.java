@@ -0,0 +1,36 @@
+package org.sky.utils;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.security.Provider;
+import java.security.Security;
+
+/**
+ * The BouncyCastle provider, created on first use rather than when the decryptor class loads. Building it loads
+ * and registers several hundred algorithm classes, so startup can call {@link #get} on a background thread; a
+ * decryption that needs it meanwhile waits for that thread instead of building a second one.
+ */
+public final class CryptoProvider {
+
+  private CryptoProvider() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  public static Provider get() {
+    return Holder.PROVIDER;
+  }
+
+  private static Provider register() {
+    Provider registered = Security.getProvider(BouncyCastleProvider.PROVIDER_NAME);
+    if (registered != null) {
+      return registered;
+    }
+    Provider provider = new BouncyCastleProvider();
+    Security.addProvider(provider);
+    return provider;
+  }
+
+  private static class Holder {
+    private static final Provider PROVIDER = register();
+  }
+}
@@ -0,0 +1,58 @@
+package org.sky.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Daemon thread pools for the background work of a decryption, so none of them keeps the worker process alive.
+ * Every pool is bounded; threads idle for a minute exit, as in a cached pool.
+ */
+public final class DaemonThreads {
+
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private DaemonThreads() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /** Daemon threads named {@code name-1}, {@code name-2}, ... */
+  public static ThreadFactory named(String name) {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Runs up to {@code maxThreads} tasks at once and queues the rest. Only for tasks that never wait on another
+   * task of the same pool, or a full pool of waiting tasks would deadlock.
+   */
+  public static ExecutorService boundedPool(String name, int maxThreads) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<>(), named(name));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Runs up to {@code maxThreads} tasks at once and rejects the next with a
+   * {@link java.util.concurrent.RejectedExecutionException} instead of queueing it, for tasks that depend on each
+   * other and callers that can fall back to doing the work themselves.
+   */
+  public static ExecutorService handoffPool(String name, int maxThreads) {
+    return new ThreadPoolExecutor(0, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(),
+        named(name));
+  }
+
+  /** {@code perCore} threads per available processor, and at least {@code minimum}. */
+  public static int perCore(int perCore, int minimum) {
+    return Math.max(minimum, perCore * Runtime.getRuntime().availableProcessors());
+  }
+}
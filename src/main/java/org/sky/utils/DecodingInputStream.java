@@ -0,0 +1,344 @@
+package org.sky.utils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decodes ASCII-armored PGP and base64 input in bulk. Encoded text is read in large blocks and decoded with a
+ * lookup table in a single pass that also skips line breaks, armor headers and the CRC24 checksum line, so
+ * decoding costs neither a call per byte nor an allocation per block.
+ */
+public class DecodingInputStream extends InputStream {
+
+  public enum Encoding { ARMORED, BASE64, BINARY }
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int PEEK_LENGTH = 64;
+  // How far into the input an armor header may start, after a BOM, blank lines or preamble text.
+  public static final int ARMOR_SCAN_LIMIT = 4096;
+  private static final byte[] ARMOR_BEGIN = "-----BEGIN ".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+  private static final int CRC24_INIT = 0xB704CE;
+  private static final int CRC24_POLY = 0x1864CFB;
+
+  private static final byte INVALID = -1;
+  private static final byte WHITESPACE = -2;
+  private static final byte LINE_BREAK = -3;
+  private static final byte PADDING = -4;
+  private static final byte[] DECODE_TABLE = new byte[256];
+  private static final int[] CRC24_TABLE = new int[256];
+
+  static {
+    Arrays.fill(DECODE_TABLE, INVALID);
+    String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    for (int i = 0; i < alphabet.length(); i++) {
+      DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+    }
+    DECODE_TABLE[' '] = WHITESPACE;
+    DECODE_TABLE['\t'] = WHITESPACE;
+    DECODE_TABLE['\r'] = LINE_BREAK;
+    DECODE_TABLE['\n'] = LINE_BREAK;
+    DECODE_TABLE['='] = PADDING;
+
+    for (int i = 0; i < 256; i++) {
+      int crc = i << 16;
+      for (int bit = 0; bit < 8; bit++) {
+        crc <<= 1;
+        if ((crc & 0x1000000) != 0) {
+          crc ^= CRC24_POLY;
+        }
+      }
+      CRC24_TABLE[i] = crc & 0xFFFFFF;
+    }
+  }
+
+  private final InputStream in;
+  private final boolean armored;
+  private final byte[] encoded = new byte[BUFFER_SIZE];
+  private final byte[] decoded = new byte[BUFFER_SIZE / 4 * 3 + 3];
+  private int decodedPosition;
+  private int decodedLimit;
+  private int accumulator;
+  private int accumulated;
+  private boolean atLineStart = true;
+  private boolean paddingSeen;
+  private boolean inChecksum;
+  private boolean finished;
+  private int crc = CRC24_INIT;
+  private final StringBuilder checksumText = new StringBuilder(4);
+
+  private DecodingInputStream(InputStream in, boolean armored) {
+    this.in = in;
+    this.armored = armored;
+  }
+
+  /** Detects the encoding from the first bytes and returns a stream of the binary content. */
+  public static InputStream decode(InputStream in) throws IOException {
+    BufferedInputStream buffered = new BufferedInputStream(in, BUFFER_SIZE);
+    buffered.mark(ARMOR_SCAN_LIMIT);
+    byte[] head = buffered.readNBytes(ARMOR_SCAN_LIMIT);
+    buffered.reset();
+
+    switch (detect(head, head.length)) {
+      case ARMORED:
+        buffered.readNBytes(armorStart(head, head.length));
+        skipArmorHeaders(buffered);
+        return new DecodingInputStream(buffered, true);
+      case BASE64:
+        return new DecodingInputStream(buffered, false);
+      default:
+        return buffered;
+    }
+  }
+
+  /** Decodes base64 text, with or without line wrapping. */
+  public static InputStream decodeBase64(InputStream in) {
+    return new DecodingInputStream(in, false);
+  }
+
+  /** Detects the encoding from up to {@link #ARMOR_SCAN_LIMIT} leading bytes; 64 are enough unless armored. */
+  public static Encoding detect(byte[] head, int length) {
+    if (length == 0) {
+      return Encoding.BINARY;
+    }
+    if (armorStart(head, length) >= 0) {
+      return Encoding.ARMORED;
+    }
+    // Binary PGP packets start with the high bit set and 16 random IV bytes practically never fall in the
+    // alphabet, so a head made only of base64 characters is treated as base64 text.
+    for (int i = 0; i < Math.min(length, PEEK_LENGTH); i++) {
+      if (DECODE_TABLE[head[i] & 0xFF] == INVALID) {
+        return Encoding.BINARY;
+      }
+    }
+    return length >= 4 ? Encoding.BASE64 : Encoding.BINARY;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!ensureDecoded()) {
+      return -1;
+    }
+    return decoded[decodedPosition++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (!ensureDecoded()) {
+      return -1;
+    }
+    int count = Math.min(length, decodedLimit - decodedPosition);
+    System.arraycopy(decoded, decodedPosition, buffer, offset, count);
+    decodedPosition += count;
+    return count;
+  }
+
+  @Override
+  public int available() {
+    return decodedLimit - decodedPosition;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  private boolean ensureDecoded() throws IOException {
+    while (decodedPosition >= decodedLimit) {
+      if (finished) {
+        return false;
+      }
+      decodedPosition = 0;
+      decodedLimit = 0;
+      int count = in.read(encoded, 0, encoded.length);
+      if (count == -1) {
+        finish();
+      } else {
+        decodeBlock(count);
+      }
+    }
+    return true;
+  }
+
+  private void decodeBlock(int count) throws IOException {
+    int output = 0;
+    for (int i = 0; i < count && !finished; i++) {
+      // Fast path for a whole quantum of alphabet characters, which is nearly every 4 bytes of a line.
+      if (accumulated == 0 && i + 3 < count && !inChecksum && !paddingSeen) {
+        int first = DECODE_TABLE[encoded[i] & 0xFF];
+        int second = DECODE_TABLE[encoded[i + 1] & 0xFF];
+        int third = DECODE_TABLE[encoded[i + 2] & 0xFF];
+        int fourth = DECODE_TABLE[encoded[i + 3] & 0xFF];
+        if ((first | second | third | fourth) >= 0) {
+          int quantum = first << 18 | second << 12 | third << 6 | fourth;
+          decoded[output++] = (byte) (quantum >> 16);
+          decoded[output++] = (byte) (quantum >> 8);
+          decoded[output++] = (byte) quantum;
+          atLineStart = false;
+          i += 3;
+          continue;
+        }
+      }
+      int b = encoded[i] & 0xFF;
+      byte value = DECODE_TABLE[b];
+
+      if (value >= 0 && !inChecksum && !paddingSeen) {
+        atLineStart = false;
+        accumulator = (accumulator << 6) | value;
+        if (++accumulated == 4) {
+          decoded[output++] = (byte) (accumulator >> 16);
+          decoded[output++] = (byte) (accumulator >> 8);
+          decoded[output++] = (byte) accumulator;
+          accumulated = 0;
+        }
+      } else if (value == LINE_BREAK) {
+        atLineStart = true;
+      } else if (value == WHITESPACE) {
+        continue;
+      } else if (armored && atLineStart && b == '-') {
+        // Armor tail line: everything after it belongs to another block or is trailing text.
+        finished = true;
+      } else if (armored && atLineStart && b == '=') {
+        inChecksum = true;
+        atLineStart = false;
+      } else if (inChecksum) {
+        checksumText.append((char) b);
+      } else if (value == PADDING) {
+        paddingSeen = true;
+        atLineStart = false;
+      } else {
+        throw new IOException("Invalid character in base64 input: 0x" + Integer.toHexString(b));
+      }
+    }
+
+    decodedLimit = output;
+    updateChecksum(output);
+    if (finished) {
+      finish();
+    }
+  }
+
+  private void finish() throws IOException {
+    finished = true;
+    int start = decodedLimit;
+    if (accumulated == 2) {
+      decoded[decodedLimit++] = (byte) (accumulator >> 4);
+    } else if (accumulated == 3) {
+      decoded[decodedLimit++] = (byte) (accumulator >> 10);
+      decoded[decodedLimit++] = (byte) (accumulator >> 2);
+    } else if (accumulated == 1) {
+      throw new IOException("Truncated base64 input");
+    }
+    accumulated = 0;
+
+    if (armored) {
+      updateChecksum(start, decodedLimit);
+      verifyChecksum();
+    }
+  }
+
+  private void updateChecksum(int length) {
+    if (armored) {
+      updateChecksum(0, length);
+    }
+  }
+
+  private void updateChecksum(int from, int to) {
+    int value = crc;
+    for (int i = from; i < to; i++) {
+      value = (value << 8) ^ CRC24_TABLE[((value >> 16) ^ decoded[i]) & 0xFF];
+    }
+    crc = value & 0xFFFFFF;
+  }
+
+  private void verifyChecksum() throws IOException {
+    // The checksum line is optional in RFC 4880bis; only a present but different value is an error.
+    if (checksumText.length() == 0) {
+      return;
+    }
+    if (checksumText.length() != 4) {
+      throw new IOException("Malformed armor checksum");
+    }
+    int expected = 0;
+    for (int i = 0; i < 4; i++) {
+      byte value = DECODE_TABLE[checksumText.charAt(i) & 0xFF];
+      if (value < 0) {
+        throw new IOException("Malformed armor checksum");
+      }
+      expected = (expected << 6) | value;
+    }
+    if (expected != crc) {
+      throw new IOException("Armor checksum mismatch");
+    }
+  }
+
+  /**
+   * Offset of the first line starting with {@code -----BEGIN }, or -1. Like {@code PGPUtil.getDecoderStream}, a
+   * BOM, whitespace and preamble text may come first; input whose first byte is a binary packet tag is never armor.
+   */
+  private static int armorStart(byte[] head, int length) {
+    int start = startsWith(head, 0, length, UTF8_BOM) ? UTF8_BOM.length : 0;
+    if (start == length || (head[start] & 0x80) != 0) {
+      return -1;
+    }
+    boolean lineStart = true;
+    for (int i = start; i < length; i++) {
+      if (lineStart && startsWith(head, i, length, ARMOR_BEGIN)) {
+        return i;
+      }
+      byte b = head[i];
+      // Leading spaces and tabs still count as the start of the line.
+      lineStart = b == '\n' || b == '\r' || (lineStart && (b == ' ' || b == '\t'));
+    }
+    return -1;
+  }
+
+  private static boolean startsWith(byte[] data, int offset, int length, byte[] prefix) {
+    if (length - offset < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (data[offset + i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void skipArmorHeaders(InputStream in) throws IOException {
+    readLine(in);
+    // Headers are "Key: Value" lines up to a blank line; tolerate writers that omit the blank line.
+    while (true) {
+      in.mark(BUFFER_SIZE);
+      String line = readLine(in);
+      if (line == null || line.isEmpty()) {
+        return;
+      }
+      if (!line.contains(": ")) {
+        in.reset();
+        return;
+      }
+    }
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) != -1 && b != '\n') {
+      if (b != '\r') {
+        line.write(b);
+      }
+    }
+    if (b == -1 && line.size() == 0) {
+      return null;
+    }
+    return line.toString(StandardCharsets.US_ASCII);
+  }
+}
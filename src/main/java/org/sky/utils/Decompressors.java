@@ -0,0 +1,200 @@
+package org.sky.utils;
+
+import org.bouncycastle.apache.bzip2.CBZip2InputStream;
+import org.bouncycastle.bcpg.CompressionAlgorithmTags;
+import org.bouncycastle.openpgp.PGPCompressedData;
+import org.bouncycastle.openpgp.PGPException;
+import org.sky.model.DecompressionStats;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Replaces {@link PGPCompressedData#getDataStream()} with decompressors chosen from the packet's algorithm:
+ * ZIP and ZLIB drive an {@link Inflater} directly over large buffers, BZIP2 reads through a large buffer instead of
+ * one decryption call per byte. Every stream records compressed and uncompressed bytes and the time spent
+ * decompressing into the given stats.
+ */
+public final class Decompressors {
+
+  private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+  private Decompressors() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  public static InputStream open(PGPCompressedData compressedData, DecompressionStats stats)
+      throws PGPException, IOException {
+
+    int algorithm = compressedData.getAlgorithm();
+    switch (algorithm) {
+      case CompressionAlgorithmTags.UNCOMPRESSED:
+        return new MeteredInputStream(compressedData.getInputStream(), stats, true);
+      case CompressionAlgorithmTags.ZIP:
+        return new InflatingInputStream(compressedData.getInputStream(), new Inflater(true), stats);
+      case CompressionAlgorithmTags.ZLIB:
+        return new InflatingInputStream(compressedData.getInputStream(), new Inflater(false), stats);
+      case CompressionAlgorithmTags.BZIP2:
+        MeteredInputStream compressed = new MeteredInputStream(compressedData.getInputStream(), stats, false);
+        // The BZIP2 decoder pulls its input a byte at a time, so it reads from a buffer rather than the cipher.
+        return new TimedInputStream(new CBZip2InputStream(new BufferedInputStream(compressed, INPUT_BUFFER_SIZE)),
+            compressed, stats);
+      default:
+        throw new PGPException("Unsupported compression algorithm: " + algorithm);
+    }
+  }
+
+  public static String algorithmName(int algorithm) {
+    switch (algorithm) {
+      case CompressionAlgorithmTags.UNCOMPRESSED:
+        return "UNCOMPRESSED";
+      case CompressionAlgorithmTags.ZIP:
+        return "ZIP";
+      case CompressionAlgorithmTags.ZLIB:
+        return "ZLIB";
+      case CompressionAlgorithmTags.BZIP2:
+        return "BZIP2";
+      default:
+        return "UNKNOWN(" + algorithm + ")";
+    }
+  }
+
+  private static final class InflatingInputStream extends InputStream {
+    private final InputStream in;
+    private final Inflater inflater;
+    private final DecompressionStats stats;
+    private final byte[] input = new byte[INPUT_BUFFER_SIZE];
+    private final byte[] single = new byte[1];
+
+    InflatingInputStream(InputStream in, Inflater inflater, DecompressionStats stats) {
+      this.in = in;
+      this.inflater = inflater;
+      this.stats = stats;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      while (true) {
+        if (inflater.finished()) {
+          return -1;
+        }
+        if (inflater.needsInput()) {
+          int count = in.read(input, 0, input.length);
+          if (count == -1) {
+            throw new IOException("Unexpected end of compressed data");
+          }
+          stats.addCompressedBytes(count);
+          inflater.setInput(input, 0, count);
+        }
+
+        long start = System.nanoTime();
+        int inflated;
+        try {
+          inflated = inflater.inflate(buffer, offset, length);
+        } catch (DataFormatException e) {
+          throw new IOException("Invalid compressed data", e);
+        } finally {
+          stats.addInflateNanos(System.nanoTime() - start);
+        }
+
+        if (inflated > 0) {
+          stats.addUncompressedBytes(inflated);
+          return inflated;
+        }
+        if (inflater.needsDictionary()) {
+          throw new IOException("Compressed data requires a preset dictionary");
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      inflater.end();
+      in.close();
+    }
+  }
+
+  /** Counts bytes read from the compressed packet and the time spent waiting on it. */
+  private static final class MeteredInputStream extends FilterInputStream {
+    private final DecompressionStats stats;
+    private final boolean passthrough;
+    private long readNanos;
+
+    MeteredInputStream(InputStream in, DecompressionStats stats, boolean passthrough) {
+      super(in);
+      this.stats = stats;
+      this.passthrough = passthrough;
+    }
+
+    @Override
+    public int read() throws IOException {
+      long start = System.nanoTime();
+      int value = super.read();
+      readNanos += System.nanoTime() - start;
+      if (value != -1) {
+        count(1);
+      }
+      return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      long start = System.nanoTime();
+      int count = super.read(buffer, offset, length);
+      readNanos += System.nanoTime() - start;
+      if (count > 0) {
+        count(count);
+      }
+      return count;
+    }
+
+    private void count(int bytes) {
+      stats.addCompressedBytes(bytes);
+      if (passthrough) {
+        stats.addUncompressedBytes(bytes);
+      }
+    }
+  }
+
+  /** Times a decompressor, excluding the time its compressed source spends decrypting. */
+  private static final class TimedInputStream extends FilterInputStream {
+    private final MeteredInputStream source;
+    private final DecompressionStats stats;
+    private final byte[] single = new byte[1];
+
+    TimedInputStream(InputStream decompressor, MeteredInputStream source, DecompressionStats stats) {
+      super(decompressor);
+      this.source = source;
+      this.stats = stats;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      long sourceNanos = source.readNanos;
+      long start = System.nanoTime();
+      int count = super.read(buffer, offset, length);
+      stats.addInflateNanos(System.nanoTime() - start - (source.readNanos - sourceNanos));
+      if (count > 0) {
+        stats.addUncompressedBytes(count);
+      }
+      return count;
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package org.sky.utils;
+
+import org.sky.model.BlobContent;
+import org.sky.model.PlaintextChecksum;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Applies an {@link OutputCodec} between the decryptor and the upload, counting plaintext bytes and hashing the
+ * encoded ones, whose MD5 is the blob's {@code Content-MD5}. Closing finishes the encoding but leaves
+ * {@code target} open: the upload commits only after the writer has returned. A writer that fails calls
+ * {@link #abort} instead, which still frees the codec's native context and pooled buffers.
+ */
+public class EncodingOutputStream extends OutputStream {
+
+  private final OutputCodec codec;
+  private final EncodedSink sink;
+  private final OutputStream encoder;
+  private long plaintextBytes;
+  private boolean closed;
+
+  public EncodingOutputStream(OutputStream target, OutputCodec codec, int level, int workers) throws IOException {
+    this.codec = codec;
+    // The plaintext MD5 is already computed by the decryptor, so unencoded output is not hashed twice.
+    this.sink = new EncodedSink(target, codec == OutputCodec.NONE ? null : newMd5());
+    this.encoder = codec.encode(sink, level, workers);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    encoder.write(b);
+    plaintextBytes++;
+  }
+
+  @Override
+  public void write(byte[] data, int off, int len) throws IOException {
+    encoder.write(data, off, len);
+    plaintextBytes += len;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      encoder.close();
+    }
+  }
+
+  /**
+   * Releases the encoder without writing anything more to {@code target}; does nothing once closed, so it can sit
+   * in a {@code finally} after {@link #close}. Never throws: the output is being discarded.
+   */
+  public void abort() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    sink.discarding = true;
+    try {
+      encoder.close();
+    } catch (IOException | RuntimeException e) {
+      // Only the resources mattered; the caller is already failing with the original error.
+    }
+  }
+
+  public OutputCodec getCodec() { return codec; }
+  public long getPlaintextBytes() { return plaintextBytes; }
+  public long getEncodedBytes() { return sink.count; }
+
+  /** Describes the written output once closed; {@code checksum} is the decryptor's digest of the plaintext. */
+  public BlobContent describe(PlaintextChecksum checksum) {
+    if (codec == OutputCodec.NONE) {
+      return BlobContent.plain(checksum, plaintextBytes);
+    }
+    return BlobContent.encoded(checksum, codec.getContentEncoding(), plaintextBytes, sink.md5.digest());
+  }
+
+  private static MessageDigest newMd5() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("MD5 is not available", e);
+    }
+  }
+
+  private static final class EncodedSink extends FilterOutputStream {
+    final MessageDigest md5;
+    long count;
+    boolean discarding;
+
+    EncodedSink(OutputStream out, MessageDigest md5) {
+      super(out);
+      this.md5 = md5;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (discarding) {
+        return;
+      }
+      out.write(b);
+      if (md5 != null) {
+        md5.update((byte) b);
+      }
+      count++;
+    }
+
+    @Override
+    public void write(byte[] data, int off, int len) throws IOException {
+      if (discarding) {
+        return;
+      }
+      out.write(data, off, len);
+      if (md5 != null) {
+        md5.update(data, off, len);
+      }
+      count += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!discarding) {
+        out.flush();
+      }
+    }
+  }
+}
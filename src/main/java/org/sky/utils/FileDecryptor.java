@@ -1,37 +1,39 @@
 package org.sky.utils;
 
+import org.sky.events.EventLog;
+import org.sky.events.EventType;
 import org.sky.model.KeyAndIV;
 
 import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Base64;
-import java.util.logging.Logger;
 
 public class FileDecryptor {
   private FileDecryptor() {
     throw new IllegalStateException("Utility class");
   }
 
-  private static final Logger logger = Logger.getLogger(FileDecryptor.class.getName());
   private static final String OPENSSL_SALT_PREFIX = "Salted__";
   private static final int SALT_PREFIX_LENGTH = 8;
   private static final int SALT_LENGTH = 8;
   private static final int IV_LENGTH = 16;
   private static final int KEY_LENGTH = 32;
-  private static final int BUFFER_SIZE = 8192;
-  private static final int PROGRESS_UPDATE_INTERVAL = BUFFER_SIZE * 1000;
-  private static final double BYTES_TO_MB = 1024.0 * 1024.0;
+  private static final long BYTES_PER_MB = 1024L * 1024;
+  private static final long PARALLEL_THRESHOLD = 64 * 1024 * 1024;
+  private static final long PROGRESS_UPDATE_INTERVAL = 100 * BYTES_PER_MB;
 
   private static final String AES_ALGORITHM = "AES";
   private static final String CIPHER_TRANSFORMATION = "AES/CBC/PKCS5Padding";
@@ -41,10 +43,39 @@ public class FileDecryptor {
   public static void decryptFile(Path inputPath, Path outputPath, String password,
                                  boolean isBase64Encoded) throws Exception {
 
+    int parallelism = Files.size(inputPath) >= PARALLEL_THRESHOLD
+        ? Runtime.getRuntime().availableProcessors()
+        : 1;
+    decryptFile(inputPath, outputPath, password, isBase64Encoded, parallelism);
+  }
+
+  public static void decryptFile(Path inputPath, Path outputPath, String password,
+                                 boolean isBase64Encoded, int parallelism) throws Exception {
+
     printProcessingInfo(inputPath);
+    int bufferSize = BufferPool.sizeFor(Files.size(inputPath));
 
-    try (InputStream inputStream = createInputStream(inputPath, isBase64Encoded)) {
-      decryptStream(inputStream, outputPath, password);
+    if (isBase64Encoded || detectEncoding(inputPath) != DecodingInputStream.Encoding.BINARY) {
+      try (InputStream inputStream = createInputStream(inputPath, isBase64Encoded);
+           OutputStream outputStream = Files.newOutputStream(outputPath)) {
+        Cipher cipher = createDecryptionCipher(readKeyAndIV(inputStream, password));
+        decryptStream(inputStream, outputStream, cipher, bufferSize);
+      }
+    } else {
+      try (FileChannel inputChannel = FileChannel.open(inputPath, StandardOpenOption.READ)) {
+        // The channel stream reads straight from the channel, so the channel position stays right after the header.
+        KeyAndIV keyAndIV = readKeyAndIV(Channels.newInputStream(inputChannel), password);
+
+        if (parallelism > 1) {
+          ParallelCBCDecryptor.decrypt(inputChannel, inputChannel.position(), outputPath,
+              keyAndIV.getKey(), keyAndIV.getIv(), parallelism);
+        } else {
+          try (FileChannel outputChannel = FileChannel.open(outputPath, StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            decryptChannel(inputChannel, outputChannel, createDecryptionCipher(keyAndIV), bufferSize);
+          }
+        }
+      }
     }
 
     printSuccessInfo(outputPath);
@@ -52,35 +83,36 @@ public class FileDecryptor {
 
   private static InputStream createInputStream(Path inputPath, boolean isBase64Encoded) throws IOException {
     InputStream fileStream = Files.newInputStream(inputPath);
-    return isBase64Encoded ? Base64.getDecoder().wrap(fileStream) : fileStream;
+    return isBase64Encoded ? DecodingInputStream.decodeBase64(fileStream) : DecodingInputStream.decode(fileStream);
+  }
+
+  private static DecodingInputStream.Encoding detectEncoding(Path inputPath) throws IOException {
+    try (InputStream head = Files.newInputStream(inputPath)) {
+      byte[] bytes = head.readNBytes(DecodingInputStream.ARMOR_SCAN_LIMIT);
+      return DecodingInputStream.detect(bytes, bytes.length);
+    }
   }
 
   private static void printProcessingInfo(Path inputPath) throws IOException {
     long fileSize = Files.size(inputPath);
-    String message = String.format("Processing file: %s (%.2f MB)",
-        inputPath.getFileName(), fileSize / BYTES_TO_MB);
-
-   logger.info(message);
+    if (EventLog.isEnabled(EventType.FILE_PROCESSING)) {
+      EventLog.record(EventType.FILE_PROCESSING, inputPath.getFileName().toString(), fileSize);
+    }
   }
 
   private static void printSuccessInfo(Path outputPath) throws IOException {
     long outputSize = Files.size(outputPath);
-    String message = String.format("Decrypted successfully: %s (%.2f MB)",
-        outputPath.getFileName(), outputSize / BYTES_TO_MB);
-
-    logger.info(message);
+    if (EventLog.isEnabled(EventType.FILE_DECRYPTED)) {
+      EventLog.record(EventType.FILE_DECRYPTED, outputPath.getFileName().toString(), outputSize);
+    }
   }
 
-  private static void decryptStream(InputStream inputStream, Path outputPath,
-                                    String password) throws Exception {
-
+  private static KeyAndIV readKeyAndIV(InputStream inputStream, String password) throws Exception {
     byte[] header = readExactBytes(inputStream, SALT_PREFIX_LENGTH);
 
-    if (isOpenSSLFormat(header)) {
-      decryptOpenSSLStream(inputStream, outputPath, password, header);
-    } else {
-      decryptSimpleStream(inputStream, outputPath, password, header);
-    }
+    return isOpenSSLFormat(header)
+        ? readOpenSSLKeyAndIV(inputStream, password)
+        : readSimpleKeyAndIV(inputStream, password, header);
   }
 
   private static boolean isOpenSSLFormat(byte[] header) {
@@ -88,70 +120,109 @@ public class FileDecryptor {
     return OPENSSL_SALT_PREFIX.equals(prefix);
   }
 
-  private static void decryptOpenSSLStream(InputStream inputStream, Path outputPath,
-                                           String password, byte[] header) throws Exception {
-
+  private static KeyAndIV readOpenSSLKeyAndIV(InputStream inputStream, String password) throws Exception {
     byte[] salt = readExactBytes(inputStream, SALT_LENGTH);
-    KeyAndIV keyAndIV = deriveKeyAndIVFromPassword(password, salt);
-
-    performStreamDecryption(inputStream, outputPath, keyAndIV.getKey(), keyAndIV.getIv());
+    return deriveKeyAndIVFromPassword(password, salt);
   }
 
-  private static void decryptSimpleStream(InputStream inputStream, Path outputPath,
-                                          String password, byte[] header) throws Exception {
+  private static KeyAndIV readSimpleKeyAndIV(InputStream inputStream, String password,
+                                             byte[] header) throws Exception {
 
     byte[] remainingIV = readExactBytes(inputStream, IV_LENGTH - SALT_PREFIX_LENGTH);
     byte[] iv = concatenateBytes(header, remainingIV);
     byte[] key = generateKeyFromPassword(password);
 
-    performStreamDecryption(inputStream, outputPath, key, iv);
+    return new KeyAndIV(key, iv);
   }
 
-  private static void performStreamDecryption(InputStream inputStream, Path outputPath,
-                                              byte[] key, byte[] iv) throws Exception {
+  private static Cipher createDecryptionCipher(KeyAndIV keyAndIV) throws Exception {
+    SecretKeySpec keySpec = new SecretKeySpec(keyAndIV.getKey(), AES_ALGORITHM);
+    IvParameterSpec ivSpec = new IvParameterSpec(keyAndIV.getIv());
 
-    Cipher cipher = createDecryptionCipher(key, iv);
-
-    try (CipherInputStream cis = new CipherInputStream(inputStream, cipher);
-         OutputStream outputStream = Files.newOutputStream(outputPath)) {
+    Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+    cipher.init(Cipher.DECRYPT_MODE, keySpec, ivSpec);
 
-      processStreamWithProgress(cis, outputStream);
-    }
+    return cipher;
   }
 
-  private static Cipher createDecryptionCipher(byte[] key, byte[] iv) throws Exception {
-    SecretKeySpec keySpec = new SecretKeySpec(key, AES_ALGORITHM);
-    IvParameterSpec ivSpec = new IvParameterSpec(iv);
+  private static void decryptChannel(FileChannel inputChannel, FileChannel outputChannel,
+                                     Cipher cipher, int bufferSize) throws Exception {
+
+    // Both buffers are reused for every chunk; padding is only removed by doFinal on the last block.
+    // Heap buffers let the cipher work on their backing arrays; direct ones make it copy through a new array per call.
+    // Reads stop a block short of the buffer size so the output always has room for the block the cipher holds back.
+    byte[] inputArray = BufferPool.shared().acquire(bufferSize);
+    byte[] outputArray = BufferPool.shared().acquire(bufferSize);
+    int readLimit = bufferSize - cipher.getBlockSize();
+    ByteBuffer input = ByteBuffer.wrap(inputArray, 0, readLimit);
+    ByteBuffer output = ByteBuffer.wrap(outputArray);
+    ProgressTracker progress = new ProgressTracker();
+
+    try {
+      while (inputChannel.read(input) != -1) {
+        input.flip();
+        output.clear();
+        cipher.update(input, output);
+        input.clear().limit(readLimit);
+        progress.add(writeFully(outputChannel, output));
+      }
 
-    Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
-    cipher.init(Cipher.DECRYPT_MODE, keySpec, ivSpec);
+      input.flip();
+      output.clear();
+      cipher.doFinal(input, output);
+      progress.add(writeFully(outputChannel, output));
+    } finally {
+      BufferPool.shared().release(inputArray);
+      BufferPool.shared().release(outputArray);
+    }
+  }
 
-    return cipher;
+  private static int writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    int written = buffer.remaining();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    return written;
   }
 
-  private static void processStreamWithProgress(InputStream inputStream,
-                                                OutputStream outputStream) throws IOException {
+  private static void decryptStream(InputStream inputStream, OutputStream outputStream,
+                                    Cipher cipher, int bufferSize) throws Exception {
 
-    byte[] buffer = new byte[BUFFER_SIZE];
+    byte[] input = BufferPool.shared().acquire(bufferSize);
+    byte[] output = BufferPool.shared().acquire(bufferSize);
+    int readLimit = bufferSize - cipher.getBlockSize();
+    ProgressTracker progress = new ProgressTracker();
     int bytesRead;
-    long totalBytes = 0;
-
-    while ((bytesRead = inputStream.read(buffer)) != -1) {
-      outputStream.write(buffer, 0, bytesRead);
-      totalBytes += bytesRead;
 
-      if (shouldPrintProgress(totalBytes)) {
-        String message = String.format("Processed: %.2f MB", totalBytes / BYTES_TO_MB);
-        logger.info(message);
+    try {
+      while ((bytesRead = inputStream.read(input, 0, readLimit)) != -1) {
+        int decrypted = cipher.update(input, 0, bytesRead, output, 0);
+        outputStream.write(output, 0, decrypted);
+        progress.add(decrypted);
       }
-    }
-  }
 
-  private static boolean shouldPrintProgress(long totalBytes) {
-    return totalBytes % PROGRESS_UPDATE_INTERVAL == 0;
+      int decrypted = cipher.doFinal(output, 0);
+      outputStream.write(output, 0, decrypted);
+      progress.add(decrypted);
+    } finally {
+      BufferPool.shared().release(input);
+      BufferPool.shared().release(output);
+    }
   }
 
+  private static final class ProgressTracker {
+    private long totalBytes;
+    private long nextReport = PROGRESS_UPDATE_INTERVAL;
 
+    void add(long bytes) {
+      totalBytes += bytes;
+      if (totalBytes >= nextReport) {
+        nextReport += PROGRESS_UPDATE_INTERVAL;
+        EventLog.record(EventType.PROGRESS, null, totalBytes / BYTES_PER_MB);
+      }
+    }
+  }
 
   private static byte[] readExactBytes(InputStream inputStream, int numberOfBytes) throws IOException {
     byte[] result = new byte[numberOfBytes];
@@ -0,0 +1,93 @@
+package org.sky.utils;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding applied to decrypted output on its way to storage. The blob keeps the compressed bytes under the
+ * codec's file extension and {@code Content-Type}; it deliberately has no {@code Content-Encoding}, which would
+ * make HTTP clients decompress it into a file still named {@code .gz}. A level of 0 or less selects the codec's
+ * default.
+ */
+public enum OutputCodec {
+  NONE(null, "", null, 0, 0, 0),
+  GZIP("gzip", ".gz", "application/gzip", 1, 9, 6),
+  ZSTD("zstd", ".zst", "application/zstd", 1, 19, 3);
+
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+  private final String contentEncoding;
+  private final String fileExtension;
+  private final String contentType;
+  private final int minLevel;
+  private final int maxLevel;
+  private final int defaultLevel;
+
+  OutputCodec(String contentEncoding, String fileExtension, String contentType, int minLevel, int maxLevel,
+              int defaultLevel) {
+    this.contentEncoding = contentEncoding;
+    this.fileExtension = fileExtension;
+    this.contentType = contentType;
+    this.minLevel = minLevel;
+    this.maxLevel = maxLevel;
+    this.defaultLevel = defaultLevel;
+  }
+
+  /** Parses {@code none}, {@code gzip} or {@code zstd}, ignoring case; null or blank is {@link #NONE}. */
+  public static OutputCodec parse(String name) {
+    if (name == null || name.trim().isEmpty()) {
+      return NONE;
+    }
+    try {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown output codec '" + name + "', expected none, gzip or zstd", e);
+    }
+  }
+
+  public String getContentEncoding() { return contentEncoding; }
+  public String getFileExtension() { return fileExtension; }
+  public String getContentType() { return contentType; }
+
+  public int levelFor(int requested) {
+    if (requested <= 0) {
+      return defaultLevel;
+    }
+    if (requested < minLevel || requested > maxLevel) {
+      throw new IllegalArgumentException(name().toLowerCase(Locale.ROOT) + " level must be between " + minLevel
+          + " and " + maxLevel + ", was " + requested);
+    }
+    return requested;
+  }
+
+  /**
+   * Wraps {@code out} in an encoder; closing the encoder also closes {@code out}. With more than one worker the
+   * input is compressed on that many threads and the output is still a single gzip member or zstd frame.
+   */
+  public OutputStream encode(OutputStream out, int level, int workers) throws IOException {
+    int effectiveLevel = levelFor(level);
+    switch (this) {
+      case GZIP:
+        if (workers > 1) {
+          return new ParallelGzipOutputStream(out, effectiveLevel, workers);
+        }
+        return new GZIPOutputStream(out, GZIP_BUFFER_SIZE) {
+          {
+            def.setLevel(effectiveLevel);
+          }
+        };
+      case ZSTD:
+        ZstdOutputStream zstd = new ZstdOutputStream(out, effectiveLevel);
+        if (workers > 1) {
+          zstd.setWorkers(workers);
+        }
+        return zstd;
+      default:
+        return out;
+    }
+  }
+}
@@ -1,19 +1,30 @@
 package org.sky.utils;
 
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.openpgp.*;
 import org.bouncycastle.openpgp.jcajce.JcaPGPObjectFactory;
 import org.bouncycastle.openpgp.operator.jcajce.JcaKeyFingerprintCalculator;
 import org.bouncycastle.openpgp.operator.jcajce.JcePBESecretKeyDecryptorBuilder;
 import org.bouncycastle.openpgp.operator.jcajce.JcePublicKeyDataDecryptorFactoryBuilder;
+import org.sky.events.EventLog;
+import org.sky.events.EventType;
 import org.sky.function.exception.DecryptionException;
+import org.sky.keys.PrivateKeyResolver;
+import org.sky.model.DecompressionStats;
 import org.sky.model.DecryptionKeys;
+import org.sky.model.PlaintextChecksum;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.Security;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 public class PGPFileDecryptor {
 
@@ -21,13 +32,10 @@ public class PGPFileDecryptor {
     throw new IllegalStateException("Utility class");
   }
 
-  private static final int BUFFER_SIZE = 8192;
-
-  static {
-    if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
-      Security.addProvider(new BouncyCastleProvider());
-    }
-  }
+  private static final int PIPELINE_BUFFERS = 4;
+  // Two threads per pipelined stream; when they are all busy further streams decrypt sequentially instead.
+  private static final ExecutorService PIPELINE_EXECUTOR = DaemonThreads.handoffPool("pgp-pipeline",
+      DaemonThreads.perCore(4, 8));
 
   public static void decryptFile(Path encryptedFile, Path outputFile,
                                  Path privateKeyFile, String passphrase) {
@@ -35,25 +43,208 @@ public class PGPFileDecryptor {
          InputStream encIn = Files.newInputStream(encryptedFile);
          OutputStream out = Files.newOutputStream(outputFile)) {
 
-      decryptFile(encIn, out, keyIn, passphrase.toCharArray());
+      decryptFile(encIn, out, keyIn, passphrase.toCharArray(), BufferPool.sizeFor(Files.size(encryptedFile)));
     } catch (Exception e) {
       throw new DecryptionException("Error decrypting PGP file", e);
     }
   }
 
+  public static void decryptStream(InputStream encryptedStream, OutputStream outputStream,
+                                   PGPSecretKeyRingCollection secretKeyRings, String passphrase) {
+    decryptFile(encryptedStream, outputStream, secretKeyRings, passphrase.toCharArray(), BufferPool.sizeFor(0));
+  }
+
+  public static DecompressionStats decryptStream(InputStream encryptedStream, OutputStream outputStream,
+                                                 PrivateKeyResolver keyResolver) {
+    return decryptStream(encryptedStream, outputStream, keyResolver, 0);
+  }
+
+  /** {@code expectedSize} is the encrypted length when known, or 0, and only sizes the copy buffers. */
+  public static DecompressionStats decryptStream(InputStream encryptedStream, OutputStream outputStream,
+                                                 PrivateKeyResolver keyResolver, long expectedSize) {
+    return decryptWithResolver(encryptedStream, outputStream, keyResolver, BufferPool.sizeFor(expectedSize));
+  }
+
+  public static Map<Long, PGPPrivateKey> unlockPrivateKeys(PGPSecretKeyRingCollection secretKeyRings,
+                                                          String passphrase) {
+    Map<Long, PGPPrivateKey> privateKeys = new HashMap<>();
+    char[] passphraseChars = passphrase.toCharArray();
+
+    for (PGPSecretKeyRing keyRing : secretKeyRings) {
+      for (PGPSecretKey secretKey : keyRing) {
+        if (secretKey.isPrivateKeyEmpty()) {
+          continue;
+        }
+        try {
+          privateKeys.put(secretKey.getKeyID(), extractPrivateKey(secretKey, passphraseChars));
+        } catch (PGPException e) {
+          throw new DecryptionException("Unable to unlock secret key "
+              + Long.toHexString(secretKey.getKeyID()) + " - wrong passphrase?", e);
+        }
+      }
+    }
+
+    if (privateKeys.isEmpty()) {
+      throw new DecryptionException("Key ring does not contain any private key");
+    }
+    return privateKeys;
+  }
+
+  public static PGPSecretKeyRingCollection readSecretKeyRing(byte[] privateKeyBytes) {
+    try {
+      return loadSecretKeyRing(new ByteArrayInputStream(privateKeyBytes));
+    } catch (PGPException e) {
+      throw new DecryptionException("Error loading secret key ring", e);
+    }
+  }
+
   private static void decryptFile(InputStream encryptedStream, OutputStream outputStream,
-                                  InputStream privateKeyStream, char[] passphrase) {
+                                  InputStream privateKeyStream, char[] passphrase, int bufferSize)
+      throws PGPException {
+    decryptFile(encryptedStream, outputStream, loadSecretKeyRing(privateKeyStream), passphrase, bufferSize);
+  }
+
+  private static void decryptFile(InputStream encryptedStream, OutputStream outputStream,
+                                  PGPSecretKeyRingCollection secretKeyRings, char[] passphrase, int bufferSize) {
+    decryptWithResolver(encryptedStream, outputStream, keyId -> {
+      PGPSecretKey secretKey = secretKeyRings.getSecretKey(keyId);
+      return secretKey != null ? extractPrivateKey(secretKey, passphrase) : null;
+    }, bufferSize);
+  }
+
+  /**
+   * Same as {@link #decryptStream(InputStream, OutputStream, PrivateKeyResolver)}, but symmetric decryption,
+   * decompression and writing to {@code outputStream} run on three threads joined by bounded buffer pipes.
+   * A failure in any stage cancels the others and is rethrown here. When every pipeline thread is taken the
+   * stream is decrypted sequentially on the calling thread.
+   */
+  public static DecompressionStats decryptStreamPipelined(InputStream encryptedStream, OutputStream outputStream,
+                                                          PrivateKeyResolver keyResolver) {
+    return decryptStreamPipelined(encryptedStream, outputStream, keyResolver, 0);
+  }
+
+  public static DecompressionStats decryptStreamPipelined(InputStream encryptedStream, OutputStream outputStream,
+                                                          PrivateKeyResolver keyResolver, long expectedSize) {
+    int bufferSize = BufferPool.sizeFor(expectedSize);
+    BufferPipe decrypted = new BufferPipe(PIPELINE_BUFFERS, bufferSize);
+    BufferPipe plaintext = new BufferPipe(PIPELINE_BUFFERS, bufferSize);
+
+    // Sinks are closed only on success: closing after a failure would hand the next stage a clean end of stream.
+    // Stages fail both pipes on any Throwable; an Error that skipped them would leave the other stages blocked.
+    // The inflate stage is submitted first: it only reads the pipe, so if the pool has no thread left for the
+    // decrypt stage the input is still unread and this thread can decrypt it sequentially instead.
+    Future<DecompressionStats> inflateStage;
     try {
-      encryptedStream = PGPUtil.getDecoderStream(encryptedStream);
-      PGPEncryptedDataList encDataList = getEncryptedDataList(encryptedStream);
-      PGPSecretKeyRingCollection secretKeyRings = loadSecretKeyRing(privateKeyStream);
+      inflateStage = PIPELINE_EXECUTOR.submit(() -> {
+        try {
+          DecompressionStats stats = decompressPackets(decrypted.source(), plaintext.sink(), bufferSize);
+          // Anything after the literal packet must still be consumed or the decrypt stage would block on a full pipe.
+          drain(decrypted.source(), bufferSize);
+          plaintext.sink().close();
+          return stats;
+        } catch (Throwable e) {
+          cancel(e, decrypted, plaintext);
+          throw e;
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      decrypted.release();
+      plaintext.release();
+      return decryptStream(encryptedStream, outputStream, keyResolver, expectedSize);
+    }
+    Future<?> decryptStage;
+    try {
+      decryptStage = PIPELINE_EXECUTOR.submit(() -> {
+        try {
+          decryptPackets(encryptedStream, decrypted.sink(), keyResolver, bufferSize);
+          decrypted.sink().close();
+        } catch (Throwable e) {
+          cancel(e, decrypted, plaintext);
+          throw e;
+        }
+        return null;
+      });
+    } catch (RejectedExecutionException e) {
+      cancel(e, decrypted, plaintext);
+      inflateStage.cancel(true);
+      // Nothing was decrypted yet, so every buffer is still free: the inflate stage has had nothing to write.
+      decrypted.release();
+      plaintext.release();
+      return decryptStream(encryptedStream, outputStream, keyResolver, expectedSize);
+    }
 
-      DecryptionKeys keys = findDecryptionKeys(encDataList, secretKeyRings, passphrase);
-      InputStream decryptedStream = getDecryptedStream(keys);
-      Object message = getUncompressedMessage(decryptedStream);
+    try {
+      copyStream(plaintext.source(), outputStream, bufferSize);
+      decryptStage.get();
+      DecompressionStats stats = inflateStage.get();
+      // Only a clean finish returns the pipe buffers: after a failure a cancelled stage may still hold one.
+      decrypted.release();
+      plaintext.release();
+      if (EventLog.isEnabled(EventType.DECOMPRESSED)) {
+        EventLog.record(EventType.DECOMPRESSED, stats.getAlgorithm(), stats.getUncompressedBytes(), stats.toString());
+      }
+      return stats;
+    } catch (Throwable e) {
+      // An Error here, such as running out of memory in the upload, must still stop both stages.
+      cancel(e instanceof ExecutionException ? e.getCause() : e, decrypted, plaintext);
+      decryptStage.cancel(true);
+      inflateStage.cancel(true);
+      if (e instanceof Error) {
+        throw (Error) e;
+      }
+      throw new DecryptionException("Error during PGP stream decryption", decrypted.getFailure());
+    }
+  }
 
-      processMessage(message, outputStream);
+  private static void decryptPackets(InputStream encryptedStream, OutputStream decryptedOut,
+                                     PrivateKeyResolver keyResolver, int bufferSize)
+      throws IOException, PGPException {
+    PGPEncryptedDataList encDataList = getEncryptedDataList(DecodingInputStream.decode(encryptedStream));
+    DecryptionKeys keys = findDecryptionKeys(encDataList, keyResolver);
+    copyStream(getDecryptedStream(keys), decryptedOut, bufferSize);
+    verifyIntegrity(keys.encryptedData);
+  }
+
+  private static DecompressionStats decompressPackets(InputStream decryptedStream, OutputStream plaintextOut,
+                                                      int bufferSize) throws IOException, PGPException {
+    PGPObjectFactory plainFactory = new JcaPGPObjectFactory(decryptedStream);
+    Object message = plainFactory.nextObject();
+    DecompressionStats stats = message instanceof PGPCompressedData
+        ? new DecompressionStats(Decompressors.algorithmName(((PGPCompressedData) message).getAlgorithm()))
+        : new DecompressionStats("NONE");
+    message = getUncompressedMessage(message, stats);
+
+    long written = processMessage(message, plaintextOut, bufferSize, stats);
+    if (stats.getCompressedBytes() == 0) {
+      stats.addCompressedBytes(written);
+      stats.addUncompressedBytes(written);
+    }
+    return stats;
+  }
+
+  private static void cancel(Throwable cause, BufferPipe... pipes) {
+    for (BufferPipe pipe : pipes) {
+      pipe.fail(cause);
+    }
+  }
+
+  private static void drain(InputStream in, int bufferSize) throws IOException {
+    copyStream(in, OutputStream.nullOutputStream(), bufferSize);
+  }
+
+  private static DecompressionStats decryptWithResolver(InputStream encryptedStream, OutputStream outputStream,
+                                                        PrivateKeyResolver keyResolver, int bufferSize) {
+    try {
+      encryptedStream = DecodingInputStream.decode(encryptedStream);
+      PGPEncryptedDataList encDataList = getEncryptedDataList(encryptedStream);
+
+      DecryptionKeys keys = findDecryptionKeys(encDataList, keyResolver);
+      DecompressionStats stats = decompressPackets(getDecryptedStream(keys), outputStream, bufferSize);
       verifyIntegrity(keys.encryptedData);
+      if (EventLog.isEnabled(EventType.DECOMPRESSED)) {
+        EventLog.record(EventType.DECOMPRESSED, stats.getAlgorithm(), stats.getUncompressedBytes(), stats.toString());
+      }
+      return stats;
     } catch (Exception e) {
       throw new DecryptionException("Error during PGP stream decryption", e);
     }
@@ -73,8 +264,7 @@ public class PGPFileDecryptor {
   }
 
   private static DecryptionKeys findDecryptionKeys(PGPEncryptedDataList encDataList,
-                                                   PGPSecretKeyRingCollection secretKeyRings,
-                                                   char[] passphrase) throws PGPException {
+                                                   PrivateKeyResolver keyResolver) throws PGPException {
 
     Iterator<PGPEncryptedData> it = encDataList.getEncryptedDataObjects();
 
@@ -83,10 +273,9 @@ public class PGPFileDecryptor {
 
       if (data instanceof PGPPublicKeyEncryptedData) {
         PGPPublicKeyEncryptedData pkEncData = (PGPPublicKeyEncryptedData) data;
-        PGPSecretKey secretKey = secretKeyRings.getSecretKey(pkEncData.getKeyID());
+        PGPPrivateKey privateKey = keyResolver.resolve(pkEncData.getKeyID());
 
-        if (secretKey != null) {
-          PGPPrivateKey privateKey = extractPrivateKey(secretKey, passphrase);
+        if (privateKey != null) {
           return new DecryptionKeys(privateKey, pkEncData);
         }
       }
@@ -98,18 +287,16 @@ public class PGPFileDecryptor {
   private static InputStream getDecryptedStream(DecryptionKeys keys) throws PGPException {
     return keys.encryptedData.getDataStream(
         new JcePublicKeyDataDecryptorFactoryBuilder()
-            .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+            .setProvider(CryptoProvider.get())
             .build(keys.privateKey)
     );
   }
 
-  private static Object getUncompressedMessage(InputStream decryptedStream) throws PGPException {
+  private static Object getUncompressedMessage(Object message, DecompressionStats stats) throws PGPException {
     try {
-      PGPObjectFactory plainFactory = new JcaPGPObjectFactory(decryptedStream);
-      Object message = plainFactory.nextObject();
       if (message instanceof PGPCompressedData) {
         PGPCompressedData compressedData = (PGPCompressedData) message;
-        plainFactory = new JcaPGPObjectFactory(compressedData.getDataStream());
+        PGPObjectFactory plainFactory = new JcaPGPObjectFactory(Decompressors.open(compressedData, stats));
         message = plainFactory.nextObject();
       }
       return message;
@@ -118,14 +305,20 @@ public class PGPFileDecryptor {
     }
   }
 
-  private static void processMessage(Object message, OutputStream outputStream)
-      throws IOException, PGPException {
+  /** Copies the literal data to {@code outputStream} and records its MD5 and SHA-256 on {@code stats}. */
+  private static long processMessage(Object message, OutputStream outputStream, int bufferSize,
+                                     DecompressionStats stats) throws IOException, PGPException {
 
     if (message instanceof PGPLiteralData) {
       PGPLiteralData literalData = (PGPLiteralData) message;
+      MessageDigest md5 = newDigest("MD5");
+      MessageDigest sha256 = newDigest("SHA-256");
+      long written;
       try (InputStream dataStream = literalData.getInputStream()) {
-        copyStream(dataStream, outputStream);
+        written = copyStream(dataStream, outputStream, bufferSize, md5, sha256);
       }
+      stats.setPlaintextChecksum(new PlaintextChecksum(md5.digest(), sha256.digest()));
+      return written;
     } else if (message instanceof PGPOnePassSignatureList) {
       throw new PGPException("Encrypted message contains a signed message - not literal data");
     } else {
@@ -153,19 +346,37 @@ public class PGPFileDecryptor {
 
     return secretKey.extractPrivateKey(
         new JcePBESecretKeyDecryptorBuilder()
-            .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+            .setProvider(CryptoProvider.get())
             .build(passphrase)
     );
   }
 
-  private static void copyStream(InputStream in, OutputStream out) throws IOException {
-    byte[] buffer = new byte[BUFFER_SIZE];
+  /** Each buffer is hashed by {@code digests} while it is still in cache, before it is written. */
+  private static long copyStream(InputStream in, OutputStream out, int bufferSize, MessageDigest... digests)
+      throws IOException {
+    byte[] buffer = BufferPool.shared().acquire(bufferSize);
     int bytesRead;
+    long total = 0;
 
-    while ((bytesRead = in.read(buffer)) != -1) {
-      out.write(buffer, 0, bytesRead);
+    try {
+      while ((bytesRead = in.read(buffer, 0, bufferSize)) != -1) {
+        for (MessageDigest digest : digests) {
+          digest.update(buffer, 0, bytesRead);
+        }
+        out.write(buffer, 0, bytesRead);
+        total += bytesRead;
+      }
+    } finally {
+      BufferPool.shared().release(buffer);
     }
+    return total;
   }
 
-
+  private static MessageDigest newDigest(String algorithm) {
+    try {
+      return MessageDigest.getInstance(algorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(algorithm + " is not available", e);
+    }
+  }
 }
\ No newline at end of file
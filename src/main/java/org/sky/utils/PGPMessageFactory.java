@@ -0,0 +1,141 @@
+package org.sky.utils;
+
+import org.bouncycastle.bcpg.HashAlgorithmTags;
+import org.bouncycastle.bcpg.PublicKeyAlgorithmTags;
+import org.bouncycastle.bcpg.SymmetricKeyAlgorithmTags;
+import org.bouncycastle.openpgp.PGPCompressedDataGenerator;
+import org.bouncycastle.openpgp.PGPEncryptedData;
+import org.bouncycastle.openpgp.PGPEncryptedDataGenerator;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPKeyPair;
+import org.bouncycastle.openpgp.PGPKeyRingGenerator;
+import org.bouncycastle.openpgp.PGPLiteralData;
+import org.bouncycastle.openpgp.PGPLiteralDataGenerator;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.bouncycastle.openpgp.PGPSignature;
+import org.bouncycastle.openpgp.operator.PGPDigestCalculator;
+import org.bouncycastle.openpgp.operator.jcajce.JcaPGPContentSignerBuilder;
+import org.bouncycastle.openpgp.operator.jcajce.JcaPGPDigestCalculatorProviderBuilder;
+import org.bouncycastle.openpgp.operator.jcajce.JcaPGPKeyPair;
+import org.bouncycastle.openpgp.operator.jcajce.JcePBESecretKeyEncryptorBuilder;
+import org.bouncycastle.openpgp.operator.jcajce.JcePGPDataEncryptorBuilder;
+import org.bouncycastle.openpgp.operator.jcajce.JcePublicKeyKeyEncryptionMethodGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.Provider;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Date;
+import java.util.Iterator;
+
+/**
+ * Generates throwaway key rings and encrypts messages to them the way partners do: AES with an integrity packet
+ * around compressed literal data. The warmup's synthetic decryption, the tests and the benchmarks all use it.
+ */
+public final class PGPMessageFactory {
+
+  public enum KeyType { RSA, ECC }
+
+  private static final int PACKET_BUFFER_SIZE = 1 << 16;
+
+  private PGPMessageFactory() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /**
+   * An RSA key of {@code rsaBits} that both signs and encrypts, or a P-256 ECDSA key with an ECDH encryption
+   * subkey, protected with {@code passphrase}.
+   */
+  public static PGPSecretKeyRing generateKeyRing(KeyType keyType, int rsaBits, String userId, String passphrase)
+      throws GeneralSecurityException, PGPException {
+    Provider provider = CryptoProvider.get();
+    PGPDigestCalculator sha1 = new JcaPGPDigestCalculatorProviderBuilder().setProvider(provider).build()
+        .get(HashAlgorithmTags.SHA1);
+    Date now = new Date();
+    PGPKeyPair master;
+    PGPKeyPair encryptionSubkey = null;
+
+    if (keyType == KeyType.RSA) {
+      KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA", provider);
+      generator.initialize(rsaBits);
+      master = new JcaPGPKeyPair(PublicKeyAlgorithmTags.RSA_GENERAL, generator.generateKeyPair(), now);
+    } else {
+      KeyPairGenerator generator = KeyPairGenerator.getInstance("EC", provider);
+      generator.initialize(new ECGenParameterSpec("P-256"));
+      master = new JcaPGPKeyPair(PublicKeyAlgorithmTags.ECDSA, generator.generateKeyPair(), now);
+      encryptionSubkey = new JcaPGPKeyPair(PublicKeyAlgorithmTags.ECDH, generator.generateKeyPair(), now);
+    }
+
+    PGPKeyRingGenerator ringGenerator = new PGPKeyRingGenerator(PGPSignature.POSITIVE_CERTIFICATION, master,
+        userId, sha1, null, null,
+        new JcaPGPContentSignerBuilder(master.getPublicKey().getAlgorithm(), HashAlgorithmTags.SHA256)
+            .setProvider(provider),
+        new JcePBESecretKeyEncryptorBuilder(SymmetricKeyAlgorithmTags.AES_256, sha1)
+            .setProvider(provider)
+            .build(passphrase.toCharArray()));
+    if (encryptionSubkey != null) {
+      ringGenerator.addSubKey(encryptionSubkey);
+    }
+    return ringGenerator.generateSecretKeyRing();
+  }
+
+  /** The last encryption-capable key of the ring: the subkey when there is one. */
+  public static PGPPublicKey encryptionKey(PGPSecretKeyRing keyRing) {
+    PGPPublicKey encryptionKey = null;
+    for (Iterator<PGPPublicKey> keys = keyRing.getPublicKeys(); keys.hasNext(); ) {
+      PGPPublicKey key = keys.next();
+      if (key.isEncryptionKey()) {
+        encryptionKey = key;
+      }
+    }
+    if (encryptionKey == null) {
+      throw new IllegalStateException("Key ring has no encryption key");
+    }
+    return encryptionKey;
+  }
+
+  /** Encrypts {@code plaintext} with AES-256; the literal packet carries its length, as most tools write it. */
+  public static byte[] encrypt(byte[] plaintext, PGPPublicKey publicKey, int compressionAlgorithm)
+      throws IOException, PGPException {
+    ByteArrayOutputStream encrypted = new ByteArrayOutputStream(plaintext.length / 4 + 1024);
+    encrypt(new ByteArrayInputStream(plaintext), plaintext.length, encrypted, publicKey, PGPEncryptedData.AES_256,
+        compressionAlgorithm, "data.txt");
+    return encrypted.toByteArray();
+  }
+
+  /**
+   * Encrypts {@code plaintext} into {@code out}, which is left open. With a negative {@code length} the literal
+   * data is written in partial packets, as streaming encryptors do.
+   */
+  public static void encrypt(InputStream plaintext, long length, OutputStream out, PGPPublicKey publicKey,
+                             int symmetricAlgorithm, int compressionAlgorithm, String fileName)
+      throws IOException, PGPException {
+    Provider provider = CryptoProvider.get();
+    PGPEncryptedDataGenerator encryptor = new PGPEncryptedDataGenerator(
+        new JcePGPDataEncryptorBuilder(symmetricAlgorithm)
+            .setWithIntegrityPacket(true)
+            .setSecureRandom(new SecureRandom())
+            .setProvider(provider));
+    encryptor.addMethod(new JcePublicKeyKeyEncryptionMethodGenerator(publicKey).setProvider(provider));
+
+    OutputStream encryptedOut = encryptor.open(out, new byte[PACKET_BUFFER_SIZE]);
+    PGPCompressedDataGenerator compressor = new PGPCompressedDataGenerator(compressionAlgorithm);
+    OutputStream compressedOut = compressor.open(encryptedOut);
+    PGPLiteralDataGenerator literal = new PGPLiteralDataGenerator();
+    OutputStream literalOut = length >= 0
+        ? literal.open(compressedOut, PGPLiteralData.BINARY, fileName, length, new Date())
+        : literal.open(compressedOut, PGPLiteralData.BINARY, fileName, new Date(), new byte[PACKET_BUFFER_SIZE]);
+    plaintext.transferTo(literalOut);
+    // Closing the generators finishes each packet without closing out.
+    literal.close();
+    compressor.close();
+    encryptor.close();
+  }
+}
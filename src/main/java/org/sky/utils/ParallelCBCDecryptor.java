@@ -0,0 +1,187 @@
+package org.sky.utils;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * AES-CBC decryption split across cores. Each plaintext block only depends on its own ciphertext block and the
+ * one before it, so every segment can be decrypted independently, seeded with the previous ciphertext block as IV.
+ */
+final class ParallelCBCDecryptor {
+
+  private static final int BLOCK_SIZE = 16;
+  private static final int CHUNK_SIZE = 1024 * 1024;
+  private static final int SEGMENTS_PER_WORKER = 4;
+  private static final long MAX_SEGMENT_SIZE = 1L << 30;
+  private static final String AES_ALGORITHM = "AES";
+  private static final String RAW_CBC_TRANSFORMATION = "AES/CBC/NoPadding";
+
+  private ParallelCBCDecryptor() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /**
+   * Decrypts {@code input} from {@code dataOffset} to its end into {@code outputPath} and returns the plaintext
+   * length. The padding is read from the last block up front so the output file can be sized before any worker
+   * starts writing into its own region.
+   */
+  static long decrypt(FileChannel input, long dataOffset, Path outputPath, byte[] key, byte[] iv,
+                      int parallelism) throws Exception {
+
+    long cipherLength = input.size() - dataOffset;
+    if (cipherLength <= 0 || cipherLength % BLOCK_SIZE != 0) {
+      throw new IllegalBlockSizeException("Ciphertext length is not a multiple of the AES block size");
+    }
+
+    SecretKeySpec keySpec = new SecretKeySpec(key, AES_ALGORITHM);
+    long plainLength = cipherLength - readPaddingLength(input, dataOffset, cipherLength, keySpec, iv);
+    List<Segment> segments = planSegments(input, dataOffset, cipherLength, plainLength, keySpec, iv,
+        parallelism);
+
+    try (RandomAccessFile outputFile = new RandomAccessFile(outputPath.toFile(), "rw")) {
+      outputFile.setLength(plainLength);
+      FileChannel output = outputFile.getChannel();
+      List<Callable<Void>> tasks = new ArrayList<>(segments.size());
+      for (Segment segment : segments) {
+        tasks.add(() -> {
+          segment.decryptInto(output);
+          return null;
+        });
+      }
+      runAll(tasks, parallelism);
+    }
+    return plainLength;
+  }
+
+  private static int readPaddingLength(FileChannel input, long dataOffset, long cipherLength,
+                                       SecretKeySpec keySpec, byte[] iv) throws Exception {
+
+    long lastBlockOffset = dataOffset + cipherLength - BLOCK_SIZE;
+    byte[] lastBlockIv = cipherLength > BLOCK_SIZE ? readBlock(input, lastBlockOffset - BLOCK_SIZE) : iv;
+
+    Cipher cipher = Cipher.getInstance(RAW_CBC_TRANSFORMATION);
+    cipher.init(Cipher.DECRYPT_MODE, keySpec, new IvParameterSpec(lastBlockIv));
+    byte[] lastBlock = cipher.doFinal(readBlock(input, lastBlockOffset));
+
+    int padding = lastBlock[BLOCK_SIZE - 1] & 0xFF;
+    if (padding < 1 || padding > BLOCK_SIZE) {
+      throw new BadPaddingException("Given final block not properly padded");
+    }
+    for (int i = BLOCK_SIZE - padding; i < BLOCK_SIZE; i++) {
+      if ((lastBlock[i] & 0xFF) != padding) {
+        throw new BadPaddingException("Given final block not properly padded");
+      }
+    }
+    return padding;
+  }
+
+  private static List<Segment> planSegments(FileChannel input, long dataOffset, long cipherLength,
+                                            long plainLength, SecretKeySpec keySpec, byte[] iv,
+                                            int parallelism) throws IOException {
+
+    long blocks = cipherLength / BLOCK_SIZE;
+    long blocksPerSegment = Math.max(1, blocks / ((long) parallelism * SEGMENTS_PER_WORKER));
+    blocksPerSegment = Math.min(blocksPerSegment, MAX_SEGMENT_SIZE / BLOCK_SIZE);
+
+    List<Segment> segments = new ArrayList<>();
+    for (long start = 0; start < cipherLength; start += blocksPerSegment * BLOCK_SIZE) {
+      long length = Math.min(blocksPerSegment * BLOCK_SIZE, cipherLength - start);
+      byte[] segmentIv = start == 0 ? iv : readBlock(input, dataOffset + start - BLOCK_SIZE);
+      long writableLength = Math.min(length, plainLength - start);
+      segments.add(new Segment(input, dataOffset + start, length, start, writableLength, keySpec, segmentIv));
+    }
+    return segments;
+  }
+
+  private static void runAll(List<Callable<Void>> tasks, int parallelism) throws Exception {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      for (Future<Void> result : pool.invokeAll(tasks)) {
+        try {
+          result.get();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          throw cause instanceof Exception ? (Exception) cause : e;
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static byte[] readBlock(FileChannel input, long position) throws IOException {
+    ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+    while (block.hasRemaining()) {
+      if (input.read(block, position + block.position()) == -1) {
+        throw new IOException("Unexpected end of stream");
+      }
+    }
+    return block.array();
+  }
+
+  private static final class Segment {
+    private final FileChannel input;
+    private final long inputOffset;
+    private final long length;
+    private final long outputOffset;
+    private final long writableLength;
+    private final SecretKeySpec keySpec;
+    private final byte[] iv;
+
+    Segment(FileChannel input, long inputOffset, long length, long outputOffset, long writableLength,
+                SecretKeySpec keySpec, byte[] iv) {
+      this.input = input;
+      this.inputOffset = inputOffset;
+      this.length = length;
+      this.outputOffset = outputOffset;
+      this.writableLength = writableLength;
+      this.keySpec = keySpec;
+      this.iv = iv;
+    }
+
+    void decryptInto(FileChannel output) throws Exception {
+      Cipher cipher = Cipher.getInstance(RAW_CBC_TRANSFORMATION);
+      cipher.init(Cipher.DECRYPT_MODE, keySpec, new IvParameterSpec(iv));
+      MappedByteBuffer mapped = input.map(FileChannel.MapMode.READ_ONLY, inputOffset, length);
+
+      // Copying out of the mapping into reused heap arrays keeps the cipher on its array fast path.
+      int chunkSize = (int) Math.min(CHUNK_SIZE, length);
+      byte[] in = BufferPool.shared().acquire(chunkSize);
+      byte[] out = BufferPool.shared().acquire(chunkSize);
+      ByteBuffer outBuffer = ByteBuffer.wrap(out);
+      long written = 0;
+
+      try {
+        while (mapped.hasRemaining()) {
+          int count = Math.min(chunkSize, mapped.remaining());
+          mapped.get(in, 0, count);
+          int decrypted = cipher.update(in, 0, count, out, 0);
+          int writable = (int) Math.min(decrypted, writableLength - written);
+          outBuffer.clear().limit(writable);
+          while (outBuffer.hasRemaining()) {
+            output.write(outBuffer, outputOffset + written + outBuffer.position());
+          }
+          written += writable;
+        }
+      } finally {
+        BufferPool.shared().release(in);
+        BufferPool.shared().release(out);
+      }
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package org.sky.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * gzip encoder that deflates fixed-size chunks on several threads, the way pigz does. Each chunk is primed with the
+ * last 32 KB of the one before and ends on a sync flush, so the chunks join into one deflate stream inside a single
+ * gzip member that any gunzip reads. Chunk boundaries do not depend on timing, so the same input always encodes
+ * to the same bytes.
+ *
+ * <p>The writing thread only copies bytes and updates the CRC; at most {@code workers} chunks are deflated at once.
+ */
+class ParallelGzipOutputStream extends OutputStream {
+
+  static final int CHUNK_SIZE = 1024 * 1024;
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+  private static final int DEFLATE_BUFFER_SIZE = 64 * 1024;
+  // Deflate, no flags, no mtime, no extra flags, unknown OS.
+  private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+  // Deflating is CPU-bound: one thread per core across every stream, the rest of the chunks queue.
+  private static final ExecutorService DEFLATE_EXECUTOR = DaemonThreads.boundedPool("gzip-deflate",
+      DaemonThreads.perCore(1, 2));
+
+  private final OutputStream out;
+  private final int level;
+  private final int maxInFlight;
+  private final CRC32 crc = new CRC32();
+  private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+  private byte[] chunk;
+  private int position;
+  private byte[] dictionary;
+  private long totalIn;
+  private boolean closed;
+
+  ParallelGzipOutputStream(OutputStream out, int level, int workers) throws IOException {
+    this.out = out;
+    this.level = level;
+    this.maxInFlight = Math.max(1, workers);
+    this.chunk = BufferPool.shared().acquire(CHUNK_SIZE);
+    out.write(HEADER);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    chunk[position++] = (byte) b;
+    crc.update(b);
+    totalIn++;
+    if (position == CHUNK_SIZE) {
+      submit(false);
+    }
+  }
+
+  @Override
+  public void write(byte[] data, int off, int len) throws IOException {
+    ensureOpen();
+    crc.update(data, off, len);
+    totalIn += len;
+    while (len > 0) {
+      int copied = Math.min(len, CHUNK_SIZE - position);
+      System.arraycopy(data, off, chunk, position, copied);
+      position += copied;
+      off += copied;
+      len -= copied;
+      if (position == CHUNK_SIZE) {
+        submit(false);
+      }
+    }
+  }
+
+  /**
+   * Deflates the last chunk, writes every chunk in order and the gzip trailer, then closes the target. If writing
+   * fails the remaining chunks are dropped; their workers still return the buffers to the pool.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      submit(true);
+      while (!pending.isEmpty()) {
+        writeNext();
+      }
+      writeIntLE(crc.getValue());
+      writeIntLE(totalIn);
+    } finally {
+      pending.clear();
+      if (chunk != null) {
+        BufferPool.shared().release(chunk);
+        chunk = null;
+      }
+      out.close();
+    }
+  }
+
+  private void submit(boolean last) throws IOException {
+    while (pending.size() >= maxInFlight) {
+      writeNext();
+    }
+    while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+      writeNext();
+    }
+    byte[] data = chunk;
+    int length = position;
+    byte[] primer = dictionary;
+    // The worker returns the chunk to the shared pool, so nothing may read it once it is submitted.
+    if (!last) {
+      dictionary = Arrays.copyOfRange(data, length - DICTIONARY_SIZE, length);
+    }
+    pending.addLast(DEFLATE_EXECUTOR.submit(() -> deflate(data, length, primer, level, last)));
+    if (last) {
+      chunk = null;
+    } else {
+      chunk = BufferPool.shared().acquire(CHUNK_SIZE);
+      position = 0;
+    }
+  }
+
+  private void writeNext() throws IOException {
+    try {
+      out.write(pending.removeFirst().get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while compressing");
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to deflate chunk", e.getCause());
+    }
+  }
+
+  private static byte[] deflate(byte[] data, int length, byte[] dictionary, int level, boolean last) {
+    Deflater deflater = new Deflater(level, true);
+    byte[] buffer = BufferPool.shared().acquire(DEFLATE_BUFFER_SIZE);
+    try {
+      if (dictionary != null) {
+        deflater.setDictionary(dictionary);
+      }
+      deflater.setInput(data, 0, length);
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+      if (last) {
+        deflater.finish();
+        while (!deflater.finished()) {
+          compressed.write(buffer, 0, deflater.deflate(buffer, 0, DEFLATE_BUFFER_SIZE));
+        }
+      } else {
+        // A sync flush is complete once it leaves part of the buffer unused.
+        int produced;
+        do {
+          produced = deflater.deflate(buffer, 0, DEFLATE_BUFFER_SIZE, Deflater.SYNC_FLUSH);
+          compressed.write(buffer, 0, produced);
+        } while (produced == DEFLATE_BUFFER_SIZE);
+      }
+      return compressed.toByteArray();
+    } finally {
+      deflater.end();
+      BufferPool.shared().release(buffer);
+      BufferPool.shared().release(data);
+    }
+  }
+
+  private void writeIntLE(long value) throws IOException {
+    out.write((int) value & 0xFF);
+    out.write((int) (value >>> 8) & 0xFF);
+    out.write((int) (value >>> 16) & 0xFF);
+    out.write((int) (value >>> 24) & 0xFF);
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+}
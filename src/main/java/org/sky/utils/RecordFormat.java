@@ -0,0 +1,23 @@
+package org.sky.utils;
+
+import java.util.Locale;
+
+/** How {@link RecordShardingOutputStream} finds where one record ends and the next begins. */
+public enum RecordFormat {
+  /** Every newline ends a record: plain text logs, NDJSON. */
+  LINES,
+  /** A newline ends a record only outside double quotes, so quoted fields may span lines. */
+  CSV;
+
+  /** Parses {@code lines} or {@code csv}, ignoring case; null or blank is {@link #LINES}. */
+  public static RecordFormat parse(String name) {
+    if (name == null || name.trim().isEmpty()) {
+      return LINES;
+    }
+    try {
+      return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown record format '" + name + "', expected lines or csv", e);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package org.sky.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Splits a plaintext stream into shards of about {@code targetShardBytes}, cutting only right after a record
+ * terminator so no record is split between two shards. A shard ends at the first record boundary at or past the
+ * target; the next one is opened with the following byte, so no empty shard is produced after the last record.
+ *
+ * <p>CSV quoting is tracked by toggling on every double quote, which matches RFC 4180 where quotes inside a quoted
+ * field are doubled. With {@code repeatHeader} the first record is written again at the start of every later shard
+ * and is not counted as a record.
+ */
+public class RecordShardingOutputStream extends OutputStream {
+
+  /** Receives the shards in order; shards are written one at a time, from the writing thread. */
+  public interface ShardSink {
+    /** Returns the stream for shard {@code index}, counting from 0. */
+    OutputStream open(int index) throws IOException;
+
+    /** Called once the stream of shard {@code index} is closed, with the records it holds. */
+    void finish(int index, long records) throws IOException;
+  }
+
+  private final RecordFormat format;
+  private final long targetShardBytes;
+  private final ShardSink sink;
+  private final byte[] single = new byte[1];
+  private ByteArrayOutputStream headerCapture;
+  private byte[] header;
+  private OutputStream shard;
+  private int shardIndex = -1;
+  private long shardBytes;
+  private long shardRecords;
+  private long totalRecords;
+  private boolean inQuotes;
+  private boolean partialRecord;
+  private boolean closed;
+
+  public RecordShardingOutputStream(RecordFormat format, long targetShardBytes, boolean repeatHeader,
+                                    ShardSink sink) {
+    if (targetShardBytes <= 0) {
+      throw new IllegalArgumentException("Shard size must be positive, was " + targetShardBytes);
+    }
+    this.format = format;
+    this.targetShardBytes = targetShardBytes;
+    this.sink = sink;
+    this.headerCapture = repeatHeader ? new ByteArrayOutputStream() : null;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    single[0] = (byte) b;
+    write(single, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] data, int off, int len) throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    boolean csv = format == RecordFormat.CSV;
+    int end = off + len;
+    int start = off;
+    int lastBoundary = -1;
+    for (int i = off; i < end; i++) {
+      byte c = data[i];
+      if (c == '"' && csv) {
+        inQuotes = !inQuotes;
+      } else if (c == '\n' && !inQuotes) {
+        lastBoundary = i;
+        if (headerCapture != null) {
+          headerCapture.write(data, start, i + 1 - start);
+          header = headerCapture.toByteArray();
+          headerCapture = null;
+          emit(data, start, i + 1);
+          start = i + 1;
+        } else {
+          shardRecords++;
+          if (shardBytes + (i + 1 - start) >= targetShardBytes) {
+            emit(data, start, i + 1);
+            finishShard();
+            start = i + 1;
+          }
+        }
+      }
+    }
+    if (start < end) {
+      if (headerCapture != null) {
+        headerCapture.write(data, start, end - start);
+      }
+      emit(data, start, end);
+    }
+    if (len > 0) {
+      partialRecord = lastBoundary != end - 1;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (shard != null) {
+      shard.flush();
+    }
+  }
+
+  /** Finishes the last shard; an empty input still produces one empty shard. */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (partialRecord && headerCapture == null) {
+      // The last record had no terminator.
+      shardRecords++;
+    }
+    if (shard == null && shardIndex < 0) {
+      openShard();
+    }
+    if (shard != null) {
+      finishShard();
+    }
+  }
+
+  public int getShardCount() { return shardIndex + 1; }
+  public long getRecords() { return totalRecords; }
+
+  private void emit(byte[] data, int from, int to) throws IOException {
+    if (shard == null) {
+      openShard();
+    }
+    shard.write(data, from, to - from);
+    shardBytes += to - from;
+  }
+
+  private void openShard() throws IOException {
+    shardIndex++;
+    shard = sink.open(shardIndex);
+    if (shardIndex > 0 && header != null) {
+      shard.write(header);
+      shardBytes += header.length;
+    }
+  }
+
+  private void finishShard() throws IOException {
+    shard.close();
+    shard = null;
+    totalRecords += shardRecords;
+    long records = shardRecords;
+    shardBytes = 0;
+    shardRecords = 0;
+    sink.finish(shardIndex, records);
+  }
+}
@@ -0,0 +1,94 @@
+package org.sky.utils;
+
+import org.bouncycastle.openpgp.PGPCompressedData;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRing;
+import org.sky.model.DecompressionStats;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Encrypts a generated CSV to a throwaway key and decrypts it through the production path: key ring parsing and
+ * S2K unlock, sequential and pipelined decryption, plaintext checksums, every output codec, record splitting and
+ * archive detection. Run by the warmup trigger and by the AppCDS training run so those classes are loaded, and the
+ * copy loops compiled, before the first real blob. Needs no network and no configuration.
+ */
+public final class SyntheticDecryption {
+
+  private static final String PASSPHRASE = "warmup";
+  private static final int ROWS = 50_000;
+  private static final int SHARD_SIZE = 256 * 1024;
+  // The key only protects synthetic data; a short one loads the same classes and generates in a fraction of the time.
+  private static final int KEY_BITS = 1024;
+
+  private SyntheticDecryption() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  /** Returns the plaintext bytes decrypted; fails if any pass does not reproduce the plaintext. */
+  public static long run() throws Exception {
+    PGPSecretKeyRing keyRing = PGPMessageFactory.generateKeyRing(PGPMessageFactory.KeyType.RSA, KEY_BITS,
+        "warmup@localhost", PASSPHRASE);
+    Map<Long, PGPPrivateKey> privateKeys = PGPFileDecryptor.unlockPrivateKeys(
+        PGPFileDecryptor.readSecretKeyRing(keyRing.getEncoded()), PASSPHRASE);
+
+    byte[] plaintext = syntheticCsv();
+    byte[] expectedSha256 = MessageDigest.getInstance("SHA-256").digest(plaintext);
+    byte[] encrypted = PGPMessageFactory.encrypt(plaintext, PGPMessageFactory.encryptionKey(keyRing),
+        PGPCompressedData.ZIP);
+
+    long decrypted = 0;
+    for (OutputCodec codec : OutputCodec.values()) {
+      boolean pipelined = codec.ordinal() % 2 == 1;
+      EncodingOutputStream encoder = new EncodingOutputStream(OutputStream.nullOutputStream(), codec, 0, 2);
+      DecompressionStats stats = pipelined
+          ? PGPFileDecryptor.decryptStreamPipelined(new ByteArrayInputStream(encrypted), encoder, privateKeys::get)
+          : PGPFileDecryptor.decryptStream(new ByteArrayInputStream(encrypted), encoder, privateKeys::get);
+      encoder.close();
+      verify(expectedSha256, stats.getPlaintextChecksum().getSha256(), codec);
+      decrypted += encoder.getPlaintextBytes();
+    }
+
+    RecordShardingOutputStream shards = new RecordShardingOutputStream(RecordFormat.CSV, SHARD_SIZE, true,
+        new RecordShardingOutputStream.ShardSink() {
+          @Override
+          public OutputStream open(int index) throws IOException {
+            return new EncodingOutputStream(OutputStream.nullOutputStream(), OutputCodec.GZIP, 0, 1);
+          }
+
+          @Override
+          public void finish(int index, long records) {
+          }
+        });
+    shards.write(plaintext);
+    shards.close();
+    if (shards.getRecords() != ROWS) {
+      throw new IllegalStateException("Synthetic CSV split into " + shards.getRecords() + " records, expected "
+          + ROWS);
+    }
+    ArchiveFormat.detect(new BufferedInputStream(new ByteArrayInputStream(plaintext), ArchiveFormat.DETECT_LIMIT));
+    return decrypted;
+  }
+
+  private static void verify(byte[] expectedSha256, byte[] sha256, OutputCodec codec) {
+    if (!Arrays.equals(expectedSha256, sha256)) {
+      throw new IllegalStateException("Synthetic decryption with codec " + codec + " did not reproduce the plaintext");
+    }
+  }
+
+  private static byte[] syntheticCsv() {
+    StringBuilder csv = new StringBuilder("id,account,amount,note\n");
+    for (int i = 0; i < ROWS; i++) {
+      csv.append(i).append(",ES").append(1_000_000 + i * 7).append(',').append(i % 9973).append('.').append(i % 100)
+          .append(i % 10 == 0 ? ",\"multi\nline, quoted\"\n" : ",plain\n");
+    }
+    return csv.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
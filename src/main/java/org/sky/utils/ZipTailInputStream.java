@@ -0,0 +1,199 @@
+package org.sky.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the last bytes read through it, so the central directory of a ZIP read as a stream can still be consulted
+ * once the stream ends. A streaming reader only sees local headers, which do not say whether an entry is a
+ * symbolic link; the Unix mode that does is in the central directory, after every entry.
+ */
+public class ZipTailInputStream extends FilterInputStream {
+
+  private static final int END_SIGNATURE = 0x06054b50;
+  private static final int END_SIZE = 22;
+  private static final int MAX_COMMENT_SIZE = 0xffff;
+  private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+  private static final int ZIP64_LOCATOR_SIZE = 20;
+  private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+  private static final int HEADER_SIGNATURE = 0x02014b50;
+  private static final int HEADER_SIZE = 46;
+  private static final int PLATFORM_UNIX = 3;
+  private static final int INITIAL_CAPACITY = 64 * 1024;
+
+  private final int capacity;
+  private byte[] ring = new byte[INITIAL_CAPACITY];
+  private int next;
+  private boolean wrapped;
+  private long length;
+  private boolean capturing = true;
+
+  /** Keeps up to {@code capacity} bytes; a central directory that does not fit cannot be read. */
+  public ZipTailInputStream(InputStream in, int capacity) {
+    super(in);
+    this.capacity = capacity;
+  }
+
+  /** Drops the kept bytes and keeps no more, for plaintext that turned out not to be a ZIP. */
+  public void stopCapturing() {
+    capturing = false;
+    ring = null;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = in.read();
+    if (b != -1) {
+      keep(new byte[]{(byte) b}, 0, 1);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int count) throws IOException {
+    int read = in.read(buffer, offset, count);
+    if (read > 0) {
+      keep(buffer, offset, read);
+    }
+    return read;
+  }
+
+  @Override
+  public long skip(long count) throws IOException {
+    // Skipped bytes have to be kept too: they may be the central directory.
+    return Math.max(0, read(new byte[(int) Math.min(count, 8192)]));
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  /**
+   * The Unix mode of every entry in the central directory by name, 0 for entries not made on Unix. Call it once the
+   * whole stream has been read.
+   */
+  public Map<String, Integer> unixModes() throws IOException {
+    try {
+      return readCentralDirectory(tail());
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Malformed ZIP central directory", e);
+    }
+  }
+
+  private Map<String, Integer> readCentralDirectory(byte[] tail) throws IOException {
+    long tailStart = length - tail.length;
+    int end = findEnd(tail);
+    long directorySize = uint32(tail, end + 12);
+    long directoryOffset = uint32(tail, end + 16);
+    if (directorySize == 0xffffffffL || directoryOffset == 0xffffffffL) {
+      int locator = end - ZIP64_LOCATOR_SIZE;
+      if (locator < 0 || (int) uint32(tail, locator) != ZIP64_LOCATOR_SIGNATURE) {
+        throw new IOException("ZIP64 end of central directory locator not found");
+      }
+      int zip64End = relative(uint64(tail, locator + 8), tailStart);
+      if ((int) uint32(tail, zip64End) != ZIP64_END_SIGNATURE) {
+        throw new IOException("ZIP64 end of central directory not found");
+      }
+      directorySize = uint64(tail, zip64End + 40);
+      directoryOffset = uint64(tail, zip64End + 48);
+    }
+
+    Map<String, Integer> modes = new HashMap<>();
+    int position = relative(directoryOffset, tailStart);
+    long directoryEnd = position + directorySize;
+    while (position < directoryEnd) {
+      if (position + HEADER_SIZE > tail.length || (int) uint32(tail, position) != HEADER_SIGNATURE) {
+        throw new IOException("Malformed ZIP central directory");
+      }
+      int madeBy = uint16(tail, position + 4);
+      int nameLength = uint16(tail, position + 28);
+      int extraLength = uint16(tail, position + 30);
+      int commentLength = uint16(tail, position + 32);
+      long externalAttributes = uint32(tail, position + 38);
+      // Decoded as the streaming reader decodes entry names, so the two can be matched.
+      String name = new String(tail, position + HEADER_SIZE, nameLength, StandardCharsets.UTF_8);
+      modes.put(name, madeBy >> 8 == PLATFORM_UNIX ? (int) (externalAttributes >> 16) : 0);
+      position += HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+    return modes;
+  }
+
+  private void keep(byte[] buffer, int offset, int count) {
+    length += count;
+    if (!capturing) {
+      return;
+    }
+    if (count >= capacity) {
+      ring = new byte[capacity];
+      System.arraycopy(buffer, offset + count - capacity, ring, 0, capacity);
+      next = 0;
+      wrapped = true;
+      return;
+    }
+    if (!wrapped && next + count >= ring.length && ring.length < capacity) {
+      // Grows until the capacity is reached; only then does it start overwriting the oldest bytes.
+      byte[] grown = new byte[(int) Math.min(capacity, Math.max(2L * ring.length, next + count))];
+      System.arraycopy(ring, 0, grown, 0, next);
+      ring = grown;
+    }
+    int first = Math.min(count, ring.length - next);
+    System.arraycopy(buffer, offset, ring, next, first);
+    System.arraycopy(buffer, offset + first, ring, 0, count - first);
+    if (next + count >= ring.length) {
+      wrapped = true;
+    }
+    next = (next + count) % ring.length;
+  }
+
+  private byte[] tail() {
+    if (ring == null) {
+      return new byte[0];
+    }
+    if (!wrapped) {
+      byte[] tail = new byte[next];
+      System.arraycopy(ring, 0, tail, 0, next);
+      return tail;
+    }
+    byte[] tail = new byte[ring.length];
+    System.arraycopy(ring, next, tail, 0, ring.length - next);
+    System.arraycopy(ring, 0, tail, ring.length - next, next);
+    return tail;
+  }
+
+  private static int findEnd(byte[] tail) throws IOException {
+    int lowest = Math.max(0, tail.length - END_SIZE - MAX_COMMENT_SIZE);
+    for (int position = tail.length - END_SIZE; position >= lowest; position--) {
+      if ((int) uint32(tail, position) == END_SIGNATURE) {
+        return position;
+      }
+    }
+    throw new IOException("ZIP end of central directory not found");
+  }
+
+  private int relative(long offset, long tailStart) throws IOException {
+    if (offset < tailStart) {
+      throw new IOException("ZIP central directory is larger than the " + capacity + " bytes kept");
+    }
+    if (offset - tailStart > Integer.MAX_VALUE) {
+      throw new IOException("Malformed ZIP central directory offset " + offset);
+    }
+    return (int) (offset - tailStart);
+  }
+
+  private static int uint16(byte[] data, int offset) {
+    return (data[offset] & 0xff) | (data[offset + 1] & 0xff) << 8;
+  }
+
+  private static long uint32(byte[] data, int offset) {
+    return uint16(data, offset) | (long) uint16(data, offset + 2) << 16;
+  }
+
+  private static long uint64(byte[] data, int offset) {
+    return uint32(data, offset) | uint32(data, offset + 4) << 32;
+  }
+}
@@ -0,0 +1,49 @@
+package org.sky.azure;
+
+import com.azure.storage.blob.models.ParallelTransferOptions;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlobUploadTuningTest {
+
+    private static final long MB = 1024L * 1024;
+
+    @Test
+    void testSmallPayloadUsesSingleShotPut() {
+        BlobUploadTuning tuning = BlobUploadTuning.fromMegabytes(0, 8, 8);
+
+        assertTrue(tuning.isSingleShot(2 * MB));
+        assertEquals(8 * MB, tuning.forSize(2 * MB).getMaxSingleUploadSizeLong());
+    }
+
+    @Test
+    void testBlockSizeGrowsWithFileSizeAndStaysBelowBlockLimit() {
+        BlobUploadTuning tuning = BlobUploadTuning.fromMegabytes(0, 8, 8);
+
+        long mediumBlock = tuning.forSize(256 * MB).getBlockSizeLong();
+        long hugeBlock = tuning.forSize(200_000 * MB).getBlockSizeLong();
+
+        assertEquals(8 * MB, mediumBlock);
+        assertTrue(hugeBlock > mediumBlock);
+        assertTrue(200_000 * MB / hugeBlock <= 50_000);
+    }
+
+    @Test
+    void testConcurrencyNeverExceedsBlockCount() {
+        ParallelTransferOptions options = BlobUploadTuning.fromMegabytes(4, 16, 1).forSize(10 * MB);
+
+        assertEquals(4 * MB, options.getBlockSizeLong());
+        assertEquals(3, options.getMaxConcurrency());
+    }
+
+    @Test
+    void testRegistryKeepsOneClientPerTuning() {
+        String account = "https://tuningtest.blob.core.windows.net";
+        AzureBlobStorageDecrypt first = AzureClientRegistry.blobStorage(account, "out",
+                BlobUploadTuning.fromMegabytes(8, 4, 8));
+
+        assertSame(first, AzureClientRegistry.blobStorage(account, "out", BlobUploadTuning.fromMegabytes(8, 4, 8)));
+        assertNotSame(first, AzureClientRegistry.blobStorage(account, "out", BlobUploadTuning.fromMegabytes(16, 4, 8)));
+    }
+}
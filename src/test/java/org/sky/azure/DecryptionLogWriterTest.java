@@ -0,0 +1,112 @@
+package org.sky.azure;
+
+import com.azure.data.tables.models.TableEntity;
+import org.junit.jupiter.api.Test;
+import org.sky.model.DecryptionLog;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecryptionLogWriterTest {
+
+    private final List<List<TableEntity>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void testRecordsAreWrittenInBatchesOfAtMostOneHundred() {
+        DecryptionLogWriter writer = new DecryptionLogWriter(batches::add, 1000,
+                Duration.ofMillis(200), Duration.ofSeconds(1));
+
+        for (int i = 0; i < 250; i++) {
+            writer.enqueue(new DecryptionLog("blob-" + i, "SUCCESS"));
+        }
+
+        assertTrue(writer.flush(Duration.ofSeconds(10)));
+        writer.close();
+        // Every record is written twice: the time-bucketed row and its blob-name index row.
+        assertEquals(500, batches.stream().mapToInt(List::size).sum());
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= DecryptionLogWriter.MAX_BATCH_SIZE));
+    }
+
+    @Test
+    void testFailedBatchIsRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        DecryptionLogWriter writer = new DecryptionLogWriter(entities -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("transient");
+            }
+            batches.add(entities);
+        }, 10, Duration.ofMillis(50), Duration.ofSeconds(1));
+
+        writer.enqueue(new DecryptionLog("blob", "FAILED"));
+
+        assertTrue(writer.flush(Duration.ofSeconds(10)));
+        writer.close();
+        // One failed attempt plus the successful retry, then the blob-name index partition.
+        assertEquals(3, attempts.get());
+        assertEquals(2, batches.size());
+    }
+
+    @Test
+    void testRecordsEnqueuedAfterCloseAreWrittenSynchronously() {
+        DecryptionLogWriter writer = new DecryptionLogWriter(batches::add, 10,
+                Duration.ofMillis(50), Duration.ofSeconds(1));
+        writer.close();
+
+        writer.enqueue(new DecryptionLog("late-blob", "SUCCESS"));
+
+        assertEquals(2, batches.size());
+        assertEquals("late-blob", batches.get(0).get(0).getProperty("BlobName"));
+    }
+
+    @Test
+    void testRecordsRacingCloseAreNeverStranded() throws InterruptedException {
+        for (int round = 0; round < 200; round++) {
+            AtomicInteger written = new AtomicInteger();
+            DecryptionLogWriter writer = new DecryptionLogWriter(entities -> written.addAndGet(entities.size()), 10,
+                    Duration.ofMillis(1), Duration.ofSeconds(1));
+            Thread closer = new Thread(writer::close);
+            closer.start();
+
+            writer.enqueue(new DecryptionLog("racing-blob", "SUCCESS"));
+            closer.join();
+
+            assertTrue(writer.flush(Duration.ofSeconds(5)), "round " + round);
+            assertEquals(2, written.get());
+        }
+    }
+
+    @Test
+    void testWriteAllIsDurableWhenItReturns() {
+        DecryptionLogWriter writer = new DecryptionLogWriter(batches::add, 10,
+                Duration.ofMillis(200), Duration.ofSeconds(1));
+        List<DecryptionLog> logs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            logs.add(new DecryptionLog("batch-blob-" + i, "SUCCESS"));
+        }
+
+        writer.writeAll(logs);
+
+        assertEquals(40, batches.stream().mapToInt(List::size).sum());
+        assertTrue(writer.flush(Duration.ZERO));
+        writer.close();
+    }
+
+    @Test
+    void testWriteAllFailsWhenABatchIsDropped() {
+        DecryptionLogWriter writer = new DecryptionLogWriter(entities -> {
+            throw new IllegalStateException("503 Server Busy");
+        }, 10, Duration.ofMillis(50), Duration.ofSeconds(1));
+
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> writer.writeAll(List.of(new DecryptionLog("batch-blob", "SUCCESS"))));
+
+        assertEquals("503 Server Busy", error.getCause().getMessage());
+        assertTrue(writer.flush(Duration.ZERO));
+        writer.close();
+    }
+}
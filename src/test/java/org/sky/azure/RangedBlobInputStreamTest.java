@@ -0,0 +1,97 @@
+package org.sky.azure;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RangedBlobInputStreamTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @Test
+    void testRangesAreReassembledInOrder() throws IOException {
+        byte[] blob = new byte[100_003];
+        new Random(7).nextBytes(blob);
+        RangedBlobInputStream.RangeReader reader = (offset, count) -> {
+            sleepInversely(offset);
+            return Arrays.copyOfRange(blob, (int) offset, (int) offset + count);
+        };
+
+        try (InputStream stream = new RangedBlobInputStream(reader, blob.length, 4096, 8, executor)) {
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            stream.transferTo(copy);
+            assertArrayEquals(blob, copy.toByteArray());
+        }
+    }
+
+    @Test
+    void testReadAheadWindowIsBounded() throws IOException {
+        AtomicInteger requested = new AtomicInteger();
+        RangedBlobInputStream.RangeReader reader = (offset, count) -> {
+            requested.incrementAndGet();
+            return new byte[count];
+        };
+
+        try (InputStream stream = new RangedBlobInputStream(reader, 1024 * 1024, 1024, 3, executor)) {
+            stream.read();
+            assertTrue(requested.get() <= 4);
+        }
+    }
+
+    @Test
+    void testFailedRangeSurfacesAsIOException() {
+        RangedBlobInputStream.RangeReader reader = (offset, count) -> {
+            throw new IllegalStateException("412 condition not met");
+        };
+
+        InputStream stream = new RangedBlobInputStream(reader, 10, 4, 2, executor);
+        IOException exception = assertThrows(IOException.class, stream::read);
+        assertEquals("412 condition not met", exception.getCause().getMessage());
+    }
+
+    @Test
+    void testCloseSkipsRangesStillQueued() throws Exception {
+        ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        CountDownLatch firstRangeStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger requested = new AtomicInteger();
+        RangedBlobInputStream.RangeReader reader = (offset, count) -> {
+            requested.incrementAndGet();
+            firstRangeStarted.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new byte[count];
+        };
+
+        InputStream stream = new RangedBlobInputStream(reader, 1024 * 1024, 1024, 4, singleThread);
+        assertTrue(firstRangeStarted.await(5, TimeUnit.SECONDS));
+        stream.close();
+        release.countDown();
+        singleThread.shutdown();
+        assertTrue(singleThread.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(1, requested.get());
+    }
+
+    private static void sleepInversely(long offset) {
+        try {
+            Thread.sleep(Math.max(0, 5 - offset / 20_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
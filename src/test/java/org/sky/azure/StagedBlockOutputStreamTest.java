@@ -0,0 +1,206 @@
+package org.sky.azure;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StagedBlockOutputStreamTest {
+
+    private static final int BLOCK_SIZE = 16 * 1024;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testBlocksAreCommittedInOutputOrder() throws IOException {
+        byte[] data = randomBytes(5 * BLOCK_SIZE + 123);
+        FakeBlob blob = new FakeBlob();
+
+        try (StagedBlockOutputStream stream = newStream(blob, Collections.emptySet())) {
+            stream.write(data, 0, 1000);
+            stream.write(data[1000]);
+            stream.write(data, 1001, data.length - 1001);
+        }
+
+        assertEquals(6, blob.committed.size());
+        assertArrayEquals(data, blob.committedBytes());
+        String firstId = new String(Base64.getDecoder().decode(blob.committed.get(1)));
+        assertTrue(firstId.startsWith(String.format("%016x-", BLOCK_SIZE)));
+    }
+
+    @Test
+    void testRetrySkipsBlocksAlreadyStagedWithTheSameContent() throws IOException {
+        byte[] data = randomBytes(8 * BLOCK_SIZE);
+        FakeBlob firstAttempt = new FakeBlob();
+        try (StagedBlockOutputStream stream = newStream(firstAttempt, Collections.emptySet())) {
+            stream.write(data);
+        }
+
+        // The first attempt died after staging half of the blocks.
+        Set<String> survived = new HashSet<>(firstAttempt.committed.subList(0, 4));
+        FakeBlob retry = new FakeBlob();
+        retry.staged.putAll(firstAttempt.staged);
+        retry.staged.keySet().retainAll(survived);
+        retry.stageCalls.clear();
+
+        StagedBlockOutputStream stream = newStream(retry, survived);
+        stream.write(data);
+        stream.close();
+
+        assertEquals(firstAttempt.committed, retry.committed);
+        assertEquals(4, retry.stageCalls.size());
+        assertEquals(4L * BLOCK_SIZE, stream.getSkippedBytes());
+        assertArrayEquals(data, retry.committedBytes());
+    }
+
+    @Test
+    void testFailedBlockPreventsTheCommit() {
+        FakeBlob blob = new FakeBlob();
+        blob.failAtOffsetPrefix = String.format("%016x", 2L * BLOCK_SIZE);
+
+        StagedBlockOutputStream stream = newStream(blob, Collections.emptySet());
+        IOException failure = assertThrows(IOException.class, () -> {
+            stream.write(randomBytes(4 * BLOCK_SIZE));
+            stream.close();
+        });
+
+        assertTrue(failure.getMessage().contains("offset " + 2L * BLOCK_SIZE));
+        assertNull(blob.committed);
+    }
+
+    @Test
+    void testOutputWithinOneBlockIsUploadedInOnePut() throws IOException {
+        byte[] data = randomBytes(BLOCK_SIZE - 1);
+        FakeBlob blob = new FakeBlob();
+
+        try (StagedBlockOutputStream stream = newStream(blob, Collections.emptySet())) {
+            stream.write(data);
+        }
+
+        assertTrue(blob.stageCalls.isEmpty());
+        assertNull(blob.committed);
+        assertArrayEquals(data, blob.uploaded);
+        assertArrayEquals(md5(data), blob.uploadedMd5);
+    }
+
+    @Test
+    void testProgressReportsContiguousStagedBytes() throws IOException {
+        List<Long> progress = Collections.synchronizedList(new ArrayList<>());
+        StagedBlockOutputStream stream = new StagedBlockOutputStream(new FakeBlob(), Collections.emptySet(), 1024, 1,
+                progress::add, executor);
+
+        stream.write(randomBytes(40 * 1024));
+        stream.close();
+
+        // A report still waiting when the next is due is replaced by it, so only the last count is certain.
+        assertFalse(progress.isEmpty());
+        assertTrue(List.of(List.of(16L * 1024, 32L * 1024), List.of(32L * 1024)).contains(progress));
+    }
+
+    @Test
+    void testSlowOrFailingProgressDoesNotHoldUpTheWriter() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> progress = Collections.synchronizedList(new ArrayList<>());
+        FakeBlob blob = new FakeBlob();
+        StagedBlockOutputStream stream = new StagedBlockOutputStream(blob, Collections.emptySet(), 1024, 1,
+                stagedBytes -> {
+                    progress.add(stagedBytes);
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IllegalStateException("table unavailable");
+                }, executor);
+
+        byte[] data = randomBytes(80 * 1024);
+        // The first report blocks until released; the writer must not wait for it.
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> stream.write(data));
+        release.countDown();
+        stream.close();
+
+        assertArrayEquals(data, blob.committedBytes());
+        // The reports due while the first was blocked collapse into one, which close may drop before it runs.
+        assertTrue(List.of(List.of(16L * 1024), List.of(16L * 1024, 64L * 1024)).contains(progress));
+    }
+
+    private StagedBlockOutputStream newStream(FakeBlob blob, Set<String> alreadyStaged) {
+        return new StagedBlockOutputStream(blob, alreadyStaged, BLOCK_SIZE, 3, bytes -> { }, executor);
+    }
+
+    private static byte[] md5(byte[] data) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static final class FakeBlob implements StagedBlockOutputStream.BlockStager {
+        final Map<String, byte[]> staged = new ConcurrentHashMap<>();
+        final Set<String> stageCalls = ConcurrentHashMap.newKeySet();
+        volatile String failAtOffsetPrefix;
+        List<String> committed;
+        byte[] uploaded;
+        byte[] uploadedMd5;
+
+        @Override
+        public void stage(String blockId, byte[] data, int length, byte[] md5) {
+            String id = new String(Base64.getDecoder().decode(blockId));
+            if (failAtOffsetPrefix != null && id.startsWith(failAtOffsetPrefix)) {
+                throw new IllegalStateException("connection reset");
+            }
+            stageCalls.add(blockId);
+            staged.put(blockId, Arrays.copyOf(data, length));
+        }
+
+        @Override
+        public void commit(List<String> blockIds) {
+            committed = new ArrayList<>(blockIds);
+        }
+
+        @Override
+        public void upload(byte[] data, int length, byte[] md5) {
+            uploaded = Arrays.copyOf(data, length);
+            uploadedMd5 = md5;
+        }
+
+        byte[] committedBytes() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (String blockId : committed) {
+                out.writeBytes(staged.get(blockId));
+            }
+            return out.toByteArray();
+        }
+    }
+}
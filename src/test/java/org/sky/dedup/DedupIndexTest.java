@@ -0,0 +1,75 @@
+package org.sky.dedup;
+
+import org.junit.jupiter.api.Test;
+import org.sky.model.DedupRecord;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DedupIndexTest {
+
+    private final Map<String, DedupRecord> table = new HashMap<>();
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private DedupIndex newIndex(int cacheCapacity) {
+        return new DedupIndex(key -> {
+            lookups.incrementAndGet();
+            return table.get(key);
+        }, record -> table.put(record.getKey(), record), cacheCapacity);
+    }
+
+    @Test
+    void testRecordedBlobIsFoundWithoutAskingTheTable() {
+        DedupIndex index = newIndex(10);
+        index.record(new DedupRecord("sha256-aa", "in/a.csv.pgp", "20240101000000-in/a.csv", 42));
+
+        DedupRecord found = index.find("sha256-aa");
+
+        assertEquals("20240101000000-in/a.csv", found.getDecryptedBlobName());
+        assertTrue(table.containsKey("sha256-aa"));
+        assertEquals(0, lookups.get());
+        assertEquals(1, index.getCacheHitCount());
+    }
+
+    @Test
+    void testMissesAlwaysGoToTheTable() {
+        DedupIndex index = newIndex(10);
+
+        assertNull(index.find("sha256-bb"));
+        // Written by another instance after the first miss.
+        table.put("sha256-bb", new DedupRecord("sha256-bb", "b.pgp", "b", 1));
+
+        assertNotNull(index.find("sha256-bb"));
+        assertNotNull(index.find("sha256-bb"));
+        assertEquals(2, lookups.get());
+        assertEquals(2, index.getTableLookupCount());
+    }
+
+    @Test
+    void testLeastRecentlyUsedRecordIsEvicted() {
+        DedupIndex index = newIndex(2);
+        index.record(new DedupRecord("k1", "1.pgp", "1", 1));
+        index.record(new DedupRecord("k2", "2.pgp", "2", 1));
+        index.find("k1");
+        index.record(new DedupRecord("k3", "3.pgp", "3", 1));
+
+        index.find("k1");
+        index.find("k3");
+        assertEquals(0, lookups.get());
+        index.find("k2");
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    void testFailedLookupCountsAsAMiss() {
+        DedupIndex index = new DedupIndex(key -> {
+            throw new IllegalStateException("503 Server Busy");
+        }, record -> { }, 10);
+
+        assertNull(index.find("sha256-cc"));
+        assertEquals(1, index.getTableLookupCount());
+    }
+}
@@ -0,0 +1,137 @@
+package org.sky.events;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventLogTest {
+
+    private final List<Level> levels = new ArrayList<>();
+    private final List<String> records = new ArrayList<>();
+    private final List<Throwable> errors = new ArrayList<>();
+
+    private EventLog newLog(int ringCapacity) {
+        return new EventLog((level, text, error) -> {
+            levels.add(level);
+            records.add(text);
+            errors.add(error);
+        }, ringCapacity);
+    }
+
+    @Test
+    void testEventsAreBufferedUntilFlushAndWrittenAsOneRecord() {
+        EventLog log = newLog(16);
+        log.append(EventType.BLOB_RECEIVED, "in/data.csv.pgp", 2048, "trigger=blob");
+        log.append(EventType.UPLOADED, "out/data_20240101000000.csv", 4096, null);
+        assertTrue(records.isEmpty());
+
+        log.flush();
+
+        assertEquals(1, records.size());
+        assertEquals(Level.INFO, levels.get(0));
+        String[] lines = records.get(0).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("BLOB_RECEIVED blob received: in/data.csv.pgp size_bytes=2048 trigger=blob"));
+        assertTrue(lines[1].contains("UPLOADED uploaded: out/data_20240101000000.csv size_bytes=4096"));
+    }
+
+    @Test
+    void testEventsBelowTheConfiguredLevelAreDiscarded() {
+        EventLog log = newLog(16);
+        log.append(EventType.STAGE_STARTED, "keys", 0, null);
+        log.configure(EventLevel.WARN, 1);
+        log.append(EventType.UPLOADED, "out.csv", 1, null);
+        log.append(EventType.TEMP_FILE_DELETE_FAILED, "tmp.pgp", 0, "in use");
+        log.flush();
+
+        assertEquals(1, records.size());
+        assertEquals(Level.WARNING, levels.get(0));
+        assertTrue(records.get(0).contains("TEMP_FILE_DELETE_FAILED"));
+        assertFalse(records.get(0).contains("UPLOADED"));
+        assertFalse(log.accepts(EventLevel.INFO));
+        assertTrue(log.accepts(EventLevel.WARN));
+        assertTrue(log.accepts(EventLevel.ERROR));
+    }
+
+    @Test
+    void testVerboseEventsAreSampledOneInN() {
+        EventLog log = newLog(64);
+        log.configure(EventLevel.VERBOSE, 10);
+        for (int i = 0; i < 30; i++) {
+            log.append(EventType.PROGRESS, null, i, null);
+        }
+        log.flush();
+
+        String[] lines = records.get(0).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].contains("processed_mb=10"));
+        assertEquals(Level.INFO, levels.get(0));
+    }
+
+    @Test
+    void testErrorsAreWrittenAtOnceAfterThePendingEvents() {
+        EventLog log = newLog(16);
+        log.configure(EventLevel.ERROR, 1);
+        log.append(EventType.BLOB_RECEIVED, "skipped.pgp", 1, null);
+        log.configure(EventLevel.INFO, 1);
+        log.append(EventType.BLOB_RECEIVED, "broken.pgp", 10, null);
+        IllegalStateException failure = new IllegalStateException("bad packet");
+
+        log.appendError(EventType.DECRYPTION_FAILED, "broken.pgp", 10, failure);
+
+        assertEquals(2, records.size());
+        assertTrue(records.get(0).contains("BLOB_RECEIVED blob received: broken.pgp"));
+        assertFalse(records.get(0).contains("skipped.pgp"));
+        assertEquals(Level.SEVERE, levels.get(1));
+        assertTrue(records.get(1).contains("DECRYPTION_FAILED decryption failed: broken.pgp size_bytes=10"));
+        assertSame(failure, errors.get(1));
+    }
+
+    @Test
+    void testFullRingDropsNewEventsAndReportsTheCount() {
+        EventLog log = newLog(4);
+        for (int i = 0; i < 7; i++) {
+            log.append(EventType.UPLOADED, "blob-" + i, i, null);
+        }
+        assertEquals(3, log.getDroppedCount());
+
+        log.flush();
+
+        String[] lines = records.get(0).split("\n");
+        assertEquals(5, lines.length);
+        assertTrue(lines[3].contains("blob-3"));
+        assertEquals("3 events dropped: ring buffer full", lines[4]);
+        assertEquals(Level.WARNING, levels.get(0));
+        assertEquals(0, log.getDroppedCount());
+
+        log.append(EventType.UPLOADED, "blob-7", 7, null);
+        log.flush();
+        assertTrue(records.get(1).contains("blob-7"));
+    }
+
+    @Test
+    void testEventsFromSeveralThreadsAreWrittenInTheOrderTheyHappened() throws Exception {
+        EventLog log = newLog(16);
+        log.append(EventType.BATCH_RECEIVED, "batch", 2, null);
+        Thread worker = new Thread(() -> log.append(EventType.UPLOADED, "from-worker", 1, null), "worker-1");
+        worker.start();
+        worker.join();
+        log.append(EventType.BATCH_FINISHED, "batch", 0, null);
+
+        log.flush();
+
+        String[] lines = records.get(0).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].contains("BATCH_RECEIVED"));
+        assertTrue(lines[1].contains("from-worker") && lines[1].endsWith("[worker-1]"));
+        assertTrue(lines[2].contains("BATCH_FINISHED"));
+
+        // The worker's ring is released once it has been drained after the thread ended.
+        log.flush();
+        assertEquals(1, records.size());
+    }
+}
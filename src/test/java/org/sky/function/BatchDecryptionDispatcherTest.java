@@ -0,0 +1,52 @@
+package org.sky.function;
+
+import org.junit.jupiter.api.Test;
+import org.sky.model.DecryptionLog;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchDecryptionDispatcherTest {
+
+    @Test
+    void testResultsKeepInputOrderAndFailuresDoNotAbortTheBatch() {
+        BatchDecryptionDispatcher dispatcher = new BatchDecryptionDispatcher(3);
+        List<String> urls = Arrays.asList("a", "b", "boom", "c");
+
+        List<DecryptionLog> results = dispatcher.dispatch(urls, url -> {
+            if ("boom".equals(url)) {
+                throw new IllegalStateException("corrupt blob");
+            }
+            return new DecryptionLog(url, "SUCCESS");
+        });
+
+        assertEquals(4, results.size());
+        assertEquals("a", results.get(0).getBlobName());
+        assertEquals("FAILED", results.get(2).getStatus());
+        assertEquals("corrupt blob", results.get(2).getErrorMessage());
+        assertEquals("SUCCESS", results.get(3).getStatus());
+    }
+
+    @Test
+    void testConcurrencyNeverExceedsParallelism() {
+        BatchDecryptionDispatcher dispatcher = new BatchDecryptionDispatcher(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        dispatcher.dispatch(Arrays.asList("1", "2", "3", "4", "5", "6"), url -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return new DecryptionLog(url, "SUCCESS");
+        });
+
+        assertTrue(peak.get() <= 2);
+    }
+}
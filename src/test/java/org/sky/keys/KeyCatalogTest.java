@@ -0,0 +1,105 @@
+package org.sky.keys;
+
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyCatalogTest {
+
+    private static final String SPEC = "encrypted-files/acme/=pgp-key-acme:pgp-pass-acme:00000000000000A1;"
+            + "encrypted-files/acme/eu/=pgp-key-acme-eu:pgp-pass-acme-eu;"
+            + "encrypted-files/globex/=pgp-key-globex:pgp-pass-globex";
+
+    private final List<String> loads = new ArrayList<>();
+    private final KeyCatalog.RingLoader loader = secrets -> {
+        loads.add(secrets.getPrivateKeySecretName());
+        switch (secrets.getPrivateKeySecretName()) {
+            case "pgp-key-acme":
+                return ring(0xA1L, 0xA2L);
+            case "pgp-key-globex":
+                return ring(0xB1L);
+            default:
+                return ring(0xC1L);
+        }
+    };
+
+    @Test
+    void testLongestPrefixPicksTheTenant() {
+        KeyCatalog catalog = KeyCatalog.parse(SPEC, new KeySecretNames("pgp-key-default", "pgp-pass-default"));
+
+        assertEquals("pgp-key-acme-eu", catalog.forPath("encrypted-files/acme/eu/orders.csv.pgp").toString());
+        assertEquals("pgp-key-acme", catalog.forPath("encrypted-files/acme/orders.csv.pgp").toString());
+        assertEquals("pgp-key-default", catalog.forPath("encrypted-files/other/orders.csv.pgp").toString());
+        assertNull(KeyCatalog.parse(SPEC, null).forPath("encrypted-files/other/orders.csv.pgp"));
+    }
+
+    @Test
+    void testKeyOfAnotherTenantIsNeverResolved() throws Exception {
+        KeyCatalog catalog = KeyCatalog.parse(SPEC, null);
+
+        // Encrypted to acme's key but dropped under globex: only globex's ring may be used.
+        assertNull(catalog.resolverFor("encrypted-files/globex/x.pgp", loader).resolve(0xA1L));
+        assertNull(catalog.resolverFor("encrypted-files/unmapped/x.pgp", loader).resolve(0xA1L));
+
+        assertEquals(List.of("pgp-key-globex"), loads);
+    }
+
+    @Test
+    void testDeclaredKeyIdsRestrictTheRoute() throws Exception {
+        KeyCatalog catalog = KeyCatalog.parse(SPEC, null);
+
+        assertNull(catalog.resolverFor("encrypted-files/acme/x.pgp", loader).resolve(0xA2L));
+        assertTrue(loads.isEmpty());
+
+        PGPPrivateKey key = catalog.resolverFor("encrypted-files/acme/x.pgp", loader).resolve(0xA1L);
+        assertEquals(0xA1L, key.getKeyID());
+        assertEquals(List.of("pgp-key-acme"), loads);
+    }
+
+    @Test
+    void testCatalogueIsSharedOnlyByIdenticalSettings() {
+        KeySecretNames secrets = new KeySecretNames("pgp-key-default", "pgp-pass-default");
+
+        assertSame(KeyCatalog.forSpec(SPEC, secrets),
+                KeyCatalog.forSpec(SPEC, new KeySecretNames("pgp-key-default", "pgp-pass-default")));
+        KeyCatalog otherPassphrase = KeyCatalog.forSpec(SPEC, new KeySecretNames("pgp-key-default", "pgp-pass-new"));
+        assertNotSame(KeyCatalog.forSpec(SPEC, secrets), otherPassphrase);
+        assertEquals("pgp-pass-new",
+                otherPassphrase.forPath("encrypted-files/other/x.pgp").getPassphraseSecretName());
+        assertNotEquals(secrets, new KeySecretNames("pgp-key-default", null));
+        assertEquals(new KeySecretNames("pgp-key-default", null), new KeySecretNames("pgp-key-default", null));
+    }
+
+    @Test
+    void testMalformedEntryIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> KeyCatalog.parse("encrypted-files/acme/=only-one", null));
+        assertThrows(IllegalArgumentException.class, () -> KeyCatalog.parse("", null));
+    }
+
+    @Test
+    void testSettingsNeedBothSecretNamesOrACatalogue() {
+        IllegalArgumentException halfSet = assertThrows(IllegalArgumentException.class,
+                () -> KeyCatalog.forSettings(SPEC, "pgp-key-default", null));
+        assertTrue(halfSet.getMessage().contains("PGP_PASSPHRASE_SECRET_NAME"));
+        assertThrows(IllegalArgumentException.class, () -> KeyCatalog.forSettings(null, null, "pgp-pass-default"));
+        assertThrows(IllegalArgumentException.class, () -> KeyCatalog.forSettings(null, null, null));
+
+        assertNull(KeyCatalog.forSettings(SPEC, null, null).forPath("encrypted-files/other/x.pgp"));
+        assertEquals("pgp-pass-default", KeyCatalog.forSettings(null, "pgp-key-default", "pgp-pass-default")
+                .forPath("encrypted-files/other/x.pgp").getPassphraseSecretName());
+    }
+
+    private static UnlockedKeyRing ring(long... keyIds) {
+        Map<Long, PGPPrivateKey> keys = new HashMap<>();
+        for (long keyId : keyIds) {
+            keys.put(keyId, new PGPPrivateKey(keyId, null, null));
+        }
+        return new UnlockedKeyRing("v1", keys);
+    }
+}
@@ -0,0 +1,140 @@
+package org.sky.keys;
+
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sky.model.VersionedSecret;
+import org.sky.utils.PGPTestFixtures;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PGPKeyCacheTest {
+
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private String keyVersion = "v1";
+    private PGPSecretKey secretKey;
+    private String encodedKey;
+    private PGPKeyCache cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        secretKey = PGPTestFixtures.generateSecretKey("cachepass");
+        encodedKey = Base64.getEncoder().encodeToString(secretKey.getEncoded());
+        cache = new PGPKeyCache(name -> {
+            loads.incrementAndGet();
+            return name.equals("key")
+                    ? new VersionedSecret(name, keyVersion, encodedKey)
+                    : new VersionedSecret(name, "p1", "cachepass");
+        }, TTL, Runnable::run, clock::get);
+    }
+
+    @Test
+    void testSecondLookupIsServedFromCache() {
+        UnlockedKeyRing first = cache.get("key", "pass");
+        UnlockedKeyRing second = cache.get("key", "pass");
+
+        assertSame(first, second);
+        assertNotNull(first.resolve(secretKey.getKeyID()));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testRefreshAheadKeepsUnlockedKeysWhenVersionIsUnchanged() {
+        UnlockedKeyRing first = cache.get("key", "pass");
+        clock.addAndGet(TTL.toNanos() * 9 / 10);
+
+        UnlockedKeyRing refreshed = cache.get("key", "pass");
+        clock.addAndGet(TTL.toNanos() / 2);
+
+        assertSame(first, refreshed);
+        assertSame(first, cache.get("key", "pass"));
+        assertEquals(1, cache.getRefreshCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void testExpiredEntryReloadsNewSecretVersion() {
+        UnlockedKeyRing first = cache.get("key", "pass");
+        keyVersion = "v2";
+        clock.addAndGet(TTL.toNanos());
+
+        UnlockedKeyRing reloaded = cache.get("key", "pass");
+
+        assertNotSame(first, reloaded);
+        assertEquals("v2|p1", reloaded.getVersion());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void testInvalidateForcesReload() {
+        cache.get("key", "pass");
+        cache.invalidate("key", "pass");
+        cache.get("key", "pass");
+
+        assertEquals(2, cache.getMissCount());
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void testConcurrentMissesShareOneLoadAndOtherKeysAreNotBlocked() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        PGPKeyCache slowCache = new PGPKeyCache(name -> {
+            loads.incrementAndGet();
+            if (name.equals("slow-key")) {
+                loadStarted.countDown();
+                awaitQuietly(releaseLoad);
+            }
+            return name.endsWith("key")
+                    ? new VersionedSecret(name, "v1", encodedKey)
+                    : new VersionedSecret(name, "p1", "cachepass");
+        }, TTL, Runnable::run, clock::get);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<UnlockedKeyRing> first = callers.submit(() -> slowCache.get("slow-key", "pass"));
+            assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+            Future<UnlockedKeyRing> second = callers.submit(() -> slowCache.get("slow-key", "pass"));
+
+            assertNotNull(assertTimeoutPreemptively(Duration.ofSeconds(5), () -> slowCache.get("key", "pass")));
+
+            releaseLoad.countDown();
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            // slow-key and its passphrase once, then key and its passphrase.
+            assertEquals(4, loads.get());
+        } finally {
+            releaseLoad.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCachePerVaultHonoursTheRequestedTtl() {
+        String vault = "https://ttltest.vault.azure.net";
+
+        assertSame(PGPKeyCache.forVault(vault, TTL), PGPKeyCache.forVault(vault, TTL));
+        assertNotSame(PGPKeyCache.forVault(vault, TTL), PGPKeyCache.forVault(vault, TTL.multipliedBy(2)));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
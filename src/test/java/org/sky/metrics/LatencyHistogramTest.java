@@ -0,0 +1,57 @@
+package org.sky.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 1000; millis++) {
+            histogram.record(millis * 1_000_000, 1024 * 1024);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+
+        assertEquals(1000, snapshot.getCount());
+        assertWithin(500_000_000L, snapshot.getValueAtPercentile(50));
+        assertWithin(950_000_000L, snapshot.getValueAtPercentile(95));
+        assertWithin(990_000_000L, snapshot.getValueAtPercentile(99));
+        assertEquals(1_000_000_000L, snapshot.getMaxNanos());
+    }
+
+    @Test
+    void testSnapshotStartsTheNextInterval() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5_000, 0);
+        histogram.snapshotAndReset();
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+    }
+
+    @Test
+    void testThroughputIsBytesOverRecordedTime() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(500_000_000, 50L * 1024 * 1024);
+        histogram.record(500_000_000, 50L * 1024 * 1024);
+
+        assertEquals(100.0, histogram.snapshotAndReset().getMegabytesPerSecond(), 0.001);
+    }
+
+    @Test
+    void testEveryBucketMapsBackToItsOwnRange() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789, Long.MAX_VALUE}) {
+            long reported = LatencyHistogram.bucketValue(LatencyHistogram.bucketIndex(value));
+            assertEquals(LatencyHistogram.bucketIndex(value), LatencyHistogram.bucketIndex(reported), "value " + value);
+        }
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected * 0.0625, "expected ~" + expected + " but was " + actual);
+    }
+}
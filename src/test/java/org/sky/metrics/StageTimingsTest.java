@@ -0,0 +1,46 @@
+package org.sky.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StageTimingsTest {
+
+    @Test
+    void testCompactFormKeepsStageOrderInMilliseconds() {
+        StageTimings timings = new StageTimings();
+        timings.record(StageTimings.KEYS, 400_000);
+        timings.record(StageTimings.DECRYPT, 801_340_000, 1024);
+        timings.record(StageTimings.UPLOAD, 10_000_000);
+        timings.record(StageTimings.UPLOAD, 2_500_000);
+
+        assertEquals("keys=0.4;decrypt=801.3;upload=12.5", timings.toString());
+        assertEquals(1024, timings.getBytes(StageTimings.DECRYPT));
+    }
+
+    @Test
+    void testNegativeDurationsAreRecordedAsZero() {
+        StageTimings timings = new StageTimings();
+        timings.record(StageTimings.DECRYPT, -5);
+
+        assertEquals(0, timings.getNanos(StageTimings.DECRYPT));
+    }
+
+    @Test
+    void testExportReportsEachStageOncePerInterval() {
+        StageMetrics metrics = new StageMetrics();
+        StageTimings timings = new StageTimings();
+        timings.record(StageTimings.KEYS, 1_000_000);
+        timings.record(StageTimings.UPLOAD, 1_000_000_000, 200L * 1024 * 1024);
+        metrics.record(timings);
+
+        List<String> lines = metrics.export();
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).startsWith("Stage upload: count=1 p50="), lines.get(1));
+        assertTrue(lines.get(1).endsWith("throughput=200.0 MB/s"), lines.get(1));
+        assertTrue(metrics.export().isEmpty());
+    }
+}
@@ -0,0 +1,97 @@
+package org.sky.model;
+
+import com.azure.data.tables.models.TableEntity;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecryptionLogTest {
+
+    @Test
+    void testPartitionKeyIsHourBucketPlusShard() {
+        Instant instant = Instant.parse("2026-03-04T05:06:07Z");
+
+        assertEquals("2026030405-03", DecryptionLog.partitionKey(instant, 3));
+    }
+
+    @Test
+    void testRowKeysSortNewestFirst() {
+        String older = DecryptionLog.rowKeyPrefix(Instant.parse("2026-03-04T05:06:07Z"));
+        String newer = DecryptionLog.rowKeyPrefix(Instant.parse("2026-03-04T05:06:08Z"));
+
+        assertEquals(19, older.length());
+        assertTrue(newer.compareTo(older) < 0);
+    }
+
+    @Test
+    void testIndexEntityPointsToLogEntity() {
+        DecryptionLog log = new DecryptionLog("folder/report #1.csv.pgp", "SUCCESS");
+        log.setFileSizeBytes(42L);
+
+        TableEntity entity = log.toTableEntity();
+        TableEntity index = log.toIndexEntity();
+
+        assertTrue(index.getPartitionKey().matches("blob-0[0-7]"), index.getPartitionKey());
+        assertEquals(DecryptionLog.indexRowKeyPrefix("folder/report #1.csv.pgp") + entity.getRowKey(),
+                index.getRowKey());
+        assertFalse(index.getRowKey().matches(".*[/\\\\#?].*"));
+        assertEquals(entity.getPartitionKey(), index.getProperty("LogPartitionKey"));
+        assertEquals(entity.getRowKey(), DecryptionLog.fromTableEntity(index).getRowKey());
+    }
+
+    @Test
+    void testIndexKeysStayBoundedForLongNames() {
+        TableEntity index = new DecryptionLog("in/" + "a".repeat(2000) + ".pgp", "SUCCESS").toIndexEntity();
+
+        assertTrue(index.getPartitionKey().length() < 10);
+        assertTrue(index.getRowKey().length() < 200, index.getRowKey());
+    }
+
+    @Test
+    void testFromTableEntityRestoresLog() {
+        DecryptionLog log = new DecryptionLog("data.csv.pgp", "FAILED");
+        log.setErrorMessage("boom");
+        log.setStageTimings("keys=0.4;decrypt=12.0");
+
+        DecryptionLog restored = DecryptionLog.fromTableEntity(log.toTableEntity());
+
+        assertEquals("data.csv.pgp", restored.getBlobName());
+        assertEquals("FAILED", restored.getStatus());
+        assertEquals("boom", restored.getErrorMessage());
+        assertEquals("keys=0.4;decrypt=12.0", restored.getStageTimings());
+        assertNull(restored.getFileSizeBytes());
+        assertEquals(log.getRowKey(), restored.getRowKey());
+        assertEquals(log.getPartitionKey(), restored.getPartitionKey());
+    }
+
+    @Test
+    void testDuplicateEntryPointsToExistingDecryptedBlob() {
+        DecryptionLog log = new DecryptionLog("resent.csv.pgp", "DUPLICATE");
+        log.setDuplicateOf("20240101000000-data.csv");
+
+        DecryptionLog restored = DecryptionLog.fromTableEntity(log.toTableEntity());
+
+        assertEquals("DUPLICATE", restored.getStatus());
+        assertEquals("20240101000000-data.csv", restored.getDuplicateOf());
+    }
+
+    @Test
+    void testUploadedContentIsStoredForConsumers() {
+        byte[] md5 = new byte[16];
+        byte[] sha256 = new byte[32];
+        sha256[0] = (byte) 0xab;
+        BlobContent content = BlobContent.encoded(new PlaintextChecksum(new byte[16], sha256), "gzip", 1000, md5);
+        DecryptionLog log = new DecryptionLog("data.csv.pgp", "SUCCESS");
+        log.setUploadedBlob(new UploadedBlob("20240101000000-data.csv.gz", 120, content));
+
+        DecryptionLog restored = DecryptionLog.fromTableEntity(log.toTableEntity());
+
+        assertEquals("AAAAAAAAAAAAAAAAAAAAAA==", restored.getContentMd5());
+        assertEquals("ab" + "0".repeat(62), restored.getContentSha256());
+        assertEquals("gzip", restored.getContentEncoding());
+        assertEquals(1000L, restored.getPlaintextSizeBytes());
+        assertEquals(120L, restored.getStoredSizeBytes());
+    }
+}
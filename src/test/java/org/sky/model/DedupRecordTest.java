@@ -0,0 +1,44 @@
+package org.sky.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DedupRecordTest {
+
+    @Test
+    void testKeysAreValidTableKeys() throws Exception {
+        String etagKey = DedupRecord.etagKey("folder/report #1.csv.pgp", "\"0x8DC1234ABCD\"");
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest("abc".getBytes(StandardCharsets.UTF_8));
+        String contentKey = DedupRecord.contentKey(digest);
+
+        assertFalse(etagKey.matches(".*[/\\\\#?\"].*"));
+        assertTrue(etagKey.endsWith("-0x8DC1234ABCD"));
+        assertEquals("sha256-ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", contentKey);
+        assertTrue(DedupRecord.partitionKey(contentKey).matches("dedup-0[0-7]"));
+    }
+
+    @Test
+    void testLongBlobNamesStayWithinTheKeyLimit() {
+        String etagKey = DedupRecord.etagKey("in/" + "a".repeat(2000) + ".pgp", "\"0x8DC1234ABCD\"");
+
+        assertTrue(etagKey.length() < 100, etagKey);
+        assertNotEquals(etagKey, DedupRecord.etagKey("in/" + "a".repeat(1999) + ".pgp", "\"0x8DC1234ABCD\""));
+    }
+
+    @Test
+    void testFromTableEntityRestoresRecord() {
+        DedupRecord record = new DedupRecord("sha256-ab", "in/data.csv.pgp", "20240101000000-in/data.csv", 1234);
+
+        DedupRecord restored = DedupRecord.fromTableEntity(record.toTableEntity());
+
+        assertEquals("sha256-ab", restored.getKey());
+        assertEquals("in/data.csv.pgp", restored.getSourceBlobName());
+        assertEquals("20240101000000-in/data.csv", restored.getDecryptedBlobName());
+        assertEquals(1234, restored.getSizeBytes());
+        assertEquals(record.getProcessedAt(), restored.getProcessedAt());
+    }
+}
@@ -0,0 +1,191 @@
+package org.sky.utils;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.archivers.zip.UnixStat;
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveFormatTest {
+
+    private static final Map<String, String> ENTRIES = new LinkedHashMap<>();
+
+    static {
+        ENTRIES.put("reports/2024/ledger.csv", "id,amount\n1,10\n".repeat(20_000));
+        ENTRIES.put("readme.txt", "hello");
+    }
+
+    @Test
+    void testArchivesAreDetectedAndReadFromTheStart() throws Exception {
+        byte[] tar = tar();
+        Map<ArchiveFormat, byte[]> archives = new LinkedHashMap<>();
+        archives.put(ArchiveFormat.ZIP, zip());
+        archives.put(ArchiveFormat.TAR, tar);
+        archives.put(ArchiveFormat.TAR_GZIP, gzip(tar));
+
+        for (Map.Entry<ArchiveFormat, byte[]> archive : archives.entrySet()) {
+            InputStream in = new BufferedInputStream(new ByteArrayInputStream(archive.getValue()),
+                ArchiveFormat.DETECT_LIMIT);
+            assertEquals(archive.getKey(), ArchiveFormat.detect(in));
+            assertEquals(extract(archive.getKey().open(in)), ENTRIES, archive.getKey().name());
+        }
+    }
+
+    @Test
+    void testOtherPlaintextIsNotAnArchiveAndIsLeftUnread() throws Exception {
+        byte[] csv = "id,amount\n1,10\n".getBytes(StandardCharsets.UTF_8);
+        for (byte[] plaintext : new byte[][]{csv, gzip(csv), new byte[0]}) {
+            InputStream in = new BufferedInputStream(new ByteArrayInputStream(plaintext), ArchiveFormat.DETECT_LIMIT);
+            assertNull(ArchiveFormat.detect(in));
+            assertArrayEquals(plaintext, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void testEntryNamesBecomeRelativeBlobPaths() {
+        assertEquals("a/b.csv", ArchiveFormat.safePath("./a//b.csv"));
+        assertEquals("a/b.csv", ArchiveFormat.safePath("/a\\b.csv"));
+        assertNull(ArchiveFormat.safePath("../etc/passwd"));
+        assertNull(ArchiveFormat.safePath("a/../../b"));
+        assertNull(ArchiveFormat.safePath("./"));
+    }
+
+    @Test
+    void testLinksAndSpecialEntriesAreNotFiles() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(bytes)) {
+            TarArchiveEntry link = new TarArchiveEntry("latest.csv", TarConstants.LF_SYMLINK);
+            link.setLinkName("reports/2024/ledger.csv");
+            tar.putArchiveEntry(link);
+            tar.closeArchiveEntry();
+            tar.putArchiveEntry(new TarArchiveEntry("queue", TarConstants.LF_FIFO));
+            tar.closeArchiveEntry();
+        }
+        assertTrue(extract(ArchiveFormat.TAR.open(new ByteArrayInputStream(bytes.toByteArray()))).isEmpty());
+
+        assertFalse(ArchiveFormat.isFile(zipEntry("latest.csv", UnixStat.LINK_FLAG | 0777)));
+        assertFalse(ArchiveFormat.isFile(zipEntry("queue", 010644)));
+        assertTrue(ArchiveFormat.isFile(zipEntry("ledger.csv", UnixStat.FILE_FLAG | 0644)));
+        assertTrue(ArchiveFormat.isFile(new ZipArchiveEntry("made-on-windows.csv")));
+    }
+
+    @Test
+    void testStreamedZipLinksAreFoundInTheCentralDirectory() throws Exception {
+        for (Zip64Mode zip64 : new Zip64Mode[]{Zip64Mode.AsNeeded, Zip64Mode.Always}) {
+            ZipTailInputStream tail = new ZipTailInputStream(
+                    new ByteArrayInputStream(zipWithLink(zip64)), 1024 * 1024);
+            InputStream in = new BufferedInputStream(tail, ArchiveFormat.DETECT_LIMIT);
+            assertEquals(ArchiveFormat.ZIP, ArchiveFormat.detect(in));
+            // Local headers do not carry the mode, so the link streams past as an ordinary entry.
+            assertEquals(Set.of("reports/2024/ledger.csv", "readme.txt", "latest.csv"),
+                    extract(ArchiveFormat.ZIP.open(in)).keySet());
+            in.transferTo(OutputStream.nullOutputStream());
+
+            Map<String, Integer> modes = tail.unixModes();
+            assertFalse(ArchiveFormat.isRegularFileMode(modes.get("latest.csv")), zip64.name());
+            assertTrue(ArchiveFormat.isRegularFileMode(modes.get("readme.txt")), zip64.name());
+            assertTrue(ArchiveFormat.isRegularFileMode(modes.get("reports/2024/ledger.csv")), zip64.name());
+        }
+    }
+
+    @Test
+    void testCentralDirectoryBeyondTheKeptTailIsReported() throws Exception {
+        ZipTailInputStream tail = new ZipTailInputStream(
+                new ByteArrayInputStream(zipWithLink(Zip64Mode.AsNeeded)), 100);
+        tail.transferTo(OutputStream.nullOutputStream());
+        assertThrows(IOException.class, tail::unixModes);
+    }
+
+    private static ZipArchiveEntry zipEntry(String name, int unixMode) {
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setUnixMode(unixMode);
+        return entry;
+    }
+
+    private static byte[] zipWithLink(Zip64Mode zip64) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipArchiveOutputStream zip = new ZipArchiveOutputStream(bytes)) {
+            zip.setUseZip64(zip64);
+            for (Map.Entry<String, String> entry : ENTRIES.entrySet()) {
+                zip.putArchiveEntry(zipEntry(entry.getKey(), UnixStat.FILE_FLAG | 0644));
+                zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeArchiveEntry();
+            }
+            zip.putArchiveEntry(zipEntry("latest.csv", UnixStat.LINK_FLAG | 0777));
+            zip.write("reports/2024/ledger.csv".getBytes(StandardCharsets.UTF_8));
+            zip.closeArchiveEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, String> extract(ArchiveInputStream<? extends ArchiveEntry> archive) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        ArchiveEntry entry;
+        while ((entry = archive.getNextEntry()) != null) {
+            if (ArchiveFormat.isFile(entry)) {
+                entries.put(entry.getName(), new String(archive.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        return entries;
+    }
+
+    private static byte[] zip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("reports/"));
+            zip.closeEntry();
+            for (Map.Entry<String, String> entry : ENTRIES.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] tar() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(bytes)) {
+            tar.putArchiveEntry(new TarArchiveEntry("reports/"));
+            tar.closeArchiveEntry();
+            for (Map.Entry<String, String> entry : ENTRIES.entrySet()) {
+                byte[] data = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                TarArchiveEntry tarEntry = new TarArchiveEntry(entry.getKey());
+                tarEntry.setSize(data.length);
+                tar.putArchiveEntry(tarEntry);
+                tar.write(data);
+                tar.closeArchiveEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,68 @@
+package org.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPipeTest {
+
+    @Test
+    void testBytesArriveInOrderAcrossThreads() throws Exception {
+        BufferPipe pipe = new BufferPipe(2, 1000);
+        byte[] data = new byte[123_457];
+        new Random(7).nextBytes(data);
+
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try (OutputStream sink = pipe.sink()) {
+                for (int offset = 0; offset < data.length; offset += 777) {
+                    sink.write(data, offset, Math.min(777, data.length - offset));
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        pipe.source().transferTo(received);
+        writer.join();
+
+        assertArrayEquals(data, received.toByteArray());
+    }
+
+    @Test
+    void testFailureWakesBlockedWriter() {
+        BufferPipe pipe = new BufferPipe(1, 10);
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try {
+                // Only one buffer and no reader: the second buffer-full blocks until the pipe fails.
+                pipe.sink().write(new byte[100]);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        pipe.fail(new IllegalArgumentException("upload failed"));
+
+        Exception error = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(Exception.class, writer::join));
+        assertTrue(error.getCause().getCause().getCause() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    void testFailureReachesReader() {
+        BufferPipe pipe = new BufferPipe(1, 10);
+        pipe.fail(new IllegalStateException("decrypt failed"));
+        InputStream source = pipe.source();
+
+        IOException error = assertThrows(IOException.class, source::read);
+        assertEquals("decrypt failed", error.getCause().getMessage());
+    }
+}
@@ -0,0 +1,69 @@
+package org.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferPoolTest {
+
+    @Test
+    void testReleasedBufferIsReusedForTheSameSizeClass() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+
+        byte[] first = pool.acquire(40_000);
+        assertEquals(64 * 1024, first.length);
+        pool.release(first);
+        assertEquals(64 * 1024, pool.getRetainedBytes());
+
+        assertSame(first, pool.acquire(33_000));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    void testRetainedBytesNeverExceedTheBudget() {
+        BufferPool pool = new BufferPool(100 * 1024);
+
+        pool.release(pool.acquire(64 * 1024));
+        pool.release(new byte[64 * 1024]);
+        pool.release(new byte[32 * 1024]);
+
+        assertEquals(96 * 1024, pool.getRetainedBytes());
+    }
+
+    @Test
+    void testBuffersOutsideTheSizeClassesAreNotPooled() {
+        BufferPool pool = new BufferPool(64 * 1024 * 1024);
+
+        pool.release(new byte[50_000]);
+        pool.release(pool.acquire(32 * 1024 * 1024));
+
+        assertEquals(0, pool.getRetainedBytes());
+    }
+
+    @Test
+    void testDirectBuffersArePooledApartFromHeapArrays() {
+        BufferPool pool = new BufferPool(1024 * 1024);
+
+        ByteBuffer direct = pool.acquireDirect(16 * 1024);
+        assertTrue(direct.isDirect());
+        direct.put((byte) 1);
+        pool.release(direct);
+
+        assertEquals(16 * 1024, pool.acquire(16 * 1024).length);
+        ByteBuffer reused = pool.acquireDirect(10_000);
+        assertSame(direct, reused);
+        assertEquals(0, reused.position());
+    }
+
+    @Test
+    void testTransferSizeFollowsBlobLength() {
+        assertEquals(64 * 1024, BufferPool.sizeFor(0));
+        assertEquals(16 * 1024, BufferPool.sizeFor(2_000));
+        assertEquals(64 * 1024, BufferPool.sizeFor(1024 * 1024));
+        assertEquals(1024 * 1024, BufferPool.sizeFor(10L * 1024 * 1024 * 1024));
+    }
+}
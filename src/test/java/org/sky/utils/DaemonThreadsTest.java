@@ -0,0 +1,56 @@
+package org.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DaemonThreadsTest {
+
+    @Test
+    void testBoundedPoolQueuesPastItsLimit() throws Exception {
+        ExecutorService pool = DaemonThreads.boundedPool("test-bounded", 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Future<Boolean>> tasks = new ArrayList<>();
+
+        for (int i = 0; i < 8; i++) {
+            tasks.add(pool.submit(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(20);
+                running.decrementAndGet();
+                return Thread.currentThread().isDaemon();
+            }));
+        }
+        for (Future<Boolean> task : tasks) {
+            assertTrue(task.get(5, TimeUnit.SECONDS));
+        }
+
+        assertTrue(peak.get() <= 2);
+        pool.shutdown();
+    }
+
+    @Test
+    void testHandoffPoolRejectsWhenEveryThreadIsBusy() throws Exception {
+        ExecutorService pool = DaemonThreads.handoffPool("test-handoff", 1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> busy = pool.submit(() -> {
+            release.await();
+            return null;
+        });
+
+        assertThrows(RejectedExecutionException.class, () -> pool.submit(() -> null));
+
+        release.countDown();
+        busy.get(5, TimeUnit.SECONDS);
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,108 @@
+package org.sky.utils;
+
+import org.bouncycastle.bcpg.ArmoredOutputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecodingInputStreamTest {
+
+    @Test
+    void testArmoredInputWithHeadersAndChecksumIsDecoded() throws Exception {
+        for (int size : new int[]{1, 2, 3, 1000, 200_003}) {
+            byte[] data = randomBytes(size);
+            byte[] armored = armor(data);
+
+            assertEquals(DecodingInputStream.Encoding.ARMORED, DecodingInputStream.detect(armored, armored.length));
+            assertArrayEquals(data, readAll(DecodingInputStream.decode(new ByteArrayInputStream(armored))),
+                    "size " + size);
+        }
+    }
+
+    @Test
+    void testArmorAfterBomBlankLinesOrPreambleIsDecoded() throws Exception {
+        byte[] data = randomBytes(5000);
+        String armored = new String(armor(data), StandardCharsets.US_ASCII);
+
+        for (String prefix : new String[]{"\uFEFF", "\r\n\n  ", "Exported by partner tool\nversion 2\n\n"}) {
+            byte[] input = (prefix + armored).getBytes(StandardCharsets.UTF_8);
+
+            assertEquals(DecodingInputStream.Encoding.ARMORED, DecodingInputStream.detect(input, input.length));
+            assertArrayEquals(data, readAll(DecodingInputStream.decode(new ByteArrayInputStream(input))),
+                    "prefix " + prefix.trim());
+        }
+    }
+
+    @Test
+    void testCorruptedArmorChecksumIsRejected() throws Exception {
+        String armored = new String(armor(randomBytes(500)), StandardCharsets.US_ASCII);
+        int checksumStart = armored.lastIndexOf("\n=") + 2;
+        char replaced = armored.charAt(checksumStart) == 'A' ? 'B' : 'A';
+        byte[] corrupted = (armored.substring(0, checksumStart) + replaced + armored.substring(checksumStart + 1))
+                .getBytes(StandardCharsets.US_ASCII);
+
+        assertThrows(IOException.class,
+                () -> readAll(DecodingInputStream.decode(new ByteArrayInputStream(corrupted))));
+    }
+
+    @Test
+    void testWrappedAndUnwrappedBase64IsDecoded() throws Exception {
+        byte[] data = randomBytes(100_001);
+        byte[] mime = Base64.getMimeEncoder().encode(data);
+        byte[] plain = Base64.getEncoder().encode(data);
+
+        assertArrayEquals(data, readAll(DecodingInputStream.decode(new ByteArrayInputStream(mime))));
+        assertArrayEquals(data, readAll(DecodingInputStream.decodeBase64(new ByteArrayInputStream(plain))));
+    }
+
+    @Test
+    void testBinaryInputPassesThrough() throws Exception {
+        byte[] data = randomBytes(10_000);
+        data[0] = (byte) 0x85;
+
+        assertEquals(DecodingInputStream.Encoding.BINARY, DecodingInputStream.detect(data, 64));
+        assertArrayEquals(data, readAll(DecodingInputStream.decode(new ByteArrayInputStream(data))));
+    }
+
+    @Test
+    void testInvalidBase64CharacterIsRejected() {
+        byte[] invalid = "QUJD RA==\nQU*D".getBytes(StandardCharsets.US_ASCII);
+
+        assertThrows(IOException.class,
+                () -> readAll(DecodingInputStream.decodeBase64(new ByteArrayInputStream(invalid))));
+    }
+
+    private static byte[] armor(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ArmoredOutputStream armored = ArmoredOutputStream.builder().addComment("test fixture").build(out)) {
+            armored.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[7000];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,107 @@
+package org.sky.utils;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.junit.jupiter.api.Test;
+import org.sky.model.BlobContent;
+import org.sky.model.PlaintextChecksum;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncodingOutputStreamTest {
+
+    private static final byte[] PLAINTEXT = "id,amount\n42,1000\n".repeat(50_000).getBytes(StandardCharsets.UTF_8);
+    private static final PlaintextChecksum CHECKSUM = new PlaintextChecksum(new byte[16], new byte[32]);
+
+    @Test
+    void testGzipAndZstdOutputDecodesAndDescribesTheStoredBytes() throws Exception {
+        for (OutputCodec codec : new OutputCodec[]{OutputCodec.GZIP, OutputCodec.ZSTD}) {
+            for (int workers : new int[]{1, 4}) {
+                TrackingTarget target = new TrackingTarget();
+                EncodingOutputStream stream = new EncodingOutputStream(target, codec, 0, workers);
+                stream.write(PLAINTEXT);
+                stream.close();
+
+                byte[] stored = target.toByteArray();
+                assertArrayEquals(PLAINTEXT, decode(codec, stored), codec + "/" + workers);
+                assertFalse(target.closed, "the upload must stay open until it is committed");
+                BlobContent content = stream.describe(CHECKSUM);
+                assertEquals(codec.getContentEncoding(), content.getContentEncoding());
+                assertEquals(PLAINTEXT.length, content.getPlaintextBytes());
+                assertEquals(stored.length, stream.getEncodedBytes());
+                assertArrayEquals(MessageDigest.getInstance("MD5").digest(stored), content.getContentMd5());
+            }
+        }
+    }
+
+    @Test
+    void testNoCodecPassesThroughAndReusesThePlaintextMd5() throws IOException {
+        TrackingTarget target = new TrackingTarget();
+        EncodingOutputStream stream = new EncodingOutputStream(target, OutputCodec.NONE, 0, 4);
+        stream.write(PLAINTEXT);
+        stream.close();
+
+        assertArrayEquals(PLAINTEXT, target.toByteArray());
+        assertFalse(target.closed);
+        BlobContent content = stream.describe(CHECKSUM);
+        assertNull(content.getContentEncoding());
+        assertArrayEquals(CHECKSUM.getMd5(), content.getContentMd5());
+    }
+
+    @Test
+    void testAbortWritesNothingMoreAndCloseIsThenANoOp() throws IOException {
+        for (OutputCodec codec : new OutputCodec[]{OutputCodec.GZIP, OutputCodec.ZSTD}) {
+            for (int workers : new int[]{1, 4}) {
+                TrackingTarget target = new TrackingTarget();
+                EncodingOutputStream stream = new EncodingOutputStream(target, codec, 0, workers);
+                stream.write(PLAINTEXT);
+                int writtenBeforeAbort = target.size();
+
+                stream.abort();
+                stream.close();
+
+                assertEquals(writtenBeforeAbort, target.size(), codec + "/" + workers);
+                assertFalse(target.closed);
+            }
+        }
+    }
+
+    @Test
+    void testEncodedOutputIsTypedNotContentEncoded() {
+        assertEquals("application/gzip", OutputCodec.GZIP.getContentType());
+        assertEquals("application/zstd", OutputCodec.ZSTD.getContentType());
+        assertNull(OutputCodec.NONE.getContentType());
+    }
+
+    @Test
+    void testCodecNamesAndLevelsAreValidated() {
+        assertEquals(OutputCodec.ZSTD, OutputCodec.parse(" Zstd "));
+        assertEquals(OutputCodec.NONE, OutputCodec.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> OutputCodec.parse("brotli"));
+        assertEquals(6, OutputCodec.GZIP.levelFor(0));
+        assertThrows(IllegalArgumentException.class, () -> OutputCodec.GZIP.levelFor(12));
+    }
+
+    private static byte[] decode(OutputCodec codec, byte[] stored) throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(stored);
+        try (InputStream decoder = codec == OutputCodec.GZIP ? new GZIPInputStream(in) : new ZstdInputStream(in)) {
+            return decoder.readAllBytes();
+        }
+    }
+
+    private static final class TrackingTarget extends ByteArrayOutputStream {
+        boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
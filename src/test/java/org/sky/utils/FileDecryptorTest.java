@@ -0,0 +1,169 @@
+package org.sky.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileDecryptorTest {
+
+    private static final String PASSWORD = "test-password";
+    // Empty, sub-block, block-aligned and larger than the 1 MB channel buffer.
+    private static final int[] SIZES = {0, 15, 16, 1024 * 1024 + 5, 3 * 1024 * 1024};
+
+    private Path inputFile;
+    private Path outputFile;
+
+    @AfterEach
+    void cleanUp() throws Exception {
+        if (inputFile != null) {
+            Files.deleteIfExists(inputFile);
+        }
+        if (outputFile != null) {
+            Files.deleteIfExists(outputFile);
+        }
+    }
+
+    @Test
+    void testDecryptOpenSSLFormat() throws Exception {
+        for (int size : SIZES) {
+            byte[] plaintext = randomBytes(size);
+            assertArrayEquals(plaintext, decrypt(encryptOpenSSL(plaintext), false), "size " + size);
+        }
+    }
+
+    @Test
+    void testDecryptIVPrefixedFormat() throws Exception {
+        for (int size : SIZES) {
+            byte[] plaintext = randomBytes(size);
+            assertArrayEquals(plaintext, decrypt(encryptIVPrefixed(plaintext), false), "size " + size);
+        }
+    }
+
+    @Test
+    void testDecryptBase64EncodedInput() throws Exception {
+        byte[] plaintext = randomBytes(200_001);
+
+        byte[] openssl = Base64.getEncoder().encode(encryptOpenSSL(plaintext));
+        byte[] ivPrefixed = Base64.getEncoder().encode(encryptIVPrefixed(plaintext));
+
+        assertArrayEquals(plaintext, decrypt(openssl, true));
+        assertArrayEquals(plaintext, decrypt(ivPrefixed, true));
+    }
+
+    @Test
+    void testWrappedBase64IsDetectedWithoutFlag() throws Exception {
+        byte[] plaintext = randomBytes(50_000);
+        byte[] mime = Base64.getMimeEncoder().encode(encryptOpenSSL(plaintext));
+
+        assertArrayEquals(plaintext, decrypt(mime, false));
+        assertArrayEquals(plaintext, decrypt(mime, true));
+    }
+
+    @Test
+    void testParallelDecryptionMatchesSequential() throws Exception {
+        for (int size : SIZES) {
+            byte[] plaintext = randomBytes(size);
+            assertArrayEquals(plaintext, decrypt(encryptOpenSSL(plaintext), false, 4), "size " + size);
+            assertArrayEquals(plaintext, decrypt(encryptIVPrefixed(plaintext), false, 3), "size " + size);
+        }
+    }
+
+    @Test
+    void testParallelDecryptionOverwritesLargerExistingOutput() throws Exception {
+        byte[] plaintext = randomBytes(100_000);
+        inputFile = Files.createTempFile("aes-", ".enc");
+        outputFile = Files.createTempFile("aes-", ".out");
+        Files.write(inputFile, encryptOpenSSL(plaintext));
+        Files.write(outputFile, new byte[300_000]);
+
+        FileDecryptor.decryptFile(inputFile, outputFile, PASSWORD, false, 4);
+
+        assertArrayEquals(plaintext, Files.readAllBytes(outputFile));
+    }
+
+    @Test
+    void testParallelWrongPasswordFailsOnPadding() throws Exception {
+        inputFile = Files.createTempFile("aes-", ".enc");
+        outputFile = Files.createTempFile("aes-", ".out");
+        Files.write(inputFile, encryptIVPrefixed(randomBytes(100_000)));
+
+        assertThrows(Exception.class, () -> FileDecryptor.decryptFile(inputFile, outputFile, "wrong", false, 4));
+    }
+
+    @Test
+    void testWrongPasswordFailsOnPadding() throws Exception {
+        inputFile = Files.createTempFile("aes-", ".enc");
+        outputFile = Files.createTempFile("aes-", ".out");
+        Files.write(inputFile, encryptOpenSSL(randomBytes(1000)));
+
+        assertThrows(Exception.class, () -> FileDecryptor.decryptFile(inputFile, outputFile, "wrong", false));
+    }
+
+    private byte[] decrypt(byte[] encrypted, boolean base64) throws Exception {
+        return decrypt(encrypted, base64, 1);
+    }
+
+    private byte[] decrypt(byte[] encrypted, boolean base64, int parallelism) throws Exception {
+        cleanUp();
+        inputFile = Files.createTempFile("aes-", ".enc");
+        outputFile = Files.createTempFile("aes-", ".out");
+        Files.write(inputFile, encrypted);
+        FileDecryptor.decryptFile(inputFile, outputFile, PASSWORD, base64, parallelism);
+        return Files.readAllBytes(outputFile);
+    }
+
+    static byte[] encryptOpenSSL(byte[] plaintext) throws Exception {
+        byte[] salt = randomBytes(8);
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        byte[] keyAndIv = new byte[48];
+        byte[] previous = new byte[0];
+        for (int generated = 0; generated < keyAndIv.length; generated += previous.length) {
+            md5.update(previous);
+            md5.update(PASSWORD.getBytes(StandardCharsets.UTF_8));
+            md5.update(salt);
+            previous = md5.digest();
+            System.arraycopy(previous, 0, keyAndIv, generated, Math.min(previous.length, 48 - generated));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("Salted__".getBytes(StandardCharsets.US_ASCII));
+        out.write(salt);
+        out.write(encrypt(plaintext, Arrays.copyOfRange(keyAndIv, 0, 32), Arrays.copyOfRange(keyAndIv, 32, 48)));
+        return out.toByteArray();
+    }
+
+    static byte[] encryptIVPrefixed(byte[] plaintext) throws Exception {
+        byte[] iv = randomBytes(16);
+        byte[] key = MessageDigest.getInstance("SHA-256").digest(PASSWORD.getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(iv);
+        out.write(encrypt(plaintext, key, iv));
+        return out.toByteArray();
+    }
+
+    private static byte[] encrypt(byte[] plaintext, byte[] key, byte[] iv) throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+        return cipher.doFinal(plaintext);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -1,11 +1,26 @@
 package org.sky.utils;
 
+import org.bouncycastle.bcpg.ArmoredOutputStream;
+import org.bouncycastle.openpgp.PGPCompressedData;
+import org.bouncycastle.openpgp.PGPPrivateKey;
+import org.bouncycastle.openpgp.PGPSecretKey;
+import org.bouncycastle.openpgp.PGPSecretKeyRingCollection;
 import org.junit.jupiter.api.Test;
 import org.sky.function.exception.DecryptionException;
+import org.sky.model.DecompressionStats;
+import org.sky.model.PlaintextChecksum;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -39,6 +54,197 @@ class PGPFileDecryptorTest {
         Files.deleteIfExists(privateKeyFile);
     }
 
+    @Test
+    void testDecryptStreamWithInMemoryKeyRing() throws Exception {
+        PGPSecretKey secretKey = PGPTestFixtures.generateSecretKey("streampass");
+        byte[] plaintext = "streamed without temp files".getBytes(StandardCharsets.UTF_8);
+        byte[] encrypted = PGPTestFixtures.encrypt(plaintext, secretKey.getPublicKey());
+
+        PGPSecretKeyRingCollection keyRings = PGPFileDecryptor.readSecretKeyRing(secretKey.getEncoded());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PGPFileDecryptor.decryptStream(new ByteArrayInputStream(encrypted), output, keyRings, "streampass");
+
+        assertArrayEquals(plaintext, output.toByteArray());
+    }
+
+    @Test
+    void testDecryptArmoredStream() throws Exception {
+        PGPSecretKey secretKey = PGPTestFixtures.generateSecretKey("streampass");
+        byte[] plaintext = "armored by the partner".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream armored = new ByteArrayOutputStream();
+        try (ArmoredOutputStream armorOut = new ArmoredOutputStream(armored)) {
+            armorOut.write(PGPTestFixtures.encrypt(plaintext, secretKey.getPublicKey()));
+        }
+
+        PGPSecretKeyRingCollection keyRings = PGPFileDecryptor.readSecretKeyRing(secretKey.getEncoded());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PGPFileDecryptor.decryptStream(new ByteArrayInputStream(armored.toByteArray()), output, keyRings,
+                "streampass");
+
+        assertArrayEquals(plaintext, output.toByteArray());
+    }
+
+    @Test
+    void testEveryCompressionAlgorithmIsDecompressedAndMeasured() throws Exception {
+        PGPSecretKey secretKey = PGPTestFixtures.generateSecretKey("streampass");
+        PGPSecretKeyRingCollection keyRings = PGPFileDecryptor.readSecretKeyRing(secretKey.getEncoded());
+        Map<Long, PGPPrivateKey> privateKeys = PGPFileDecryptor.unlockPrivateKeys(keyRings, "streampass");
+        byte[] plaintext = "a,b,c\n1,2,3\n".repeat(20_000).getBytes(StandardCharsets.UTF_8);
+
+        int[] algorithms = {PGPCompressedData.ZIP, PGPCompressedData.ZLIB, PGPCompressedData.BZIP2,
+                PGPCompressedData.UNCOMPRESSED};
+        for (int algorithm : algorithms) {
+            byte[] encrypted = PGPTestFixtures.encrypt(plaintext, secretKey.getPublicKey(), algorithm);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            DecompressionStats stats = PGPFileDecryptor.decryptStream(new ByteArrayInputStream(encrypted), output,
+                    privateKeys::get);
+
+            assertArrayEquals(plaintext, output.toByteArray(), Decompressors.algorithmName(algorithm));
+            assertEquals(Decompressors.algorithmName(algorithm), stats.getAlgorithm());
+            assertTrue(stats.getUncompressedBytes() >= plaintext.length);
+            if (algorithm != PGPCompressedData.UNCOMPRESSED) {
+                assertTrue(stats.getCompressedBytes() < plaintext.length / 10, stats.toString());
+            }
+        }
+    }
+
+    @Test
+    void testPipelinedDecryptionMatchesSequential() throws Exception {
+        PGPSecretKey secretKey = PGPTestFixtures.generateSecretKey("streampass");
+        Map<Long, PGPPrivateKey> privateKeys = PGPFileDecryptor.unlockPrivateKeys(
+                PGPFileDecryptor.readSecretKeyRing(secretKey.getEncoded()), "streampass");
+        byte[] plaintext = "id,amount\n42,1000\n".repeat(300_000).getBytes(StandardCharsets.UTF_8);
+        byte[] encrypted = PGPTestFixtures.encrypt(plaintext, secretKey.getPublicKey());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DecompressionStats stats = PGPFileDecryptor.decryptStreamPipelined(new ByteArrayInputStream(encrypted),
+                output, privateKeys::get);
+
+        assertArrayEquals(plaintext, output.toByteArray());
+        assertEquals("ZIP", stats.getAlgorithm());
+    }
+
+    @Test
+    void testPlaintextChecksumIsComputedDuringTheCopy() throws Exception {
+        PGPSecretKey secretKey = PGPTestFixtures.generateSecretKey("streampass");
+        Map<Long, PGPPrivateKey> privateKeys = PGPFileDecryptor.unlockPrivateKeys(
+                PGPFileDecryptor.readSecretKeyRing(secretKey.getEncoded()), "streampass");
+        byte[] plaintext = "id,amount\n42,1000\n".repeat(100_000).getBytes(StandardCharsets.UTF_8);
+        byte[] encrypted = PGPTestFixtures.encrypt(plaintext, secretKey.getPublicKey());
+
+        DecompressionStats sequential = PGPFileDecryptor.decryptStream(new ByteArrayInputStream(encrypted),
+                new ByteArrayOutputStream(), privateKeys::get);
+        DecompressionStats pipelined = PGPFileDecryptor.decryptStreamPipelined(new ByteArrayInputStream(encrypted),
+                new ByteArrayOutputStream(), privateKeys::get);
+
+        byte[] md5 = MessageDigest.getInstance("MD5").digest(plaintext);
+        byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(plaintext);
+        for (DecompressionStats stats : new DecompressionStats[]{sequential, pipelined}) {
+            PlaintextChecksum checksum = stats.getPlaintextChecksum();
+            assertArrayEquals(md5, checksum.getMd5());
+            assertArrayEquals(sha256, checksum.getSha256());
+            assertEquals(Base64.getEncoder().encodeToString(md5), checksum.getMd5Base64());
+            assertEquals(64, checksum.getSha256Hex().length());
+        }
+    }
+
+    @Test
+    void testPipelineFailureInUploadStageCancelsEveryStage() throws Exception {
+        PGPSecretKey secretKey = PGPTestFixtures.generateSecretKey("streampass");
+        Map<Long, PGPPrivateKey> privateKeys = PGPFileDecryptor.unlockPrivateKeys(
+                PGPFileDecryptor.readSecretKeyRing(secretKey.getEncoded()), "streampass");
+        byte[] plaintext = new byte[20 * 1024 * 1024];
+        byte[] encrypted = PGPTestFixtures.encrypt(plaintext, secretKey.getPublicKey());
+        OutputStream failingUpload = new OutputStream() {
+            private long written;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                written += length;
+                if (written > 1024 * 1024) {
+                    throw new IOException("block upload rejected");
+                }
+            }
+        };
+
+        DecryptionException error = assertTimeoutPreemptively(Duration.ofSeconds(30), () ->
+                assertThrows(DecryptionException.class, () -> PGPFileDecryptor.decryptStreamPipelined(
+                        new ByteArrayInputStream(encrypted), failingUpload, privateKeys::get)));
+        assertEquals("block upload rejected", error.getCause().getMessage());
+    }
+
+    @Test
+    void testPipelineStageErrorFailsBothPipes() throws Exception {
+        PGPSecretKey secretKey = PGPTestFixtures.generateSecretKey("streampass");
+        byte[] encrypted = PGPTestFixtures.encrypt(new byte[4 * 1024 * 1024], secretKey.getPublicKey());
+
+        DecryptionException error = assertTimeoutPreemptively(Duration.ofSeconds(30), () ->
+                assertThrows(DecryptionException.class, () -> PGPFileDecryptor.decryptStreamPipelined(
+                        new ByteArrayInputStream(encrypted), new ByteArrayOutputStream(), keyId -> {
+                            throw new Error("key resolver crashed");
+                        })));
+        assertEquals("key resolver crashed", error.getCause().getMessage());
+    }
+
+    @Test
+    void testErrorInUploadStopsBothStages() throws Exception {
+        PGPSecretKey secretKey = PGPTestFixtures.generateSecretKey("streampass");
+        Map<Long, PGPPrivateKey> privateKeys = PGPFileDecryptor.unlockPrivateKeys(
+                PGPFileDecryptor.readSecretKeyRing(secretKey.getEncoded()), "streampass");
+        byte[] encrypted = PGPTestFixtures.encrypt(new byte[20 * 1024 * 1024], secretKey.getPublicKey());
+        Error outOfMemory = new OutOfMemoryError("upload buffer");
+        OutputStream failingUpload = new OutputStream() {
+            @Override
+            public void write(int b) {
+                throw outOfMemory;
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) {
+                throw outOfMemory;
+            }
+        };
+
+        Error error = assertThrows(Error.class, () -> PGPFileDecryptor.decryptStreamPipelined(
+                new ByteArrayInputStream(encrypted), failingUpload, privateKeys::get));
+        assertSame(outOfMemory, error);
+        // Both stages were waiting on full pipes; they must give up instead of holding their pool threads.
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            while (pipelineStageIsBlocked()) {
+                Thread.sleep(50);
+            }
+        });
+    }
+
+    private static boolean pipelineStageIsBlocked() {
+        for (Map.Entry<Thread, StackTraceElement[]> thread : Thread.getAllStackTraces().entrySet()) {
+            if (thread.getKey().getName().startsWith("pgp-pipeline")) {
+                for (StackTraceElement frame : thread.getValue()) {
+                    if (frame.getClassName().startsWith(BufferPipe.class.getName())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void testDecryptStreamWithWrongPassphraseThrowsException() throws Exception {
+        PGPSecretKey secretKey = PGPTestFixtures.generateSecretKey("streampass");
+        byte[] encrypted = PGPTestFixtures.encrypt(new byte[]{1, 2, 3}, secretKey.getPublicKey());
+        PGPSecretKeyRingCollection keyRings = PGPFileDecryptor.readSecretKeyRing(secretKey.getEncoded());
+
+        assertThrows(DecryptionException.class, () -> PGPFileDecryptor.decryptStream(
+                new ByteArrayInputStream(encrypted), new ByteArrayOutputStream(), keyRings, "wrongpass"));
+    }
+
     // Integration test: requires real encrypted file, private key, and correct passphrase
     @Test
     void testDecryptFileIntegration() throws Exception {
@@ -0,0 +1,29 @@
+package org.sky.utils;
+
+import org.bouncycastle.openpgp.PGPCompressedData;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.PGPSecretKey;
+
+public final class PGPTestFixtures {
+
+    static {
+        // Tests also address the provider by name.
+        CryptoProvider.get();
+    }
+
+    private PGPTestFixtures() {
+    }
+
+    public static PGPSecretKey generateSecretKey(String passphrase) throws Exception {
+        return PGPMessageFactory.generateKeyRing(PGPMessageFactory.KeyType.RSA, 2048, "test@sky.org", passphrase)
+                .getSecretKey();
+    }
+
+    public static byte[] encrypt(byte[] plaintext, PGPPublicKey publicKey, int compressionAlgorithm) throws Exception {
+        return PGPMessageFactory.encrypt(plaintext, publicKey, compressionAlgorithm);
+    }
+
+    public static byte[] encrypt(byte[] plaintext, PGPPublicKey publicKey) throws Exception {
+        return encrypt(plaintext, publicKey, PGPCompressedData.ZIP);
+    }
+}
@@ -0,0 +1,118 @@
+package org.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelGzipOutputStreamTest {
+
+    @Test
+    void testChunksFormOneGzipMemberThatGunzipReads() throws IOException {
+        byte[] plaintext = csv(3 * ParallelGzipOutputStream.CHUNK_SIZE + 12345);
+
+        byte[] compressed = compress(plaintext, 4);
+
+        assertArrayEquals(plaintext, gunzip(compressed));
+        // Priming each chunk with the previous 32 KB keeps the ratio close to a single-threaded deflate.
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(sequential)) {
+            gzip.write(plaintext);
+        }
+        assertTrue(compressed.length < sequential.size() * 1.02, compressed.length + " vs " + sequential.size());
+    }
+
+    @Test
+    void testOutputDoesNotDependOnTheNumberOfWorkers() throws IOException {
+        byte[] plaintext = new byte[2 * ParallelGzipOutputStream.CHUNK_SIZE + 7];
+        new Random(42).nextBytes(plaintext);
+
+        assertArrayEquals(compress(plaintext, 2), compress(plaintext, 8));
+        assertArrayEquals(plaintext, gunzip(compress(plaintext, 3)));
+    }
+
+    @Test
+    void testEmptyAndSingleByteWritesProduceValidStreams() throws IOException {
+        assertArrayEquals(new byte[0], gunzip(compress(new byte[0], 4)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(out, 6, 2)) {
+            for (byte b : "a,b\n".getBytes(StandardCharsets.UTF_8)) {
+                gzip.write(b);
+            }
+        }
+        assertEquals("a,b\n", new String(gunzip(out.toByteArray()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testConcurrentStreamsSharingThePoolStayIntact() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        AtomicBoolean running = new AtomicBoolean(true);
+        try {
+            // Takes every chunk released to the shared pool and scribbles over it, as another decryption would.
+            Future<?> scribbler = executor.submit(() -> {
+                while (running.get()) {
+                    byte[] buffer = BufferPool.shared().acquire(ParallelGzipOutputStream.CHUNK_SIZE);
+                    Arrays.fill(buffer, (byte) 0x5A);
+                    BufferPool.shared().release(buffer);
+                }
+            });
+            List<Future<?>> streams = new ArrayList<>();
+            for (int stream = 0; stream < 4; stream++) {
+                byte[] plaintext = csv(6 * ParallelGzipOutputStream.CHUNK_SIZE + stream * 1000);
+                streams.add(executor.submit(() -> {
+                    for (int round = 0; round < 3; round++) {
+                        assertArrayEquals(plaintext, gunzip(compress(plaintext, 4)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> stream : streams) {
+                stream.get();
+            }
+            running.set(false);
+            scribbler.get();
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] compress(byte[] plaintext, int workers) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ParallelGzipOutputStream gzip = new ParallelGzipOutputStream(out, 6, workers)) {
+            int split = Math.min(1000, plaintext.length);
+            gzip.write(plaintext, 0, split);
+            gzip.write(plaintext, split, plaintext.length - split);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] csv(int length) {
+        StringBuilder text = new StringBuilder(length + 64);
+        for (int row = 0; text.length() < length; row++) {
+            text.append(row).append(",customer-").append(row % 977).append(',').append(row * 31 % 10_000).append('\n');
+        }
+        return text.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,132 @@
+package org.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordShardingOutputStreamTest {
+
+    @Test
+    void testLinesAreSplitOnlyAtNewlinesOnceTheTargetIsReached() throws Exception {
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(7);
+        for (int i = 0; i < 5_000; i++) {
+            text.append("{\"id\":").append(i).append(",\"note\":\"").append("x".repeat(random.nextInt(80)))
+                .append("\"}\n");
+        }
+        byte[] input = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        CollectingSink sink = new CollectingSink();
+        RecordShardingOutputStream stream = new RecordShardingOutputStream(RecordFormat.LINES, 64 * 1024, false, sink);
+        writeInRandomPieces(stream, input, random);
+        stream.close();
+
+        assertTrue(sink.shards.size() > 1, "expected several shards");
+        assertEquals(sink.shards.size(), stream.getShardCount());
+        assertArrayEquals(input, sink.concatenated());
+        long records = 0;
+        for (int i = 0; i < sink.shards.size(); i++) {
+            String shard = sink.shards.get(i).toString(StandardCharsets.UTF_8);
+            assertTrue(shard.endsWith("\n"), "shard " + i + " ends inside a record");
+            if (i < sink.shards.size() - 1) {
+                assertTrue(shard.length() >= 64 * 1024, "shard " + i + " closed before the target");
+            }
+            assertEquals(shard.chars().filter(c -> c == '\n').count(), (long) sink.records.get(i));
+            records += sink.records.get(i);
+        }
+        assertEquals(5_000, records);
+        assertEquals(5_000, stream.getRecords());
+    }
+
+    @Test
+    void testCsvKeepsQuotedLineBreaksAndRepeatsTheHeader() throws Exception {
+        StringBuilder text = new StringBuilder("id,comment\n");
+        for (int i = 0; i < 300; i++) {
+            text.append(i).append(",\"line one\nline \"\"two\"\"\"\n");
+        }
+        byte[] input = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        CollectingSink sink = new CollectingSink();
+        RecordShardingOutputStream stream = new RecordShardingOutputStream(RecordFormat.CSV, 1000, true, sink);
+        writeInRandomPieces(stream, input, new Random(3));
+        stream.close();
+
+        assertTrue(sink.shards.size() > 1, "expected several shards");
+        long records = 0;
+        for (int i = 0; i < sink.shards.size(); i++) {
+            String shard = sink.shards.get(i).toString(StandardCharsets.UTF_8);
+            assertTrue(shard.startsWith("id,comment\n"), "shard " + i + " has no header");
+            String body = shard.substring("id,comment\n".length());
+            assertTrue(body.matches("(\\d+,\"line one\nline \"\"two\"\"\"\n)+"), "shard " + i + " splits a record");
+            records += sink.records.get(i);
+        }
+        assertEquals(300, records);
+    }
+
+    @Test
+    void testLastRecordWithoutNewlineIsCountedAndEmptyInputYieldsOneShard() throws Exception {
+        CollectingSink sink = new CollectingSink();
+        RecordShardingOutputStream stream = new RecordShardingOutputStream(RecordFormat.LINES, 4, false, sink);
+        stream.write("a\nbbbbbb\nc".getBytes(StandardCharsets.UTF_8));
+        stream.close();
+        assertEquals(List.of("a\nbbbbbb\n", "c"), sink.texts());
+        assertEquals(List.of(2L, 1L), sink.records);
+
+        CollectingSink empty = new CollectingSink();
+        new RecordShardingOutputStream(RecordFormat.CSV, 4, true, empty).close();
+        assertEquals(List.of(""), empty.texts());
+        assertEquals(List.of(0L), empty.records);
+    }
+
+    private static void writeInRandomPieces(OutputStream stream, byte[] input, Random random) throws IOException {
+        int position = 0;
+        while (position < input.length) {
+            int length = Math.min(input.length - position, 1 + random.nextInt(5000));
+            if (length == 1) {
+                stream.write(input[position]);
+            } else {
+                stream.write(input, position, length);
+            }
+            position += length;
+        }
+    }
+
+    private static final class CollectingSink implements RecordShardingOutputStream.ShardSink {
+        final List<ByteArrayOutputStream> shards = new ArrayList<>();
+        final List<Long> records = new ArrayList<>();
+
+        @Override
+        public OutputStream open(int index) {
+            assertEquals(shards.size(), index);
+            ByteArrayOutputStream shard = new ByteArrayOutputStream();
+            shards.add(shard);
+            return shard;
+        }
+
+        @Override
+        public void finish(int index, long count) {
+            assertEquals(records.size(), index);
+            records.add(count);
+        }
+
+        byte[] concatenated() {
+            ByteArrayOutputStream all = new ByteArrayOutputStream();
+            shards.forEach(shard -> all.writeBytes(shard.toByteArray()));
+            return all.toByteArray();
+        }
+
+        List<String> texts() {
+            List<String> texts = new ArrayList<>();
+            shards.forEach(shard -> texts.add(shard.toString(StandardCharsets.UTF_8)));
+            return texts;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.sky.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.Security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticDecryptionTest {
+
+    @Test
+    void testRunDecryptsOncePerCodec() throws Exception {
+        long decrypted = SyntheticDecryption.run();
+
+        assertTrue(decrypted > 0);
+        assertEquals(0, decrypted % OutputCodec.values().length);
+    }
+
+    @Test
+    void testProviderIsRegisteredOnce() {
+        assertSame(CryptoProvider.get(), CryptoProvider.get());
+        assertSame(CryptoProvider.get(), Security.getProvider(CryptoProvider.get().getName()));
+    }
+}